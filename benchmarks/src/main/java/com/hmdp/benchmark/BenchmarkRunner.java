@@ -0,0 +1,109 @@
+package com.hmdp.benchmark;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 基准测试入口，参数与JMH命令行相同，例如 java -jar target/benchmarks.jar CacheClient -f 1。
+ * 结果以JSON写入results目录（可用-Dbenchmark.results修改），存在results/baseline.json时逐项对比，
+ * 变慢超过阈值且超出误差范围的项标记为REGRESSION。确认新结果后把它复制为baseline.json即可更新基线。
+ */
+public class BenchmarkRunner {
+
+    /**
+     * 判定为性能回退的变化比例
+     */
+    private static final double REGRESSION_THRESHOLD = 0.10;
+
+    private static final DateTimeFormatter FILE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        Path resultDir = Paths.get(System.getProperty("benchmark.results", "results"));
+        Files.createDirectories(resultDir);
+        Path resultFile = resultDir.resolve("jmh-" + LocalDateTime.now().format(FILE_TIME_FORMATTER) + ".json");
+        Options options = new OptionsBuilder()
+                .parent(commandLine)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile.toString())
+                .build();
+        new Runner(options).run();
+        System.out.println("结果已写入：" + resultFile.toAbsolutePath());
+
+        Path baseline = resultDir.resolve("baseline.json");
+        if (Files.exists(baseline)) {
+            compare(baseline, resultFile);
+        }
+    }
+
+    private static void compare(Path baselineFile, Path resultFile) throws IOException {
+        Map<String, JSONObject> baseline = load(baselineFile);
+        Map<String, JSONObject> current = load(resultFile);
+        int regressions = 0;
+        System.out.println();
+        System.out.println("与基线对比：" + baselineFile.toAbsolutePath());
+        for (Map.Entry<String, JSONObject> entry : current.entrySet()) {
+            JSONObject before = baseline.get(entry.getKey());
+            if (before == null) {
+                System.out.printf("  %-70s 新增%n", entry.getKey());
+                continue;
+            }
+            JSONObject after = entry.getValue();
+            JSONObject beforeMetric = before.getJSONObject("primaryMetric");
+            JSONObject afterMetric = after.getJSONObject("primaryMetric");
+            double beforeScore = beforeMetric.getDouble("score");
+            double afterScore = afterMetric.getDouble("score");
+            // 吞吐量模式分数越高越好，其余模式（耗时）越低越好
+            double change = "thrpt".equals(after.getStr("mode"))
+                    ? (beforeScore - afterScore) / beforeScore
+                    : (afterScore - beforeScore) / beforeScore;
+            double error = errorOf(beforeMetric) + errorOf(afterMetric);
+            boolean regressed = change > REGRESSION_THRESHOLD && Math.abs(afterScore - beforeScore) > error;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("  %-70s %12.3f -> %12.3f %s  %+.1f%%%s%n", entry.getKey(), beforeScore, afterScore,
+                    afterMetric.getStr("scoreUnit"), change * 100, regressed ? "  REGRESSION" : "");
+        }
+        System.out.println(regressions == 0 ? "未发现性能回退" : "性能回退：" + regressions + "项");
+    }
+
+    private static double errorOf(JSONObject metric) {
+        Double error = metric.getDouble("scoreError");
+        return error == null || error.isNaN() ? 0 : error;
+    }
+
+    /**
+     * 读取JMH的JSON结果，以"benchmark名 + 参数"为key
+     */
+    private static Map<String, JSONObject> load(Path file) throws IOException {
+        JSONArray results = JSONUtil.parseArray(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+        Map<String, JSONObject> map = new LinkedHashMap<>();
+        for (int i = 0; i < results.size(); i++) {
+            JSONObject result = results.getJSONObject(i);
+            String key = result.getStr("benchmark");
+            JSONObject params = result.getJSONObject("params");
+            if (params != null && !params.isEmpty()) {
+                key += params.toString();
+            }
+            map.put(key, result);
+        }
+        return map;
+    }
+}
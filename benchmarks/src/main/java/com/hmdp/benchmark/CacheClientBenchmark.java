@@ -0,0 +1,85 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.config.CacheBulkheadProperties;
+import com.hmdp.config.CacheExpiryProperties;
+import com.hmdp.config.HotKeyProperties;
+import com.hmdp.config.RedisCircuitBreakerProperties;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheExpiryPolicy;
+import com.hmdp.utils.HotKeyDetector;
+import com.hmdp.utils.RedisCircuitBreaker;
+import com.hmdp.utils.RedisLockFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * CacheClient三种查询方式在缓存命中时的开销，Redis换成内存实现，只剩模板、序列化和JSON解析。
+ * 未命中时queryWithMutex/queryWithLogicalExpire带有模拟耗时，不在这里测量。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheClientBenchmark {
+
+    private static final String LOGICAL_KEY_PREFIX = "cache:shop:logical:";
+    private static final long SHOP_ID = 1L;
+    private static final long MISSING_SHOP_ID = 2L;
+
+    /**
+     * 是否开启热点key探测；开启时同一个key很快被提升为热点，测量的是读本地副本的开销
+     */
+    @Param({"false", "true"})
+    public boolean hotKey;
+
+    private CacheClient cacheClient;
+
+    @Setup
+    public void setup() {
+        StringRedisTemplate stringRedisTemplate = new StringRedisTemplate(new FakeRedisConnectionFactory());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        HotKeyProperties hotKeyProperties = new HotKeyProperties();
+        hotKeyProperties.setEnabled(hotKey);
+        cacheClient = new CacheClient(stringRedisTemplate, meterRegistry,
+                new HotKeyDetector(hotKeyProperties, meterRegistry), hotKeyProperties,
+                // 只测量命中路径，不会用到分布式锁
+                new RedisLockFactory(),
+                new RedisCircuitBreaker(new RedisCircuitBreakerProperties(), meterRegistry),
+                new CacheBulkheadProperties(), new CacheExpiryPolicy(new CacheExpiryProperties(), meterRegistry));
+        cacheClient.set(CACHE_SHOP_KEY + SHOP_ID, Fixtures.shop(SHOP_ID), CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        stringRedisTemplate.opsForValue().set(CACHE_SHOP_KEY + MISSING_SHOP_ID, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+        cacheClient.setWithLogicalExpire(LOGICAL_KEY_PREFIX + SHOP_ID, Fixtures.shop(SHOP_ID), 1L, TimeUnit.HOURS);
+    }
+
+    @Benchmark
+    public Shop passThroughHit() {
+        return cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, SHOP_ID, Shop.class, id -> null,
+                CACHE_SHOP_TTL, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public Shop passThroughNullHit() {
+        return cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, MISSING_SHOP_ID, Shop.class, id -> null,
+                CACHE_SHOP_TTL, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public Shop mutexHit() {
+        return cacheClient.queryWithMutex(CACHE_SHOP_KEY, SHOP_ID, Shop.class, id -> null,
+                CACHE_SHOP_TTL, TimeUnit.MINUTES);
+    }
+
+    @Benchmark
+    public Shop logicalExpireHit() {
+        return cacheClient.queryWithLogicalExpire(LOGICAL_KEY_PREFIX, SHOP_ID, Shop.class, id -> null,
+                CACHE_SHOP_TTL, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,98 @@
+package com.hmdp.benchmark;
+
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisSentinelConnection;
+import org.springframework.data.redis.connection.RedisStringCommands;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基准测试用的内存Redis，只实现CacheClient用到的字符串命令。
+ * 连接之上的StringRedisTemplate、序列化和JSON处理都是真实代码，测出的是除网络往返之外的客户端开销。
+ * 不处理过期时间。
+ */
+public class FakeRedisConnectionFactory implements RedisConnectionFactory {
+
+    private final Map<ByteBuffer, byte[]> data = new ConcurrentHashMap<>();
+
+    private final RedisConnection connection = (RedisConnection) Proxy.newProxyInstance(
+            RedisConnection.class.getClassLoader(), new Class<?>[]{RedisConnection.class}, new Handler());
+
+    @Override
+    public RedisConnection getConnection() {
+        return connection;
+    }
+
+    @Override
+    public RedisClusterConnection getClusterConnection() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean getConvertPipelineAndTxResults() {
+        return true;
+    }
+
+    @Override
+    public RedisSentinelConnection getSentinelConnection() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public DataAccessException translateExceptionIfPossible(RuntimeException ex) {
+        return null;
+    }
+
+    private class Handler implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.getName()) {
+                case "get":
+                    return data.get(ByteBuffer.wrap((byte[]) args[0]));
+                case "set":
+                    if (args.length == 4 && args[3] == RedisStringCommands.SetOption.SET_IF_ABSENT) {
+                        return data.putIfAbsent(ByteBuffer.wrap((byte[]) args[0]), (byte[]) args[1]) == null;
+                    }
+                    data.put(ByteBuffer.wrap((byte[]) args[0]), (byte[]) args[1]);
+                    return Boolean.TRUE;
+                case "setNX":
+                    return data.putIfAbsent(ByteBuffer.wrap((byte[]) args[0]), (byte[]) args[1]) == null;
+                case "setEx":
+                case "pSetEx":
+                    data.put(ByteBuffer.wrap((byte[]) args[0]), (byte[]) args[2]);
+                    return Boolean.TRUE;
+                case "del":
+                    long removed = 0;
+                    for (byte[] key : (byte[][]) args[0]) {
+                        if (data.remove(ByteBuffer.wrap(key)) != null) {
+                            removed++;
+                        }
+                    }
+                    return removed;
+                case "close":
+                    return null;
+                case "isClosed":
+                case "isPipelined":
+                case "isQueueing":
+                    return false;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "FakeRedisConnection";
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.RedisData;
+
+import java.time.LocalDateTime;
+
+/**
+ * 各基准测试共用的测试数据，取自hmdp.sql中的真实商铺
+ */
+final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    static Shop shop(long id) {
+        Shop shop = new Shop();
+        shop.setId(id);
+        shop.setName("103茶餐厅");
+        shop.setTypeId(1L);
+        shop.setImages("https://qcloud.dpfile.com/pc/jiclIsCKmOI2arxKN1Uf0Hx3PucIJH8q0QSz-Z8llzcN56-_QiKuOvyio1OOxsRtFoXqu0G3iT2T27qat3WhLVEuLYk00OmSS1IdNpm8K8sG4JN9RIm2mTKcbLtc2o2vfCF2ubeXzk49OsGrXt_KYDCngOyCwZK-s3fqawWswzk.jpg");
+        shop.setArea("大关");
+        shop.setAddress("金华路锦昌文华苑29号");
+        shop.setX(120.149192);
+        shop.setY(30.316078);
+        shop.setAvgPrice(80L);
+        shop.setSold(4215);
+        shop.setComments(3035);
+        shop.setScore(37);
+        shop.setOpenHours("10:00-22:00");
+        shop.setCreateTime(LocalDateTime.of(2021, 12, 22, 18, 10, 39));
+        shop.setUpdateTime(LocalDateTime.of(2022, 1, 13, 17, 32, 19));
+        return shop;
+    }
+
+    static RedisData redisData(long id) {
+        RedisData redisData = new RedisData();
+        redisData.setData(shop(id));
+        redisData.setExpireTime(LocalDateTime.now().plusHours(1));
+        return redisData;
+    }
+}
@@ -0,0 +1,138 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.entity.Follow;
+import com.hmdp.utils.CsrAdjacency;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 关注图的CSR邻接表对比按用户分组的List&lt;Follow&gt;：关注判断和共同关注。
+ * 关注数按幂律分布生成，少数用户关注很多人；CSR的内存占用在setup时打印。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+public class FollowGraphBenchmark {
+
+    @Param("20000")
+    private int userCount;
+
+    @Param("200000")
+    private int edgeCount;
+
+    private CsrAdjacency followees;
+    private Map<Long, List<Follow>> followsByUser;
+
+    private long[] queryUsers;
+    private long[] queryTargets;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        long[] src = new long[edgeCount];
+        long[] dst = new long[edgeCount];
+        Set<Long> seen = new HashSet<>(edgeCount * 2);
+        int size = 0;
+        while (size < edgeCount) {
+            // 平方让小id的用户关注更多人，模拟大V和普通用户的差异
+            long user = (long) (Math.pow(random.nextDouble(), 2) * userCount) + 1;
+            long target = random.nextInt(userCount) + 1;
+            if (user == target || !seen.add(user * (userCount + 1) + target)) {
+                continue;
+            }
+            src[size] = user;
+            dst[size] = target;
+            size++;
+        }
+        followees = CsrAdjacency.build(src, dst, size);
+        followsByUser = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Follow follow = new Follow();
+            follow.setId((long) i + 1);
+            follow.setUserId(src[i]);
+            follow.setFollowUserId(dst[i]);
+            followsByUser.computeIfAbsent(src[i], k -> new ArrayList<>()).add(follow);
+        }
+        queryUsers = new long[1024];
+        queryTargets = new long[1024];
+        for (int i = 0; i < queryUsers.length; i++) {
+            queryUsers[i] = (long) (Math.pow(random.nextDouble(), 2) * userCount) + 1;
+            queryTargets[i] = random.nextInt(userCount) + 1;
+        }
+        System.out.printf("%nCSR邻接表：%d个用户，%d条关注，占用%d字节%n",
+                followees.keyCount(), followees.edgeCount(), followees.sizeInBytes());
+    }
+
+    private int next() {
+        return cursor = (cursor + 1) & (queryUsers.length - 1);
+    }
+
+    @Benchmark
+    public boolean csrContains() {
+        int i = next();
+        return followees.contains(queryUsers[i], queryTargets[i]);
+    }
+
+    @Benchmark
+    public boolean listContains() {
+        int i = next();
+        List<Follow> follows = followsByUser.get(queryUsers[i]);
+        if (follows == null) {
+            return false;
+        }
+        long target = queryTargets[i];
+        for (Follow follow : follows) {
+            if (follow.getFollowUserId() == target) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 与FollowGraph.commonFollowees相同：两个有序数组归并求交集
+     */
+    @Benchmark
+    public int csrCommon() {
+        int i = next();
+        long[] a = followees.neighbors(queryUsers[i]);
+        long[] b = followees.neighbors(queryTargets[i]);
+        int n = 0;
+        for (int x = 0, y = 0; x < a.length && y < b.length; ) {
+            if (a[x] < b[y]) {
+                x++;
+            } else if (a[x] > b[y]) {
+                y++;
+            } else {
+                n++;
+                x++;
+                y++;
+            }
+        }
+        return n;
+    }
+
+    @Benchmark
+    public int listCommon() {
+        int i = next();
+        List<Follow> a = followsByUser.getOrDefault(queryUsers[i], Collections.emptyList());
+        List<Follow> b = followsByUser.getOrDefault(queryTargets[i], Collections.emptyList());
+        Set<Long> targets = new HashSet<>(a.size() * 2);
+        for (Follow follow : a) {
+            targets.add(follow.getFollowUserId());
+        }
+        int n = 0;
+        for (Follow follow : b) {
+            if (targets.contains(follow.getFollowUserId())) {
+                n++;
+            }
+        }
+        return n;
+    }
+}
@@ -0,0 +1,94 @@
+package com.hmdp.benchmark;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.hmdp.entity.Shop;
+import com.hmdp.utils.RedisData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存中Shop和RedisData的序列化与反序列化：项目使用的Hutool JSONUtil对比Spring Boot自带的Jackson。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    private ObjectMapper objectMapper;
+
+    private Shop shop;
+    private RedisData redisData;
+    private String shopJson;
+    private String redisDataJson;
+    private String jacksonShopJson;
+    private String jacksonRedisDataJson;
+
+    @Setup
+    public void setup() throws JsonProcessingException {
+        objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        shop = Fixtures.shop(1L);
+        redisData = Fixtures.redisData(1L);
+        // 各自读取自己写出的数据：Hutool把LocalDateTime写成毫秒时间戳，Jackson的JavaTimeModule无法直接读取
+        shopJson = JSONUtil.toJsonStr(shop);
+        redisDataJson = JSONUtil.toJsonStr(redisData);
+        jacksonShopJson = objectMapper.writeValueAsString(shop);
+        jacksonRedisDataJson = objectMapper.writeValueAsString(redisData);
+    }
+
+    @Benchmark
+    public String hutoolWriteShop() {
+        return JSONUtil.toJsonStr(shop);
+    }
+
+    @Benchmark
+    public String jacksonWriteShop() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(shop);
+    }
+
+    @Benchmark
+    public Shop hutoolReadShop() {
+        return JSONUtil.toBean(shopJson, Shop.class);
+    }
+
+    @Benchmark
+    public Shop jacksonReadShop() throws JsonProcessingException {
+        return objectMapper.readValue(jacksonShopJson, Shop.class);
+    }
+
+    @Benchmark
+    public String hutoolWriteRedisData() {
+        return JSONUtil.toJsonStr(redisData);
+    }
+
+    @Benchmark
+    public String jacksonWriteRedisData() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(redisData);
+    }
+
+    /**
+     * 与CacheClient.queryWithLogicalExpire相同：先解析外层，再把data转成目标类型
+     */
+    @Benchmark
+    public Shop hutoolReadRedisData() {
+        RedisData data = JSONUtil.toBean(redisDataJson, RedisData.class);
+        return JSONUtil.toBean((JSONObject) data.getData(), Shop.class);
+    }
+
+    @Benchmark
+    public Shop jacksonReadRedisData() throws JsonProcessingException {
+        JsonNode node = objectMapper.readTree(jacksonRedisDataJson);
+        return objectMapper.treeToValue(node.get("data"), Shop.class);
+    }
+}
@@ -0,0 +1,56 @@
+package com.hmdp.benchmark;
+
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.bean.copier.CopyOptions;
+import com.hmdp.dto.UserDTO;
+import com.hmdp.utils.LoginUserCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 登录校验时Redis Hash与UserDTO之间的转换：
+ * 最初RefreshTokenInterceptor每个请求都用BeanUtil.fillBeanWithMap反射填充，现在由LoginUserCache手动映射。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserMappingBenchmark {
+
+    private Map<Object, Object> userMap;
+    private UserDTO user;
+
+    @Setup
+    public void setup() {
+        userMap = new HashMap<>();
+        userMap.put("id", "1");
+        userMap.put("nickName", "小鱼同学");
+        userMap.put("icon", "/imgs/blogs/blog1.jpg");
+        user = LoginUserCache.toUserDTO(userMap);
+    }
+
+    @Benchmark
+    public UserDTO fillBeanWithMap() {
+        return BeanUtil.fillBeanWithMap(userMap, new UserDTO(), false);
+    }
+
+    @Benchmark
+    public UserDTO manualMapping() {
+        return LoginUserCache.toUserDTO(userMap);
+    }
+
+    /**
+     * 登录时写入Redis前的转换，与UserServiceImpl.login相同
+     */
+    @Benchmark
+    public Map<String, Object> beanToMap() {
+        return BeanUtil.beanToMap(user, new HashMap<>(), CopyOptions.create()
+                .ignoreNullValue()
+                .setFieldValueEditor((key, value) -> value.toString()));
+    }
+}
@@ -0,0 +1,62 @@
+package com.hmdp.benchmark;
+
+import com.hmdp.utils.PasswordEncoder;
+import com.hmdp.utils.RegexPatterns;
+import com.hmdp.utils.RegexUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 登录链路上的工具方法：PasswordEncoder和RegexUtils。
+ * RegexUtils每次调用String.matches都会重新编译正则，这里同时测一个预编译Pattern的版本作对比。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UtilsBenchmark {
+
+    private static final Pattern PHONE_PATTERN = Pattern.compile(RegexPatterns.PHONE_REGEX);
+
+    private String password;
+    private String encodedPassword;
+    private String validPhone;
+    private String invalidPhone;
+
+    @Setup
+    public void setup() {
+        password = "hmdp123456";
+        encodedPassword = PasswordEncoder.encode(password);
+        validPhone = "13686869696";
+        invalidPhone = "1368686969a";
+    }
+
+    @Benchmark
+    public String passwordEncode() {
+        return PasswordEncoder.encode(password);
+    }
+
+    @Benchmark
+    public Boolean passwordMatches() {
+        return PasswordEncoder.matches(encodedPassword, password);
+    }
+
+    @Benchmark
+    public boolean phoneValid() {
+        return RegexUtils.isPhoneInvalid(validPhone);
+    }
+
+    @Benchmark
+    public boolean phoneInvalid() {
+        return RegexUtils.isPhoneInvalid(invalidPhone);
+    }
+
+    @Benchmark
+    public boolean phoneValidPrecompiled() {
+        return !PHONE_PATTERN.matcher(validPhone).matches();
+    }
+}
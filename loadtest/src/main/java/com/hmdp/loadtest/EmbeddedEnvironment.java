@@ -0,0 +1,106 @@
+package com.hmdp.loadtest;
+
+import com.github.fppt.jedismock.RedisServer;
+import com.hmdp.HmDianPingApplication;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 不依赖外部服务启动整个应用：MySQL换成MySQL模式的内存H2并导入db/hmdp.sql，Redis换成进程内的RESP服务端。
+ * 应用本身的配置、拦截器、缓存和连接池都与线上一致，应用和管理端点都监听随机端口。
+ */
+public class EmbeddedEnvironment implements AutoCloseable {
+
+    private static final String JDBC_URL = "jdbc:h2:mem:hmdp;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+            + "CASE_INSENSITIVE_IDENTIFIERS=TRUE;DB_CLOSE_DELAY=-1";
+
+    private final Map<String, Object> overrides;
+
+    private RedisServer redisServer;
+    private ConfigurableApplicationContext context;
+    private String baseUrl;
+
+    /**
+     * @param overrides 覆盖应用配置，如场景需要的较短缓存有效期
+     */
+    public EmbeddedEnvironment(Map<String, Object> overrides) {
+        this.overrides = overrides;
+    }
+
+    public void start() throws Exception {
+        redisServer = RedisServer.newRedisServer(0).start();
+        // DB_CLOSE_DELAY=-1保证导入后连接关闭数据也不会丢失，应用的连接池连到同一个库
+        try (Connection connection = DriverManager.getConnection(JDBC_URL, "sa", "");
+             InputStream script = HmDianPingApplication.class.getResourceAsStream("/db/hmdp.sql")) {
+            int statements = MysqlDumpLoader.load(connection, script);
+            System.out.println("已导入db/hmdp.sql，共" + statements + "条语句");
+        }
+
+        // 以命令行参数传入，优先级高于application.yaml
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("server.port", 0);
+        properties.put("management.server.port", 0);
+        properties.put("spring.datasource.driver-class-name", "org.h2.Driver");
+        properties.put("spring.datasource.url", JDBC_URL);
+        properties.put("spring.datasource.username", "sa");
+        properties.put("spring.datasource.password", "");
+        properties.put("spring.redis.host", redisServer.getHost());
+        properties.put("spring.redis.port", redisServer.getBindPort());
+        properties.put("spring.redis.password", "");
+        // 逐条打印SQL的debug日志会让压测变成测日志
+        properties.put("logging.level.com.hmdp", "info");
+        properties.put("hmdp.trace.sample-rate", 0);
+        // 压测请求都来自本机，按IP的限流会拦下几乎所有请求，默认关闭，-Dloadtest.rate-limit=true时保留
+        properties.put("hmdp.rate-limit.enabled", Boolean.getBoolean("loadtest.rate-limit"));
+        properties.putAll(overrides);
+        // 以hmdp.开头的系统属性原样传给应用，便于对比不同配置
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("hmdp.")) {
+                properties.put(name, System.getProperty(name));
+            }
+        }
+        List<String> args = new ArrayList<>();
+        properties.forEach((key, value) -> args.add("--" + key + "=" + value));
+        context = new SpringApplicationBuilder(HmDianPingApplication.class)
+                .run(args.toArray(new String[0]));
+        baseUrl = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port");
+        System.out.println("应用已启动：" + baseUrl);
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public StringRedisTemplate redis() {
+        return context.getBean(StringRedisTemplate.class);
+    }
+
+    public JdbcTemplate jdbc() {
+        return context.getBean(JdbcTemplate.class);
+    }
+
+    public MeterRegistry meterRegistry() {
+        return context.getBean(MeterRegistry.class);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (context != null) {
+            context.close();
+        }
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.hmdp.loadtest;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 浏览流：打开博客详情，再按游标向下滚动评论直到最后一页，然后换下一篇博客。
+ * 项目中还没有关注推送的接口，这里用博客详情加评论的游标分页模拟滚动浏览。
+ */
+public class FeedScrollScenario implements Scenario {
+
+    private static final long[] BLOG_IDS = {4, 5, 6, 7};
+    private static final int COMMENTS_PER_BLOG = 300;
+
+    /**
+     * 每个线程下一步要做的事
+     */
+    private static final int NEXT_DETAIL = 0;
+    private static final int NEXT_FIRST_PAGE = 1;
+    private static final int SCROLLING = 2;
+
+    private int[] blogCursor;
+    private int[] states;
+
+    @Override
+    public String name() {
+        return "feed-scroll";
+    }
+
+    @Override
+    public int defaultWorkers() {
+        return 100;
+    }
+
+    @Override
+    public int defaultRate() {
+        return 100;
+    }
+
+    @Override
+    public void prepare(EmbeddedEnvironment environment) {
+        List<Object[]> rows = new ArrayList<>(BLOG_IDS.length * COMMENTS_PER_BLOG);
+        for (long blogId : BLOG_IDS) {
+            for (int i = 0; i < COMMENTS_PER_BLOG; i++) {
+                rows.add(new Object[]{(long) (i % 10 + 1), blogId, "压测评论" + i});
+            }
+        }
+        environment.jdbc().batchUpdate("INSERT INTO tb_blog_comments (user_id, blog_id, parent_id, answer_id, "
+                + "content, liked, status) VALUES (?, ?, 0, 0, ?, 0, 0)", rows);
+        blogCursor = new int[4096];
+        states = new int[4096];
+    }
+
+    @Override
+    public HttpCall next(int worker, HttpCall previous) {
+        // 每个线程只访问自己的槽位，不需要同步
+        int slot = worker % states.length;
+        long blogId = BLOG_IDS[blogCursor[slot] % BLOG_IDS.length];
+        switch (states[slot]) {
+            case NEXT_DETAIL:
+                states[slot] = NEXT_FIRST_PAGE;
+                return HttpCall.get("/blog/" + blogId);
+            case NEXT_FIRST_PAGE:
+                states[slot] = SCROLLING;
+                return HttpCall.get("/blog-comments/of/blog?blogId=" + blogId);
+            default:
+                Long lastId = lastCommentId(previous);
+                if (lastId != null) {
+                    return HttpCall.get("/blog-comments/of/blog?blogId=" + blogId + "&lastId=" + lastId);
+                }
+                // 滚到底了，换下一篇
+                blogCursor[slot]++;
+                states[slot] = NEXT_FIRST_PAGE;
+                return HttpCall.get("/blog/" + BLOG_IDS[blogCursor[slot] % BLOG_IDS.length]);
+        }
+    }
+
+    private static Long lastCommentId(HttpCall previous) {
+        if (previous.getOutcome() != HttpCall.Outcome.OK) {
+            return null;
+        }
+        Object data = JSONUtil.parseObj(previous.getResponseBody()).get("data");
+        if (!(data instanceof JSONArray) || ((JSONArray) data).isEmpty()) {
+            return null;
+        }
+        JSONArray comments = (JSONArray) data;
+        return comments.getJSONObject(comments.size() - 1).getLong("id");
+    }
+}
@@ -0,0 +1,39 @@
+package com.hmdp.loadtest;
+
+/**
+ * 热门博客翻页：每个线程依次请求/blog/hot的前几页，未登录访问。
+ */
+public class HotBlogScanScenario implements Scenario {
+
+    private static final int PAGES = 5;
+
+    private int[] pages;
+
+    @Override
+    public String name() {
+        return "hot-blog-scan";
+    }
+
+    @Override
+    public int defaultWorkers() {
+        return 100;
+    }
+
+    @Override
+    public int defaultRate() {
+        return 200;
+    }
+
+    @Override
+    public void prepare(EmbeddedEnvironment environment) {
+        pages = new int[4096];
+    }
+
+    @Override
+    public HttpCall next(int worker, HttpCall previous) {
+        // 每个线程只访问自己的槽位，不需要同步
+        int page = pages[worker % pages.length] % PAGES + 1;
+        pages[worker % pages.length]++;
+        return HttpCall.get("/blog/hot?current=" + page);
+    }
+}
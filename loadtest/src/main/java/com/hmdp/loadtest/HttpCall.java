@@ -0,0 +1,124 @@
+package com.hmdp.loadtest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 一次HTTP请求及其结果。使用JDK的HttpURLConnection，读完响应体后连接回到keep-alive池中复用。
+ */
+public class HttpCall {
+
+    /**
+     * 请求结果分类
+     */
+    public enum Outcome {
+        /**
+         * Result.success为true
+         */
+        OK,
+        /**
+         * 业务失败，Result.success为false
+         */
+        FAIL,
+        /**
+         * 被限流或降载，HTTP 429
+         */
+        REJECTED,
+        /**
+         * 其他状态码或网络异常
+         */
+        ERROR
+    }
+
+    private final String method;
+    private final String path;
+    private final String token;
+    private final String body;
+
+    private Outcome outcome;
+    private int status;
+    private String responseBody;
+
+    private HttpCall(String method, String path, String token, String body) {
+        this.method = method;
+        this.path = path;
+        this.token = token;
+        this.body = body;
+    }
+
+    public static HttpCall get(String path) {
+        return new HttpCall("GET", path, null, null);
+    }
+
+    public static HttpCall get(String path, String token) {
+        return new HttpCall("GET", path, token, null);
+    }
+
+    public static HttpCall post(String path, String token, String body) {
+        return new HttpCall("POST", path, token, body);
+    }
+
+    void execute(String baseUrl) {
+        HttpURLConnection connection = null;
+        try {
+            connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(30000);
+            if (token != null) {
+                connection.setRequestProperty("authorization", token);
+            }
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            status = connection.getResponseCode();
+            InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            responseBody = in == null ? "" : readAll(in);
+            if (status == 429) {
+                outcome = Outcome.REJECTED;
+            } else if (status != 200) {
+                outcome = Outcome.ERROR;
+            } else {
+                outcome = responseBody.contains("\"success\":true") ? Outcome.OK : Outcome.FAIL;
+            }
+        } catch (IOException e) {
+            outcome = Outcome.ERROR;
+            if (connection != null) {
+                connection.disconnect();
+            }
+        }
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = input.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+}
@@ -0,0 +1,87 @@
+package com.hmdp.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 按场景启动固定数量的工作线程，持续到截止时间。
+ * <ul>
+ *     <li>开环模型（速率大于0）：所有线程合计按固定速率发请求，第k个请求的计划发送时间为 开始时间+k/速率，
+ *     由第 k%线程数 个线程发送。服务端变慢时线程还在等上一个响应，之后的请求晚发，响应时间仍从计划发送时间算起，
+ *     排队等待的时间也计入延迟，不会因为协调遗漏（coordinated omission）低估尾延迟；线程数要覆盖 速率*响应时间</li>
+ *     <li>闭环模型（速率为0）：每个线程收到响应后立即发下一个请求，服务端变慢时压力随之下降，尾延迟偏乐观，只用来探测最大吞吐</li>
+ * </ul>
+ */
+public class LoadDriver {
+
+    private final EmbeddedEnvironment environment;
+
+    public LoadDriver(EmbeddedEnvironment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * @param rate 每秒请求数，0表示闭环
+     */
+    public ScenarioResult run(Scenario scenario, int workers, int rate, long durationMillis) throws Exception {
+        scenario.prepare(environment);
+        ScenarioResult result = new ScenarioResult(scenario.name(), workers, rate);
+        // 开环时每个线程两次发送的间隔
+        long interval = rate > 0 ? TimeUnit.SECONDS.toNanos(workers) / rate : 0;
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+        CountDownLatch ready = new CountDownLatch(workers);
+        CountDownLatch start = new CountDownLatch(1);
+        // 开始时间和截止时间
+        long[] window = new long[2];
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            int worker = i;
+            futures.add(executor.submit(() -> {
+                ready.countDown();
+                start.await();
+                HttpCall previous = null;
+                long intended = window[0] + (rate > 0 ? TimeUnit.SECONDS.toNanos(worker) / rate : 0);
+                while (intended < window[1]) {
+                    HttpCall call = scenario.next(worker, previous);
+                    if (rate == 0) {
+                        intended = System.nanoTime();
+                    }
+                    for (long wait = intended - System.nanoTime(); wait > 0; wait = intended - System.nanoTime()) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    call.execute(environment.getBaseUrl());
+                    // 从计划发送时间算起，等待上一个响应而晚发的时间也计入
+                    result.record(call, System.nanoTime() - intended);
+                    previous = call;
+                    intended += interval;
+                }
+                return null;
+            }));
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        window[0] = begin;
+        window[1] = begin + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        if (scenario.tickMillis() > 0) {
+            ticker.scheduleAtFixedRate(() -> scenario.tick(environment),
+                    scenario.tickMillis(), scenario.tickMillis(), TimeUnit.MILLISECONDS);
+        }
+        // countDown之前写入的window对工作线程可见
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            ticker.shutdownNow();
+            executor.shutdownNow();
+        }
+        result.setDurationNanos(System.nanoTime() - begin);
+        scenario.finish(environment);
+        result.setViolations(scenario.verify(environment));
+        return result;
+    }
+}
@@ -0,0 +1,158 @@
+package com.hmdp.loadtest;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/**
+ * 压测入口：java -jar target/loadtest.jar [场景名...]，不指定时依次执行全部场景。
+ * <ul>
+ *     <li>-Dloadtest.duration：每个场景持续的秒数，默认15</li>
+ *     <li>-Dloadtest.workers：并发数，默认使用各场景自己的设置</li>
+ *     <li>-Dloadtest.rate：每秒请求数，默认使用各场景自己的设置；0表示闭环，用来探测最大吞吐，此时的尾延迟偏乐观</li>
+ *     <li>-Dloadtest.rate-limit：是否保留限流和降载，默认false</li>
+ *     <li>-Dloadtest.results：报告目录，默认results</li>
+ *     <li>-Dhmdp.*：原样覆盖应用配置</li>
+ * </ul>
+ * 报告包括控制台表格、JSON汇总，以及每个场景的HdrHistogram百分位分布（.hgrm，可用HdrHistogram的绘图工具查看）。
+ * 任何场景的{@link Scenario#verify 预期}未满足时，输出报告后以状态1退出。
+ */
+public class LoadTestRunner {
+
+    private static final DateTimeFormatter FILE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    public static void main(String[] args) {
+        int status = 0;
+        try {
+            status = run(args) ? 0 : 1;
+        } catch (Throwable e) {
+            e.printStackTrace();
+            status = 1;
+        }
+        // 内嵌Redis服务端的线程不是守护线程
+        System.exit(status);
+    }
+
+    /**
+     * @return 所有场景的预期都满足
+     */
+    private static boolean run(String[] args) throws Exception {
+        // HttpURLConnection默认每个地址只保留5个空闲连接，并发高时会不断新建连接
+        System.setProperty("http.maxConnections", "2000");
+
+        Map<String, Scenario> scenarios = new LinkedHashMap<>();
+        for (Scenario scenario : Arrays.asList(new ShopStampedeScenario(), new SeckillBurstScenario(),
+                new HotBlogScanScenario(), new FeedScrollScenario(), new ShopExpiryScenario())) {
+            scenarios.put(scenario.name(), scenario);
+        }
+        List<Scenario> selected = new ArrayList<>();
+        if (args.length == 0) {
+            selected.addAll(scenarios.values());
+        }
+        for (String name : args) {
+            Scenario scenario = scenarios.get(name);
+            if (scenario == null) {
+                System.err.println("未知场景：" + name + "，可选：" + scenarios.keySet());
+                System.exit(1);
+            }
+            selected.add(scenario);
+        }
+        long durationMillis = Long.getLong("loadtest.duration", 15L) * 1000;
+        Integer workers = Integer.getInteger("loadtest.workers");
+        Integer rate = Integer.getInteger("loadtest.rate");
+
+        Map<String, Object> overrides = new LinkedHashMap<>();
+        for (Scenario scenario : selected) {
+            overrides.putAll(scenario.properties());
+        }
+        List<ScenarioResult> results = new ArrayList<>();
+        try (EmbeddedEnvironment environment = new EmbeddedEnvironment(overrides)) {
+            environment.start();
+            LoadDriver driver = new LoadDriver(environment);
+            for (Scenario scenario : selected) {
+                System.out.println("开始场景：" + scenario.name());
+                results.add(driver.run(scenario, workers != null ? workers : scenario.defaultWorkers(),
+                        rate != null ? rate : scenario.defaultRate(), durationMillis));
+            }
+        }
+        report(results);
+        boolean passed = true;
+        for (ScenarioResult result : results) {
+            for (String violation : result.getViolations()) {
+                System.err.println("未通过：" + result.getName() + "：" + violation);
+                passed = false;
+            }
+        }
+        return passed;
+    }
+
+    private static void report(List<ScenarioResult> results) throws Exception {
+        Path dir = Paths.get(System.getProperty("loadtest.results", "results"));
+        Files.createDirectories(dir);
+        String time = LocalDateTime.now().format(FILE_TIME_FORMATTER);
+
+        System.out.println();
+        System.out.printf("%-16s %7s %7s %9s %9s %8s %8s %8s %9s %9s %9s %9s %9s%n", "scenario", "workers", "rate",
+                "requests", "req/s", "fail%", "429%", "error%", "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+        JSONArray summary = new JSONArray();
+        for (ScenarioResult result : results) {
+            System.out.printf("%-16s %7d %7d %9d %9.1f %8.2f %8.2f %8.2f %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                    result.getName(), result.getWorkers(), result.getRate(), result.getTotal(), result.getThroughput(),
+                    result.rate(HttpCall.Outcome.FAIL) * 100, result.rate(HttpCall.Outcome.REJECTED) * 100,
+                    result.rate(HttpCall.Outcome.ERROR) * 100,
+                    result.percentileMillis(50), result.percentileMillis(90), result.percentileMillis(99),
+                    result.percentileMillis(99.9), result.getMaxMillis());
+            summary.add(toJson(result));
+
+            Path hgrm = dir.resolve("loadtest-" + time + "-" + result.getName() + ".hgrm");
+            try (PrintStream out = new PrintStream(Files.newOutputStream(hgrm), true, "UTF-8")) {
+                // 记录单位是微秒，输出按毫秒
+                result.getHistogram().outputPercentileDistribution(out, 1000.0);
+            }
+        }
+        Path json = dir.resolve("loadtest-" + time + ".json");
+        Files.write(json, JSONUtil.toJsonPrettyStr(summary).getBytes(StandardCharsets.UTF_8));
+        System.out.println("报告已写入：" + json.toAbsolutePath());
+    }
+
+    private static JSONObject toJson(ScenarioResult result) {
+        JSONObject item = new JSONObject(new LinkedHashMap<>());
+        item.set("scenario", result.getName());
+        item.set("workers", result.getWorkers());
+        item.set("rate", result.getRate());
+        item.set("durationSeconds", result.getDurationSeconds());
+        item.set("requests", result.getTotal());
+        item.set("throughput", result.getThroughput());
+        JSONObject outcomes = new JSONObject(new LinkedHashMap<>());
+        for (HttpCall.Outcome outcome : HttpCall.Outcome.values()) {
+            outcomes.set(outcome.name().toLowerCase(), result.count(outcome));
+        }
+        item.set("outcomes", outcomes);
+        JSONObject latency = new JSONObject(new LinkedHashMap<>());
+        for (double percentile : PERCENTILES) {
+            latency.set("p" + percentile, result.percentileMillis(percentile));
+        }
+        latency.set("max", result.getMaxMillis());
+        item.set("latencyMillis", latency);
+        item.set("violations", result.getViolations());
+        // 压缩后的完整直方图，可用Histogram.decodeFromCompressedByteBuffer还原后与其他报告合并或对比
+        Histogram histogram = result.getHistogram();
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        item.set("histogram", Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length)));
+        return item;
+    }
+}
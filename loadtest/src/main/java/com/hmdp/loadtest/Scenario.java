@@ -0,0 +1,70 @@
+package com.hmdp.loadtest;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测场景。每个工作线程按{@link #next(int, HttpCall)}给出的顺序串行发请求，
+ * 下一个请求可以依赖上一个请求的响应，例如翻页时的游标。发送的节奏由{@link LoadDriver}按速率控制。
+ */
+public interface Scenario {
+
+    String name();
+
+    /**
+     * 默认并发数，可以用-Dloadtest.workers覆盖。开环时要覆盖 速率*响应时间，不够时请求排队晚发，计入延迟
+     */
+    int defaultWorkers();
+
+    /**
+     * 默认每秒请求数（所有线程合计），可以用-Dloadtest.rate覆盖，0表示闭环
+     */
+    int defaultRate();
+
+    /**
+     * 场景需要的应用配置，启动前合并所有选中场景的配置，同一次运行的其他场景也会受影响
+     */
+    default Map<String, Object> properties() {
+        return Collections.emptyMap();
+    }
+
+    /**
+     * 开始前准备数据，例如清空缓存、写入登录token
+     */
+    void prepare(EmbeddedEnvironment environment) throws Exception;
+
+    /**
+     * @param worker 工作线程编号
+     * @param previous 该线程上一个请求，第一次调用时为null
+     * @return 下一个请求
+     */
+    HttpCall next(int worker, HttpCall previous);
+
+    /**
+     * 压测期间按{@link #tickMillis()}周期调用，例如定时删除缓存模拟过期
+     */
+    default void tick(EmbeddedEnvironment environment) {
+    }
+
+    /**
+     * @return tick周期，0表示不需要
+     */
+    default long tickMillis() {
+        return 0;
+    }
+
+    /**
+     * 压测结束后调用，例如输出场景自己的统计
+     */
+    default void finish(EmbeddedEnvironment environment) {
+    }
+
+    /**
+     * 在{@link #finish}之后检查场景的预期，未满足时压测以非0状态退出
+     * @return 未满足的预期，为空表示通过
+     */
+    default List<String> verify(EmbeddedEnvironment environment) {
+        return Collections.emptyList();
+    }
+}
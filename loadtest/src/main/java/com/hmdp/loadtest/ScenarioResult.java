@@ -0,0 +1,108 @@
+package com.hmdp.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个场景的统计：HdrHistogram记录响应时间（微秒，3位有效数字），按结果分类计数。
+ */
+public class ScenarioResult {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final String name;
+    private final int workers;
+    private final int rate;
+    private final Histogram histogram = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+    private final Map<HttpCall.Outcome, LongAdder> outcomes = new EnumMap<>(HttpCall.Outcome.class);
+    private long durationNanos;
+    private List<String> violations = Collections.emptyList();
+
+    /**
+     * @param rate 计划的每秒请求数，0表示闭环
+     */
+    public ScenarioResult(String name, int workers, int rate) {
+        this.name = name;
+        this.workers = workers;
+        this.rate = rate;
+        for (HttpCall.Outcome outcome : HttpCall.Outcome.values()) {
+            outcomes.put(outcome, new LongAdder());
+        }
+    }
+
+    void record(HttpCall call, long latencyNanos) {
+        histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), MAX_LATENCY_MICROS));
+        outcomes.get(call.getOutcome()).increment();
+    }
+
+    void setDurationNanos(long durationNanos) {
+        this.durationNanos = durationNanos;
+    }
+
+    void setViolations(List<String> violations) {
+        this.violations = violations;
+    }
+
+    /**
+     * 未满足的场景预期，为空表示通过
+     */
+    public List<String> getViolations() {
+        return violations;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWorkers() {
+        return workers;
+    }
+
+    public int getRate() {
+        return rate;
+    }
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    public long getTotal() {
+        return histogram.getTotalCount();
+    }
+
+    public long count(HttpCall.Outcome outcome) {
+        return outcomes.get(outcome).sum();
+    }
+
+    public double rate(HttpCall.Outcome outcome) {
+        long total = getTotal();
+        return total == 0 ? 0 : (double) count(outcome) / total;
+    }
+
+    public double getThroughput() {
+        return durationNanos == 0 ? 0 : getTotal() / (durationNanos / 1e9);
+    }
+
+    /**
+     * @param percentile 百分位，如99.9
+     * @return 响应时间（毫秒）
+     */
+    public double percentileMillis(double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    public double getMaxMillis() {
+        return histogram.getMaxValue() / 1000.0;
+    }
+
+    public double getDurationSeconds() {
+        return durationNanos / 1e9;
+    }
+}
@@ -0,0 +1,73 @@
+package com.hmdp.loadtest;
+
+import cn.hutool.core.lang.UUID;
+import com.hmdp.utils.SystemConstants;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 秒杀：大量登录用户同时抢同一张库存很少的秒杀券。
+ * 登录token按UserServiceImpl.login的格式直接写入Redis，避免压测前先压一遍登录接口。
+ */
+public class SeckillBurstScenario implements Scenario {
+
+    private static final long VOUCHER_ID = 100L;
+    private static final int STOCK = 200;
+    private static final int USER_COUNT = 5000;
+    /**
+     * 压测用户的id从这里开始，避开hmdp.sql中已有的用户
+     */
+    private static final long FIRST_USER_ID = 100000L;
+
+    private final String[] tokens = new String[USER_COUNT];
+
+    @Override
+    public String name() {
+        return "seckill-burst";
+    }
+
+    @Override
+    public int defaultWorkers() {
+        return 500;
+    }
+
+    @Override
+    public int defaultRate() {
+        return 200;
+    }
+
+    @Override
+    public void prepare(EmbeddedEnvironment environment) {
+        environment.jdbc().update("DELETE FROM tb_seckill_voucher WHERE voucher_id = ?", VOUCHER_ID);
+        environment.jdbc().update("DELETE FROM tb_voucher WHERE id = ?", VOUCHER_ID);
+        environment.jdbc().update("INSERT INTO tb_voucher (id, shop_id, title, pay_value, actual_value, type, status) "
+                + "VALUES (?, 1, '压测秒杀券', 100, 10000, 1, 1)", VOUCHER_ID);
+        environment.jdbc().update("INSERT INTO tb_seckill_voucher (voucher_id, stock, begin_time, end_time) "
+                + "VALUES (?, ?, NOW(), DATEADD('DAY', 1, NOW()))", VOUCHER_ID, STOCK);
+
+        StringRedisTemplate redis = environment.redis();
+        redis.opsForValue().set(SECKILL_STOCK_KEY + VOUCHER_ID, String.valueOf(STOCK));
+        for (int i = 0; i < USER_COUNT; i++) {
+            String token = UUID.randomUUID().toString(true);
+            Map<String, String> user = new HashMap<>();
+            user.put("id", String.valueOf(FIRST_USER_ID + i));
+            user.put("nickName", SystemConstants.USER_NICK_NAME_PREFIX + i);
+            user.put("icon", "");
+            redis.opsForHash().putAll(LOGIN_USER_KEY + token, user);
+            redis.expire(LOGIN_USER_KEY + token, LOGIN_USER_TTL, TimeUnit.MINUTES);
+            tokens[i] = token;
+        }
+    }
+
+    @Override
+    public HttpCall next(int worker, HttpCall previous) {
+        String token = tokens[ThreadLocalRandom.current().nextInt(USER_COUNT)];
+        return HttpCall.post("/voucher-order/seckill/" + VOUCHER_ID, token, null);
+    }
+}
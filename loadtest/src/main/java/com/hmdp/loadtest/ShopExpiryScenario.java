@@ -0,0 +1,169 @@
+package com.hmdp.loadtest;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+
+/**
+ * 缓存雪崩：复制出一批商铺并在开始前集中写入缓存（模拟发布后的预热），有效期缩短为几秒，
+ * 压测期间均匀随机访问，每秒统计一次查询数据库的次数。跳过第一个有效期后，峰值超过平均值的{@link #MAX_PEAK_TO_MEAN}倍时不通过，
+ * 压测时间不足{@link #MIN_DURATION_SECONDS}秒时无法覆盖多个有效期，也不通过。
+ * 用 -Dhmdp.cache.expiry.jitter-ratio=0 -Dhmdp.cache.expiry.rewarm-enabled=false 对比不打散、不预热的情况，
+ * 建议 -Dloadtest.duration=60 覆盖多个有效期。
+ */
+public class ShopExpiryScenario implements Scenario {
+
+    private static final long FIRST_SHOP_ID = 10001;
+    private static final int SHOP_COUNT = 200;
+
+    private static final String SHOP_TTL = "10s";
+
+    /**
+     * 跳过的秒数，第一个有效期内只有未命中的冷启动查询，不计入
+     */
+    private static final int SKIP_SECONDS = 10;
+
+    private static final int MIN_DURATION_SECONDS = 30;
+
+    /**
+     * 每秒查询数据库次数的峰值/平均值上限
+     */
+    private static final double MAX_PEAK_TO_MEAN = 2;
+
+    private static final int WARM_UP_THREADS = 8;
+
+    private final List<Long> loadsPerSecond = Collections.synchronizedList(new ArrayList<>());
+    private long lastLoads;
+
+    @Override
+    public String name() {
+        return "shop-expiry";
+    }
+
+    @Override
+    public int defaultWorkers() {
+        return 20;
+    }
+
+    /**
+     * 速率低于单机吞吐，节点不饱和：CPU饱和时后台预热线程分不到时间片，观察到的是CPU不够而不是过期策略的效果
+     */
+    @Override
+    public int defaultRate() {
+        return 200;
+    }
+
+    @Override
+    public Map<String, Object> properties() {
+        Map<String, Object> properties = new LinkedHashMap<>();
+        properties.put("hmdp.cache.expiry.ttls.[" + CACHE_SHOP_KEY + "]", SHOP_TTL);
+        // 有效期只有几秒，检查周期相应缩短
+        properties.put("hmdp.cache.expiry.rewarm-interval-millis", 200);
+        // 嵌入式Redis偶尔停顿时熔断会让所有读落到数据库，这里只观察有效期边界上的压力
+        properties.put("hmdp.redis.circuit-breaker.enabled", false);
+        return properties;
+    }
+
+    @Override
+    public void prepare(EmbeddedEnvironment environment) throws Exception {
+        environment.jdbc().update("delete from tb_shop where id >= ?", FIRST_SHOP_ID);
+        List<Object[]> ids = new ArrayList<>(SHOP_COUNT);
+        List<String> keys = new ArrayList<>(SHOP_COUNT);
+        for (long id = FIRST_SHOP_ID; id < FIRST_SHOP_ID + SHOP_COUNT; id++) {
+            ids.add(new Object[]{id});
+            keys.add(CACHE_SHOP_KEY + id);
+        }
+        environment.jdbc().batchUpdate("insert into tb_shop (id, name, type_id, images, area, address, x, y, "
+                + "avg_price, sold, comments, score, open_hours) select ?, name, type_id, images, area, address, "
+                + "x, y, avg_price, sold, comments, score, open_hours from tb_shop where id = 1", ids);
+        environment.redis().delete(keys);
+        // 并发预热，所有key在一秒内写入
+        ExecutorService executor = Executors.newFixedThreadPool(WARM_UP_THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(SHOP_COUNT);
+            for (long id = FIRST_SHOP_ID; id < FIRST_SHOP_ID + SHOP_COUNT; id++) {
+                HttpCall call = HttpCall.get("/shop/" + id);
+                futures.add(executor.submit(() -> call.execute(environment.getBaseUrl())));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        loadsPerSecond.clear();
+        lastLoads = loads(environment);
+    }
+
+    @Override
+    public HttpCall next(int worker, HttpCall previous) {
+        return HttpCall.get("/shop/" + (FIRST_SHOP_ID + ThreadLocalRandom.current().nextInt(SHOP_COUNT)));
+    }
+
+    @Override
+    public void tick(EmbeddedEnvironment environment) {
+        long loads = loads(environment);
+        loadsPerSecond.add(loads - lastLoads);
+        lastLoads = loads;
+    }
+
+    @Override
+    public long tickMillis() {
+        return 1000;
+    }
+
+    @Override
+    public void finish(EmbeddedEnvironment environment) {
+        if (loadsPerSecond.isEmpty()) {
+            return;
+        }
+        long max = Collections.max(loadsPerSecond);
+        double avg = loadsPerSecond.stream().mapToLong(Long::longValue).average().orElse(0);
+        System.out.println("每秒查询数据库次数：" + loadsPerSecond);
+        System.out.printf("平均%.1f次/秒，峰值%d次/秒，峰值/平均=%.2f%n", avg, max, avg == 0 ? 0 : max / avg);
+        Map<String, Long> rewarms = new TreeMap<>();
+        for (Counter counter : environment.meterRegistry().find("cache.rewarm").counters()) {
+            rewarms.put(counter.getId().getTag("result"), (long) counter.count());
+        }
+        System.out.println("后台预热：" + rewarms);
+    }
+
+    @Override
+    public List<String> verify(EmbeddedEnvironment environment) {
+        List<Long> samples;
+        synchronized (loadsPerSecond) {
+            samples = new ArrayList<>(loadsPerSecond);
+        }
+        if (samples.size() < MIN_DURATION_SECONDS) {
+            return Collections.singletonList("压测" + samples.size() + "秒，不足" + MIN_DURATION_SECONDS + "秒，无法覆盖多个有效期");
+        }
+        List<Long> measured = samples.subList(SKIP_SECONDS, samples.size());
+        long max = Collections.max(measured);
+        double avg = measured.stream().mapToLong(Long::longValue).average().orElse(0);
+        if (max > avg * MAX_PEAK_TO_MEAN) {
+            return Collections.singletonList(String.format("第%d秒之后每秒查询数据库峰值%d次，超过平均%.1f次的%.1f倍",
+                    SKIP_SECONDS, max, avg, MAX_PEAK_TO_MEAN));
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * 缓存未命中和预热时查询数据源的累计次数
+     */
+    private static long loads(EmbeddedEnvironment environment) {
+        Timer timer = environment.meterRegistry().find("cache.load").tag("prefix", CACHE_SHOP_KEY).timer();
+        return timer == null ? 0 : timer.count();
+    }
+}
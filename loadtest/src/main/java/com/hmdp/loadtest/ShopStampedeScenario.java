@@ -0,0 +1,59 @@
+package com.hmdp.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+
+/**
+ * 缓存击穿：大量并发同时请求少数几个热点商铺，开始时缓存为空，压测期间定时删除缓存模拟过期，
+ * 观察缓存重建期间的尾延迟和数据库压力。
+ */
+public class ShopStampedeScenario implements Scenario {
+
+    private static final long[] HOT_SHOP_IDS = {1, 2, 3};
+
+    /**
+     * 删除缓存的周期，模拟热点key过期
+     */
+    private static final long EXPIRE_INTERVAL_MILLIS = 2000L;
+
+    @Override
+    public String name() {
+        return "shop-stampede";
+    }
+
+    @Override
+    public int defaultWorkers() {
+        return 200;
+    }
+
+    @Override
+    public int defaultRate() {
+        return 100;
+    }
+
+    @Override
+    public void prepare(EmbeddedEnvironment environment) {
+        tick(environment);
+    }
+
+    @Override
+    public HttpCall next(int worker, HttpCall previous) {
+        return HttpCall.get("/shop/" + HOT_SHOP_IDS[worker % HOT_SHOP_IDS.length]);
+    }
+
+    @Override
+    public void tick(EmbeddedEnvironment environment) {
+        List<String> keys = new ArrayList<>(HOT_SHOP_IDS.length);
+        for (long id : HOT_SHOP_IDS) {
+            keys.add(CACHE_SHOP_KEY + id);
+        }
+        environment.redis().delete(keys);
+    }
+
+    @Override
+    public long tickMillis() {
+        return EXPIRE_INTERVAL_MILLIS;
+    }
+}
@@ -0,0 +1,29 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 批量写入的配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.bulk-write")
+public class BulkWriteProperties {
+
+    /**
+     * 一条多行INSERT最多包含的行数，也是BATCH执行器每次发送的语句数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 合并写入时，第一行入队后最多等待多久凑满一批（毫秒），0表示只合并已经积压的行
+     */
+    private long flushIntervalMillis = 20;
+
+    /**
+     * 每个合并写入队列的容量，队列满时提交直接失败
+     */
+    private int queueCapacity = 100000;
+}
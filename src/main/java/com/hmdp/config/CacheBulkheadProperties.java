@@ -0,0 +1,41 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 缓存未命中时查询数据源的隔离配置，每个key前缀（每类实体）单独限制并发
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.cache.bulkhead")
+public class CacheBulkheadProperties {
+
+    /**
+     * 是否限制并发
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每个key前缀同时查询数据源的默认上限
+     */
+    private int maxConcurrent = 5;
+
+    /**
+     * 等待许可的最长时间（毫秒），超时后返回旧数据或失败
+     */
+    private long maxWaitMillis = 300;
+
+    /**
+     * 按key前缀覆盖并发上限，如 cache:shop: -> 8
+     */
+    private Map<String, Integer> limits = new HashMap<>();
+
+    public int maxConcurrent(String keyPrefix) {
+        return limits.getOrDefault(keyPrefix, maxConcurrent);
+    }
+}
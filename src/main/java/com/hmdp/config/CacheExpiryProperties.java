@@ -0,0 +1,54 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 缓存过期策略：有效期随机打散和访问频繁的key到期前的后台预热
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.cache.expiry")
+public class CacheExpiryProperties {
+
+    /**
+     * 有效期随机延长的最大比例，实际有效期在 [ttl, ttl*(1+jitterRatio)) 之间均匀分布，0表示不打散
+     */
+    private double jitterRatio = 0.2;
+
+    /**
+     * 按key前缀覆盖调用方传入的有效期，如 cache:shop: -> 30m
+     */
+    private Map<String, Duration> ttls = new HashMap<>();
+
+    /**
+     * 是否在访问频繁的key到期前由后台重新查询数据源
+     */
+    private boolean rewarmEnabled = true;
+
+    /**
+     * 一个有效期内至少被访问多少次才会预热，访问更少的key按原有效期自然过期
+     */
+    private int rewarmMinHits = 5;
+
+    /**
+     * 剩余有效期低于 有效期*该比例 时可以开始预热，实际尽量在过期前不久预热，只有同一批写入的key集中过期时才提前开始。
+     * 同一批写入的key要在这段时间内以不超过稳态2倍的速率预热完，比例越小，批量写入后的预热峰值越高
+     */
+    private double rewarmAheadRatio = 0.7;
+
+    /**
+     * 检查到期key的周期（毫秒）
+     */
+    private long rewarmIntervalMillis = 1000;
+
+    /**
+     * 最多登记预热的key个数，超过后新写入的key不再预热
+     */
+    private int rewarmMaxKeys = 10000;
+}
@@ -0,0 +1,39 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 缓存失效outbox的消费配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.cache.outbox")
+public class CacheOutboxProperties {
+
+    /**
+     * 轮询outbox表的周期（毫秒），也是数据库提交后缓存最长的不一致时间
+     */
+    private long pollIntervalMillis = 200;
+
+    /**
+     * 每次最多读取的记录数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 第一次删除后多久再删除一次（毫秒），清除提交前读到旧数据、在第一次删除之后才写回的缓存
+     */
+    private long doubleDeleteDelayMillis = 500;
+
+    /**
+     * id不连续时等待较小id提交的最长时间（毫秒），超时视为事务已回滚
+     */
+    private long gapTimeoutMillis = 5000;
+
+    /**
+     * 记录保留的分钟数，新启动的节点只从最新的记录开始消费
+     */
+    private long retentionMinutes = 60;
+}
@@ -0,0 +1,44 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 启动时的缓存预热配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.cache.warmup")
+public class CacheWarmupProperties {
+
+    /**
+     * 是否在启动后预热热门店铺、店铺类型和店铺的优惠券
+     */
+    private boolean enabled = true;
+
+    /**
+     * 预热销量和评论数最高的多少个店铺
+     */
+    private int topShops = 1000;
+
+    /**
+     * 每批查询和写入的店铺个数
+     */
+    private int batchSize = 100;
+
+    /**
+     * 同时执行的批次数
+     */
+    private int parallelism = 4;
+
+    /**
+     * 预热覆盖率达到该比例后就绪探针才返回UP
+     */
+    private double minCoverage = 0.9;
+
+    /**
+     * 启动超过该时间（秒）后无论覆盖率多少都视为就绪，避免Redis不可用时实例一直无法接收流量
+     */
+    private long readyTimeoutSeconds = 60;
+}
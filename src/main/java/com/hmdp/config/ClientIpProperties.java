@@ -0,0 +1,23 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 客户端IP解析的配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.client-ip")
+public class ClientIpProperties {
+
+    /**
+     * 可信的反向代理，IP或CIDR，如10.0.0.0/8。
+     * 只有直连地址是可信代理时才读取X-Forwarded-For和X-Real-IP，为空时始终使用直连地址
+     */
+    private List<String> trustedProxies = new ArrayList<>();
+}
@@ -0,0 +1,49 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 领域事件outbox的分发配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.event")
+public class EventBusProperties {
+
+    /**
+     * 轮询outbox表的周期（毫秒）
+     */
+    private long pollIntervalMillis = 100;
+
+    /**
+     * 每批最多读取的事件数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 处理事件的线程数，聚合key按哈希分配到固定的线程
+     */
+    private int workers = 4;
+
+    /**
+     * 最多处理几次，失败次数达到后不再重试，同一聚合之后的事件继续处理
+     */
+    private int maxAttempts = 10;
+
+    /**
+     * 第一次重试的间隔（毫秒），之后每次翻倍
+     */
+    private long retryBackoffMillis = 1000;
+
+    /**
+     * 重试间隔的上限（毫秒）
+     */
+    private long maxRetryBackoffMillis = 5 * 60 * 1000L;
+
+    /**
+     * 已处理的记录保留的分钟数，重试次数用尽的记录不清理
+     */
+    private long retentionMinutes = 60;
+}
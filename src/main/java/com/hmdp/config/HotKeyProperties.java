@@ -0,0 +1,44 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 缓存热点key探测相关配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.cache.hot-key")
+public class HotKeyProperties {
+
+    /**
+     * 是否探测热点key并在本地保存副本
+     */
+    private boolean enabled = true;
+
+    /**
+     * 采样比例，0~1，只有被采样的访问才计入频率统计
+     */
+    private double sampleRate = 0.1;
+
+    /**
+     * 单个key的访问频率达到该值（次/秒，单节点）时视为热点
+     */
+    private long thresholdQps = 200;
+
+    /**
+     * 热点key的访问频率低于 thresholdQps*demoteRatio 时才降级，在阈值附近波动的key不会反复升降级
+     */
+    private double demoteRatio = 0.7;
+
+    /**
+     * 最多跟踪的候选热点key个数
+     */
+    private int topK = 32;
+
+    /**
+     * 本地副本的有效期（毫秒），其他节点修改数据后，本节点最多在这段时间内读到旧值
+     */
+    private long replicaTtlMillis = 1000;
+}
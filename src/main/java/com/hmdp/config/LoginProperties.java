@@ -0,0 +1,56 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 登录凭证相关配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.login")
+public class LoginProperties {
+
+    public static final String TOKEN_MODE_REDIS = "redis";
+    public static final String TOKEN_MODE_SIGNED = "signed";
+
+    /**
+     * 登录时签发的凭证类型：redis：随机token，用户信息存入Redis；signed：用户信息签名后放在token中，校验时不访问Redis
+     */
+    private String tokenMode = TOKEN_MODE_REDIS;
+
+    /**
+     * 签名密钥，keyId -> Base64编码的密钥，不要写在仓库中，通过环境变量或密钥配置注入。
+     * 轮换密钥时先加入新密钥，再切换activeKeyId，旧密钥保留到旧token全部过期
+     */
+    private Map<String, String> signingKeys = new LinkedHashMap<>();
+
+    /**
+     * 签发新token使用的密钥id
+     */
+    private String activeKeyId;
+
+    /**
+     * 已作废的密钥id，密钥泄露后加入，不能再配置这些id的密钥，用它们签发的token一律无效。换新密钥时使用新的id
+     */
+    private Set<String> retiredKeyIds = new HashSet<>();
+
+    /**
+     * 可以使用管理端接口的用户id，默认为空，即所有人都不能访问
+     */
+    private Set<Long> adminUserIds = new HashSet<>();
+
+    public boolean isSignedMode() {
+        return TOKEN_MODE_SIGNED.equals(tokenMode);
+    }
+
+    public boolean isAdmin(Long userId) {
+        return userId != null && adminUserIds.contains(userId);
+    }
+}
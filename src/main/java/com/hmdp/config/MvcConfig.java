@@ -1,9 +1,19 @@
 package com.hmdp.config;
 
+import com.hmdp.utils.ClientIpResolver;
 import com.hmdp.utils.LoginInterceptor;
+import com.hmdp.utils.LoginUserCache;
+import com.hmdp.utils.RateLimitInterceptor;
+import com.hmdp.utils.RateLimiter;
 import com.hmdp.utils.RefreshTokenInterceptor;
+import com.hmdp.utils.SignedTokenCodec;
+import com.hmdp.utils.TimedInterceptor;
+import com.hmdp.utils.TokenRevocationList;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.servlet.HandlerInterceptor;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -13,20 +23,57 @@ import javax.annotation.Resource;
 public class MvcConfig implements WebMvcConfigurer {
 
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
+    private LoginUserCache loginUserCache;
+
+    @Resource
+    private SignedTokenCodec signedTokenCodec;
+
+    @Resource
+    private TokenRevocationList tokenRevocationList;
+
+    @Resource
+    private RateLimiter rateLimiter;
+
+    @Resource
+    private ClientIpResolver clientIpResolver;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 是否启用@RateLimited和@Shed，压测等所有请求来自同一IP的场景下可以关闭
+     */
+    @Value("${hmdp.rate-limit.enabled:true}")
+    private boolean rateLimitEnabled;
+
+    @Bean
+    public RateLimitInterceptor rateLimitInterceptor() {
+        return new RateLimitInterceptor(rateLimiter, clientIpResolver);
+    }
 
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
-        registry.addInterceptor(new LoginInterceptor())
+        registry.addInterceptor(timed(new LoginInterceptor()))
                 .excludePathPatterns(
                         "/user/code",
                         "/user/login",
                         "/blog/hot",
+                        "/blog/{id}",
+                        "/blog-comments/of/blog",
                         "/upload/**",
                         "/shop-type/**",
                         "/voucher/**",
                         "/shop/**"
                 ).order(1);
-        registry.addInterceptor(new RefreshTokenInterceptor(stringRedisTemplate)).order(0);
+        // 限流需要按登录用户计数，放在刷新token之后；token校验大多命中本地缓存，不会给被限流的请求增加Redis访问
+        if (rateLimitEnabled) {
+            registry.addInterceptor(timed(rateLimitInterceptor())).order(0);
+        }
+        registry.addInterceptor(timed(new RefreshTokenInterceptor(loginUserCache, signedTokenCodec, tokenRevocationList)))
+                .order(-1);
+    }
+
+    private HandlerInterceptor timed(HandlerInterceptor interceptor) {
+        return new TimedInterceptor(interceptor, meterRegistry);
     }
 }
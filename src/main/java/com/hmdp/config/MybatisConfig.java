@@ -2,16 +2,30 @@ package com.hmdp.config;
 
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
+import com.baomidou.mybatisplus.extension.plugins.inner.DynamicTableNameInnerInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.hmdp.utils.MybatisMetricsInterceptor;
+import com.hmdp.utils.VoucherOrderSharding;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.Collections;
+
 @Configuration
 public class MybatisConfig {
     @Bean
-    public MybatisPlusInterceptor mybatisPlusInterceptor() {
+    public MybatisPlusInterceptor mybatisPlusInterceptor(VoucherOrderSharding voucherOrderSharding) {
         MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
+        // 先改写表名，分页插件生成的count语句也会落到分表上
+        interceptor.addInnerInterceptor(new DynamicTableNameInnerInterceptor(
+                Collections.singletonMap(VoucherOrderSharding.LOGIC_TABLE, voucherOrderSharding)));
         interceptor.addInnerInterceptor(new PaginationInnerInterceptor(DbType.MYSQL));
         return interceptor;
     }
+
+    @Bean
+    public MybatisMetricsInterceptor mybatisMetricsInterceptor(MeterRegistry meterRegistry) {
+        return new MybatisMetricsInterceptor(meterRegistry);
+    }
 }
@@ -0,0 +1,25 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 优惠券订单分表的配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.order-sharding")
+public class OrderShardingProperties {
+
+    /**
+     * 分表个数，物理表为tb_voucher_order_0 ~ tb_voucher_order_{shards-1}。
+     * 必须是2的幂且不超过16；扩容时翻倍，每张表只需要把一半的行迁到新表
+     */
+    private int shards = 4;
+
+    /**
+     * 跨分表查询的超时时间（毫秒）
+     */
+    private long queryTimeoutMillis = 3000;
+}
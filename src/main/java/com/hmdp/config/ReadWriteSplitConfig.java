@@ -0,0 +1,59 @@
+package com.hmdp.config;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.utils.ReadWriteRoutingDataSource;
+import com.hmdp.utils.ReadWriteRoutingInterceptor;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * hmdp.datasource.enabled=true时用读写分离的数据源替换自动配置的单个数据源
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "hmdp.datasource", name = "enabled", havingValue = "true")
+public class ReadWriteSplitConfig {
+
+    /**
+     * 替换自动配置的数据源，事务管理器、MyBatis和JdbcTemplate都使用它
+     */
+    @Bean
+    public ReadWriteRoutingDataSource dataSource(DataSourceProperties dataSourceProperties,
+                                                        ReadWriteSplitProperties properties,
+                                                        MeterRegistry meterRegistry) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class).build();
+        primary.setPoolName("primary");
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        List<ReadWriteSplitProperties.Replica> configured = properties.getReplicas();
+        for (int i = 0; i < configured.size(); i++) {
+            ReadWriteSplitProperties.Replica replica = configured.get(i);
+            String name = StrUtil.blankToDefault(replica.getName(), "replica-" + i);
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName(name);
+            dataSource.setDriverClassName(dataSourceProperties.determineDriverClassName());
+            dataSource.setJdbcUrl(replica.getUrl());
+            dataSource.setUsername(StrUtil.blankToDefault(replica.getUsername(),
+                    dataSourceProperties.determineUsername()));
+            dataSource.setPassword(replica.getUsername() == null ? dataSourceProperties.determinePassword()
+                    : replica.getPassword());
+            dataSource.setMaximumPoolSize(replica.getMaxPoolSize());
+            dataSource.setReadOnly(true);
+            replicas.put(name, dataSource);
+        }
+        return new ReadWriteRoutingDataSource(primary, replicas, properties, meterRegistry);
+    }
+
+    @Bean
+    public ReadWriteRoutingInterceptor readWriteRoutingInterceptor() {
+        return new ReadWriteRoutingInterceptor();
+    }
+}
@@ -0,0 +1,70 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读写分离：spring.datasource为主库，这里配置从库和延迟检查
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.datasource")
+public class ReadWriteSplitProperties {
+
+    /**
+     * 是否启用读写分离，关闭时只使用spring.datasource
+     */
+    private boolean enabled = false;
+
+    /**
+     * 从库列表，轮询使用
+     */
+    private List<Replica> replicas = new ArrayList<>();
+
+    /**
+     * 复制延迟超过多少秒的从库不再路由，全部超过时回到主库；同时也是写入后读主库的时长
+     */
+    private long maxLagSeconds = 3;
+
+    /**
+     * 检查从库延迟的周期（毫秒）
+     */
+    private long lagCheckIntervalMillis = 1000;
+
+    /**
+     * 查询复制延迟的语句，MySQL 8.0.22之后可以换成SHOW REPLICA STATUS
+     */
+    private String lagQuery = "SHOW SLAVE STATUS";
+
+    /**
+     * 结果中表示延迟秒数的列，为NULL表示复制已中断
+     */
+    private String lagColumn = "Seconds_Behind_Master";
+
+    @Data
+    public static class Replica {
+
+        /**
+         * 名称，用于日志和监控标签，默认replica-序号
+         */
+        private String name;
+
+        private String url;
+
+        /**
+         * 为空时使用主库的用户名和密码
+         */
+        private String username;
+
+        private String password;
+
+        /**
+         * 连接池大小
+         */
+        private int maxPoolSize = 10;
+    }
+}
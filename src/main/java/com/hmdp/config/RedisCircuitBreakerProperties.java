@@ -0,0 +1,49 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Redis熔断相关配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.redis.circuit-breaker")
+public class RedisCircuitBreakerProperties {
+
+    /**
+     * 是否启用熔断
+     */
+    private boolean enabled = true;
+
+    /**
+     * 统计窗口（秒）
+     */
+    private int windowSeconds = 10;
+
+    /**
+     * 窗口内至少有这么多次调用才判断是否熔断
+     */
+    private int minimumCalls = 20;
+
+    /**
+     * 失败和慢调用的比例达到该值时熔断，0~1
+     */
+    private double failureRateThreshold = 0.5;
+
+    /**
+     * 超过该耗时的调用视为慢调用（毫秒）
+     */
+    private long slowCallMillis = 200;
+
+    /**
+     * 熔断后多久进入半开状态（毫秒）
+     */
+    private long openMillis = 5000;
+
+    /**
+     * 半开状态放行的探测调用数，全部成功才恢复
+     */
+    private int halfOpenProbes = 5;
+}
@@ -0,0 +1,45 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.RedisCircuitBreaker;
+import com.hmdp.utils.RedisCommandMetrics;
+import com.hmdp.utils.TracedStringRedisTemplate;
+import io.lettuce.core.event.DefaultEventPublisherOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class RedisConfig {
+
+    /**
+     * 替换Spring Boot默认的ClientResources，把命令耗时交给Micrometer统计
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ClientResources lettuceClientResources(MeterRegistry meterRegistry) {
+        return DefaultClientResources.builder()
+                .commandLatencyCollector(new RedisCommandMetrics(meterRegistry))
+                .commandLatencyPublisherOptions(DefaultEventPublisherOptions.disabled())
+                .build();
+    }
+
+    /**
+     * 替换Spring Boot默认的StringRedisTemplate，被追踪的请求会记录每次Redis调用的耗时，Redis故障时熔断
+     */
+    @Bean
+    public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory connectionFactory,
+                                                   RedisCircuitBreaker redisCircuitBreaker) {
+        return new TracedStringRedisTemplate(connectionFactory, redisCircuitBreaker);
+    }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+}
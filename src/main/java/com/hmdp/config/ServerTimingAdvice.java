@@ -0,0 +1,46 @@
+package com.hmdp.config;
+
+import com.hmdp.utils.RequestTrace;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+import javax.annotation.Resource;
+import java.lang.reflect.Method;
+
+/**
+ * 在响应体写出前把追踪结果放进Server-Timing响应头，此时响应还未提交，头部仍可修改。
+ * 控制器的耗时按到目前为止的总耗时减去拦截器耗时计算。
+ */
+@RestControllerAdvice
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    @Resource
+    private TraceProperties traceProperties;
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return traceProperties.isServerTiming();
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestTrace trace = RequestTrace.current();
+        if (trace == null) {
+            return body;
+        }
+        long now = System.nanoTime();
+        long appNanos = trace.elapsedNanos() - trace.tierNanos(RequestTrace.Tier.INTERCEPTOR);
+        Method method = returnType.getMethod();
+        String handler = method == null ? "handler" : method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        trace.add(RequestTrace.Tier.APP, handler, now - appNanos, appNanos);
+        response.getHeaders().add("Server-Timing", trace.serverTiming());
+        return body;
+    }
+}
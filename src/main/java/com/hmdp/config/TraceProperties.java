@@ -0,0 +1,29 @@
+package com.hmdp.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 请求耗时追踪相关配置
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "hmdp.trace")
+public class TraceProperties {
+
+    /**
+     * 采样比例，0~1，为0时不追踪任何请求
+     */
+    private double sampleRate = 0;
+
+    /**
+     * 是否在被追踪的请求上返回Server-Timing响应头；开启后带X-Trace请求头的请求总会被追踪
+     */
+    private boolean serverTiming = false;
+
+    /**
+     * 被追踪的请求耗时超过该值时打印耗时分解（毫秒）
+     */
+    private long slowThresholdMillis = 500;
+}
@@ -1,7 +1,10 @@
 package com.hmdp.config;
 
 import com.hmdp.dto.Result;
+import com.hmdp.utils.CacheLoadRejectedException;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisConnectionFailureException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
@@ -9,6 +12,16 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 @RestControllerAdvice
 public class WebExceptionAdvice {
 
+    /**
+     * Redis不可用或数据库处于保护状态，属于预期内的降级，不打印堆栈
+     */
+    @ExceptionHandler({RedisConnectionFailureException.class, QueryTimeoutException.class,
+            CacheLoadRejectedException.class})
+    public Result handleUnavailable(RuntimeException e) {
+        log.warn("服务降级：{}", e.getMessage());
+        return Result.fail("系统繁忙，请稍后再试");
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public Result handleRuntimeException(RuntimeException e) {
         log.error(e.toString(), e);
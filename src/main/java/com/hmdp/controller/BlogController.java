@@ -1,19 +1,20 @@
 package com.hmdp.controller;
 
 
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import cn.hutool.core.util.BooleanUtil;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
-import com.hmdp.entity.User;
 import com.hmdp.service.IBlogService;
-import com.hmdp.service.IUserService;
+import com.hmdp.utils.RateLimited;
+import com.hmdp.utils.Shed;
 import com.hmdp.utils.SystemConstants;
 import com.hmdp.utils.UserHolder;
+import com.hmdp.utils.UvRecorder;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
-import java.util.List;
+import javax.servlet.http.HttpServletRequest;
 
 /**
  * <p>
@@ -30,25 +31,40 @@ public class BlogController {
     @Resource
     private IBlogService blogService;
     @Resource
-    private IUserService userService;
+    private UvRecorder uvRecorder;
 
     @PostMapping
     public Result saveBlog(@RequestBody Blog blog) {
         // 获取登录用户
         UserDTO user = UserHolder.getUser();
         blog.setUserId(user.getId());
-        // 保存探店博文
-        blogService.save(blog);
-        // 返回id
-        return Result.ok(blog.getId());
+        // 保存探店博文，推送给粉丝在提交后异步执行
+        return blogService.saveBlog(blog);
     }
 
     @PutMapping("/like/{id}")
     public Result likeBlog(@PathVariable("id") Long id) {
         // 修改点赞数量
-        blogService.update()
-                .setSql("liked = liked + 1").eq("id", id).update();
-        return Result.ok();
+        return blogService.likeBlog(id);
+    }
+
+    @GetMapping("/{id}")
+    public Result queryBlogById(@PathVariable("id") Long id, HttpServletRequest request) {
+        Result result = blogService.queryBlogById(id);
+        // 只统计存在的实体，不存在的id不会为每个随机id创建一个HLL key
+        if (BooleanUtil.isTrue(result.getSuccess())) {
+            uvRecorder.record(UvRecorder.TYPE_BLOG, id, request);
+        }
+        return result;
+    }
+
+    @GetMapping("/uv/{id}")
+    public Result queryBlogUv(@PathVariable("id") Long id,
+                              @RequestParam(value = "days", defaultValue = "1") Integer days) {
+        if (days < 1 || days > SystemConstants.MAX_UV_DAYS) {
+            return Result.fail("统计天数不合法");
+        }
+        return Result.ok(uvRecorder.count(UvRecorder.TYPE_BLOG, id, days));
     }
 
     @GetMapping("/of/me")
@@ -56,28 +72,16 @@ public class BlogController {
         // 获取登录用户
         UserDTO user = UserHolder.getUser();
         // 根据用户查询
-        Page<Blog> page = blogService.query()
-                .eq("user_id", user.getId()).page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 获取当前页数据
-        List<Blog> records = page.getRecords();
-        return Result.ok(records);
+        return Result.ok(blogService.queryBlogOfUser(user.getId(), current));
     }
 
+    @RateLimited(name = "blog-hot", key = RateLimited.KeyType.IP, max = 20, window = 1,
+            algorithm = RateLimited.Algorithm.LOCAL_TOKEN_BUCKET)
+    @RateLimited(name = "blog-hot", key = RateLimited.KeyType.GLOBAL, max = 2000, window = 1,
+            algorithm = RateLimited.Algorithm.TOKEN_BUCKET)
+    @Shed(name = "blog-hot")
     @GetMapping("/hot")
     public Result queryHotBlog(@RequestParam(value = "current", defaultValue = "1") Integer current) {
-        // 根据用户查询
-        Page<Blog> page = blogService.query()
-                .orderByDesc("liked")
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 获取当前页数据
-        List<Blog> records = page.getRecords();
-        // 查询用户
-        records.forEach(blog ->{
-            Long userId = blog.getUserId();
-            User user = userService.getById(userId);
-            blog.setName(user.getNickName());
-            blog.setIcon(user.getIcon());
-        });
-        return Result.ok(records);
+        return Result.ok(blogService.queryHotBlog(current));
     }
 }
@@ -1,15 +1,18 @@
 package com.hmdp.controller;
 
 
-import cn.hutool.core.util.StrUtil;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import cn.hutool.core.util.BooleanUtil;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.Shop;
 import com.hmdp.service.IShopService;
+import com.hmdp.utils.RateLimited;
+import com.hmdp.utils.Shed;
 import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UvRecorder;
 import org.springframework.web.bind.annotation.*;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
 
 /**
  * <p>
@@ -26,14 +29,37 @@ public class ShopController {
     @Resource
     public IShopService shopService;
 
+    @Resource
+    private UvRecorder uvRecorder;
+
     /**
      * 根据id查询商铺信息
      * @param id 商铺id
      * @return 商铺详情数据
      */
     @GetMapping("/{id}")
-    public Result queryShopById(@PathVariable("id") Long id) {
-        return shopService.queryById(id);
+    public Result queryShopById(@PathVariable("id") Long id, HttpServletRequest request) {
+        Result result = shopService.queryById(id);
+        // 只统计存在的实体，不存在的id不会为每个随机id创建一个HLL key
+        if (BooleanUtil.isTrue(result.getSuccess())) {
+            uvRecorder.record(UvRecorder.TYPE_SHOP, id, request);
+        }
+        return result;
+    }
+
+    /**
+     * 查询商铺最近几天的UV
+     * @param id 商铺id
+     * @param days 统计的天数，包含今天
+     * @return UV
+     */
+    @GetMapping("/uv/{id}")
+    public Result queryShopUv(@PathVariable("id") Long id,
+                              @RequestParam(value = "days", defaultValue = "1") Integer days) {
+        if (days < 1 || days > SystemConstants.MAX_UV_DAYS) {
+            return Result.fail("统计天数不合法");
+        }
+        return Result.ok(uvRecorder.count(UvRecorder.TYPE_SHOP, id, days));
     }
 
     /**
@@ -72,11 +98,7 @@ public class ShopController {
             @RequestParam(value = "current", defaultValue = "1") Integer current
     ) {
         // 根据类型分页查询
-        Page<Shop> page = shopService.query()
-                .eq("type_id", typeId)
-                .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE));
-        // 返回数据
-        return Result.ok(page.getRecords());
+        return Result.ok(shopService.queryShopByType(typeId, current));
     }
 
     /**
@@ -85,16 +107,15 @@ public class ShopController {
      * @param current 页码
      * @return 商铺列表
      */
+    @RateLimited(name = "shop-name", key = RateLimited.KeyType.IP, max = 20, window = 1,
+            algorithm = RateLimited.Algorithm.LOCAL_TOKEN_BUCKET)
+    @Shed(name = "shop-name")
     @GetMapping("/of/name")
     public Result queryShopByName(
             @RequestParam(value = "name", required = false) String name,
             @RequestParam(value = "current", defaultValue = "1") Integer current
     ) {
-        // 根据类型分页查询
-        Page<Shop> page = shopService.query()
-                .like(StrUtil.isNotBlank(name), "name", name)
-                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE));
-        // 返回数据
-        return Result.ok(page.getRecords());
+        // 根据名称关键字分页查询
+        return Result.ok(shopService.queryShopByName(name, current));
     }
 }
@@ -5,8 +5,10 @@ import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.UserInfo;
+import com.hmdp.service.ISignService;
 import com.hmdp.service.IUserInfoService;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.RateLimited;
 import com.hmdp.utils.UserHolder;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -33,9 +35,14 @@ public class UserController {
     @Resource
     private IUserInfoService userInfoService;
 
+    @Resource
+    private ISignService signService;
+
     /**
      * 发送手机验证码
      */
+    @RateLimited(name = "code", key = RateLimited.KeyType.PARAM, param = "phone", max = 1, window = 60)
+    @RateLimited(name = "code", key = RateLimited.KeyType.IP, max = 20, window = 3600)
     @PostMapping("code")
     public Result sendCode(@RequestParam("phone") String phone, HttpSession session) {
 
@@ -46,6 +53,7 @@ public class UserController {
      * 登录功能
      * @param loginForm 登录参数，包含手机号、验证码；或者手机号、密码
      */
+    @RateLimited(name = "login", key = RateLimited.KeyType.IP, max = 30, window = 60)
     @PostMapping("/login")
     public Result login(@RequestBody LoginFormDTO loginForm, HttpSession session){
 
@@ -57,9 +65,8 @@ public class UserController {
      * @return 无
      */
     @PostMapping("/logout")
-    public Result logout(){
-        // TODO 实现登出功能
-        return Result.fail("功能未完成");
+    public Result logout(@RequestHeader(value = "authorization", required = false) String token){
+        return userService.logout(token);
     }
 
     @GetMapping("/me")
@@ -82,4 +89,28 @@ public class UserController {
         // 返回
         return Result.ok(info);
     }
+
+    /**
+     * 今日签到
+     */
+    @PostMapping("/sign")
+    public Result sign(){
+        return signService.sign();
+    }
+
+    /**
+     * 本月签到天数
+     */
+    @GetMapping("/sign/count")
+    public Result signCount(){
+        return signService.signCount();
+    }
+
+    /**
+     * 连续签到天数
+     */
+    @GetMapping("/sign/streak")
+    public Result signStreak(){
+        return signService.signStreak();
+    }
 }
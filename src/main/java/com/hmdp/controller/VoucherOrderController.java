@@ -1,11 +1,16 @@
 package com.hmdp.controller;
 
 
+import com.hmdp.config.LoginProperties;
 import com.hmdp.dto.Result;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.service.IVoucherOrderService;
+import com.hmdp.utils.RateLimited;
+import com.hmdp.utils.Shed;
+import com.hmdp.utils.UserHolder;
+import org.springframework.web.bind.annotation.*;
+
+import javax.annotation.Resource;
 
 /**
  * <p>
@@ -18,8 +23,54 @@ import org.springframework.web.bind.annotation.RestController;
 @RestController
 @RequestMapping("/voucher-order")
 public class VoucherOrderController {
+
+    @Resource
+    private IVoucherOrderService voucherOrderService;
+
+    @Resource
+    private LoginProperties loginProperties;
+
+    @RateLimited(name = "seckill", key = RateLimited.KeyType.USER, max = 5, window = 1,
+            algorithm = RateLimited.Algorithm.LOCAL_TOKEN_BUCKET)
+    @RateLimited(name = "seckill", key = RateLimited.KeyType.GLOBAL, max = 5000, window = 1,
+            algorithm = RateLimited.Algorithm.TOKEN_BUCKET)
+    @Shed(name = "seckill", initialLimit = 50, maxLimit = 500)
     @PostMapping("seckill/{id}")
     public Result seckillVoucher(@PathVariable("id") Long voucherId) {
-        return Result.fail("功能未完成");
+        return voucherOrderService.seckillVoucher(voucherId);
+    }
+
+    /**
+     * 查询自己的订单
+     */
+    @GetMapping("/{id}")
+    public Result queryOrderById(@PathVariable("id") Long id) {
+        VoucherOrder order = voucherOrderService.queryOrderById(id);
+        if (order == null || !order.getUserId().equals(UserHolder.getUser().getId())) {
+            return Result.fail("订单不存在");
+        }
+        return Result.ok(order);
+    }
+
+    @GetMapping("/of/me")
+    public Result queryMyOrder(@RequestParam(value = "current", defaultValue = "1") Integer current) {
+        return Result.ok(voucherOrderService.queryOrderOfUser(UserHolder.getUser().getId(), current));
+    }
+
+    /**
+     * 按下单时间倒序滚动查询优惠券的订单，只有管理员可以访问，需要查询所有订单分表
+     * @param voucherId 优惠券id
+     * @param lastId 上一页最后一个订单的id，查询第一页时不传
+     * @return 订单列表，客户端用最后一个订单的id作为下一页的lastId
+     */
+    @GetMapping("/of/voucher/{voucherId}")
+    public Result queryOrderOfVoucher(
+            @PathVariable("voucherId") Long voucherId,
+            @RequestParam(value = "lastId", required = false) Long lastId
+    ) {
+        if (!loginProperties.isAdmin(UserHolder.getUser().getId())) {
+            return Result.fail("无权访问");
+        }
+        return Result.ok(voucherOrderService.queryOrderOfVoucher(voucherId, lastId));
     }
 }
@@ -0,0 +1,29 @@
+package com.hmdp.dto;
+
+import com.hmdp.utils.DomainEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 用户发布了探店博文
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BlogPostedEvent implements DomainEvent {
+
+    private Long blogId;
+
+    private Long userId;
+
+    /**
+     * 发布时间（毫秒时间戳），作为粉丝收件箱中的排序分数
+     */
+    private Long postedAt;
+
+    @Override
+    public String aggregateKey() {
+        return "user:" + userId;
+    }
+}
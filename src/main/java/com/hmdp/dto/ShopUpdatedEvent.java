@@ -0,0 +1,22 @@
+package com.hmdp.dto;
+
+import com.hmdp.utils.DomainEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 商铺信息被修改，只带id，监听者从数据库读取最新的数据
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ShopUpdatedEvent implements DomainEvent {
+
+    private Long shopId;
+
+    @Override
+    public String aggregateKey() {
+        return "shop:" + shopId;
+    }
+}
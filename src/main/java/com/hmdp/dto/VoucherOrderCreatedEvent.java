@@ -0,0 +1,26 @@
+package com.hmdp.dto;
+
+import com.hmdp.utils.DomainEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 优惠券订单已创建（库存已扣减）
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VoucherOrderCreatedEvent implements DomainEvent {
+
+    private Long orderId;
+
+    private Long userId;
+
+    private Long voucherId;
+
+    @Override
+    public String aggregateKey() {
+        return "voucher:" + voucherId;
+    }
+}
@@ -55,6 +55,11 @@ public class Blog implements Serializable {
      */
     @TableField(exist = false)
     private Boolean isLike;
+    /**
+     * 关联的商铺信息
+     */
+    @TableField(exist = false)
+    private Shop shop;
 
     /**
      * 标题
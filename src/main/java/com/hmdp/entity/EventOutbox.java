@@ -0,0 +1,72 @@
+package com.hmdp.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * <p>
+ * 领域事件记录，与业务数据在同一个事务中写入，提交后由{@link com.hmdp.utils.EventBus}分发给监听者
+ * </p>
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("tb_event_outbox")
+public class EventOutbox implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int STATUS_PENDING = 0;
+    public static final int STATUS_DONE = 1;
+    public static final int STATUS_DEAD = 2;
+
+    /**
+     * 主键
+     */
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    /**
+     * 事件类名
+     */
+    private String eventType;
+
+    /**
+     * 聚合key，同一聚合的事件按id顺序处理
+     */
+    private String aggregateKey;
+
+    /**
+     * 事件内容（JSON）
+     */
+    private String payload;
+
+    /**
+     * 0：待处理；1：已处理；2：重试次数用尽
+     */
+    private Integer status;
+
+    /**
+     * 已失败的次数
+     */
+    private Integer attempts;
+
+    /**
+     * 最早的下次处理时间
+     */
+    private LocalDateTime nextAttemptTime;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+
+}
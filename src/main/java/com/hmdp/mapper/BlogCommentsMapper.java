@@ -2,6 +2,7 @@ package com.hmdp.mapper;
 
 import com.hmdp.entity.BlogComments;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
 
 /**
  * <p>
@@ -13,4 +14,8 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface BlogCommentsMapper extends BaseMapper<BlogComments> {
 
+    /**
+     * 评论的点赞数加上增量
+     */
+    int incrementLiked(@Param("id") Long id, @Param("delta") long delta);
 }
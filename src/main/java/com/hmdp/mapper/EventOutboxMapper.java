@@ -0,0 +1,13 @@
+package com.hmdp.mapper;
+
+import com.hmdp.entity.EventOutbox;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+/**
+ * <p>
+ *  Mapper 接口
+ * </p>
+ */
+public interface EventOutboxMapper extends BaseMapper<EventOutbox> {
+
+}
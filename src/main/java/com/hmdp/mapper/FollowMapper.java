@@ -3,6 +3,8 @@ package com.hmdp.mapper;
 import com.hmdp.entity.Follow;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
+import java.util.List;
+
 /**
  * <p>
  *  Mapper 接口
@@ -13,4 +15,9 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface FollowMapper extends BaseMapper<Follow> {
 
+    /**
+     * 多行插入关注关系，已存在的关注被忽略
+     * @return 实际插入的行数
+     */
+    int insertIgnoreBatch(List<Follow> follows);
 }
@@ -0,0 +1,22 @@
+package com.hmdp.mapper;
+
+import com.hmdp.entity.Sign;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+
+import java.util.List;
+
+/**
+ * <p>
+ *  Mapper 接口
+ * </p>
+ *
+ * @author 虎哥
+ * @since 2021-12-22
+ */
+public interface SignMapper extends BaseMapper<Sign> {
+
+    /**
+     * 多行插入签到记录，同一用户同一天已有记录时只更新是否补签，归档重试是幂等的
+     */
+    int upsertBatch(List<Sign> signs);
+}
@@ -3,6 +3,8 @@ package com.hmdp.mapper;
 import com.hmdp.entity.User;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
+import java.util.List;
+
 /**
  * <p>
  *  Mapper 接口
@@ -13,4 +15,11 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface UserMapper extends BaseMapper<User> {
 
+    /**
+     * 批量插入用户，手机号已存在的行被忽略，插入成功的行会回填自增id。
+     * 只写手机号和昵称，头像使用表的默认值，与单条插入跳过null字段的结果一致
+     * @param users 待插入的用户
+     * @return 实际插入的行数
+     */
+    int insertIgnoreBatch(List<User> users);
 }
@@ -3,6 +3,8 @@ package com.hmdp.mapper;
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
+import java.util.List;
+
 /**
  * <p>
  *  Mapper 接口
@@ -13,4 +15,10 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface VoucherOrderMapper extends BaseMapper<VoucherOrder> {
 
+    /**
+     * 多行插入订单，id已存在的行被忽略，重复提交同一批不会重复下单。
+     * 所有行必须属于同一张分表，在{@link com.hmdp.utils.VoucherOrderSharding#onShard}中调用
+     * @return 实际插入的行数
+     */
+    int insertIgnoreBatch(List<VoucherOrder> orders);
 }
@@ -0,0 +1,26 @@
+package com.hmdp.service;
+
+import com.hmdp.dto.Result;
+import com.hmdp.entity.Sign;
+import com.baomidou.mybatisplus.extension.service.IService;
+
+import java.time.YearMonth;
+
+/**
+ * <p>
+ *  服务类
+ * </p>
+ *
+ * @author 虎哥
+ * @since 2021-12-22
+ */
+public interface ISignService extends IService<Sign> {
+
+    Result sign();
+
+    Result signCount();
+
+    Result signStreak();
+
+    int archive(YearMonth month);
+}
@@ -1,8 +1,11 @@
 package com.hmdp.service;
 
+import com.hmdp.dto.Result;
 import com.hmdp.entity.VoucherOrder;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.List;
+
 /**
  * <p>
  *  服务类
@@ -13,4 +16,12 @@ import com.baomidou.mybatisplus.extension.service.IService;
  */
 public interface IVoucherOrderService extends IService<VoucherOrder> {
 
+    Result seckillVoucher(Long voucherId);
+
+    VoucherOrder queryOrderById(Long id);
+
+    List<VoucherOrder> queryOrderOfUser(Long userId, Integer current);
+
+    List<VoucherOrder> queryOrderOfVoucher(Long voucherId, Long lastId);
+
 }
@@ -4,6 +4,10 @@ import com.hmdp.dto.Result;
 import com.hmdp.entity.Voucher;
 import com.baomidou.mybatisplus.extension.service.IService;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
 /**
  * <p>
  *  服务类
@@ -16,5 +20,13 @@ public interface IVoucherService extends IService<Voucher> {
 
     Result queryVoucherOfShop(Long shopId);
 
+    /**
+     * 批量查询多个店铺的优惠券，结果与{@link #queryVoucherOfShop(Long)}相同，用于缓存预热
+     * @return 店铺id -> 优惠券列表，没有优惠券的店铺对应空列表
+     */
+    Map<Long, List<Voucher>> queryVoucherOfShops(Collection<Long> shopIds);
+
+    void addVoucher(Voucher voucher);
+
     void addSeckillVoucher(Voucher voucher);
 }
@@ -1,11 +1,26 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.Result;
 import com.hmdp.entity.BlogComments;
 import com.hmdp.mapper.BlogCommentsMapper;
 import com.hmdp.service.IBlogCommentsService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.BlogCounterBuffer;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.BLOG_COMMENT_LIKED_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_COMMENTS_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_BLOG_COMMENTS_TTL;
+
 /**
  * <p>
  *  服务实现类
@@ -17,4 +32,79 @@ import org.springframework.stereotype.Service;
 @Service
 public class BlogCommentsServiceImpl extends ServiceImpl<BlogCommentsMapper, BlogComments> implements IBlogCommentsService {
 
+    /**
+     * 第一页的游标，比任何评论id都大
+     */
+    private static final long FIRST_PAGE = Long.MAX_VALUE;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private BlogCounterBuffer blogCounterBuffer;
+
+    @Override
+    public Result saveComment(BlogComments comment) {
+        if (comment.getBlogId() == null || StrUtil.isBlank(comment.getContent())) {
+            return Result.fail("评论内容不能为空");
+        }
+        comment.setId(null);
+        comment.setUserId(UserHolder.getUser().getId());
+        if (comment.getParentId() == null) {
+            comment.setParentId(0L);
+        }
+        if (comment.getAnswerId() == null) {
+            comment.setAnswerId(0L);
+        }
+        comment.setLiked(0);
+        comment.setStatus(false);
+        save(comment);
+        // 评论数交给写回缓冲累加，不在请求线程里更新tb_blog
+        blogCounterBuffer.incrementBlogComments(comment.getBlogId());
+        // 按id倒序的游标分页，新评论只会出现在第一页，只需要删除第一页的缓存
+        cacheClient.delete(pageKey(comment.getBlogId(), FIRST_PAGE));
+        return Result.ok(comment.getId());
+    }
+
+    /**
+     * 按id倒序游标分页查询评论
+     * @param blogId 博客id
+     * @param lastId 上一页最后一条评论的id，为空表示查询第一页
+     * @return 评论列表，客户端用最后一条的id作为下一页的lastId
+     */
+    @Override
+    public Result queryComments(Long blogId, Long lastId) {
+        long cursor = lastId == null ? FIRST_PAGE : lastId;
+        List<BlogComments> comments = cacheClient.queryListWithPassThrough(
+                CACHE_BLOG_COMMENTS_KEY, blogId + ":" + cursor, BlogComments.class,
+                key -> query()
+                        .eq("blog_id", blogId)
+                        .lt("id", cursor)
+                        .orderByDesc("id")
+                        .last("limit " + SystemConstants.MAX_PAGE_SIZE)
+                        .list(),
+                CACHE_BLOG_COMMENTS_TTL, TimeUnit.MINUTES);
+        return Result.ok(comments);
+    }
+
+    @Override
+    public Result likeComment(Long id) {
+        if (query().eq("id", id).count() == 0) {
+            return Result.fail("评论不存在");
+        }
+        Long userId = UserHolder.getUser().getId();
+        // 每个用户只记一次赞，和博客点赞一样以Redis中的点赞记录去重
+        Long added = stringRedisTemplate.opsForSet().add(BLOG_COMMENT_LIKED_KEY + id, userId.toString());
+        if (added != null && added > 0) {
+            blogCounterBuffer.incrementCommentLiked(id);
+        }
+        return Result.ok();
+    }
+
+    private static String pageKey(Long blogId, long cursor) {
+        return CACHE_BLOG_COMMENTS_KEY + blogId + ":" + cursor;
+    }
 }
@@ -1,10 +1,40 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.bean.BeanUtil;
+import cn.hutool.core.util.BooleanUtil;
+import com.hmdp.dto.BlogPostedEvent;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Blog;
+import com.hmdp.entity.Follow;
+import com.hmdp.entity.Shop;
+import com.hmdp.entity.User;
 import com.hmdp.mapper.BlogMapper;
 import com.hmdp.service.IBlogService;
+import com.hmdp.service.IFollowService;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IShopService;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.EventBus;
+import com.hmdp.utils.ReplicaRead;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static com.hmdp.utils.RedisConstants.*;
 
 /**
  * <p>
@@ -14,7 +44,208 @@ import org.springframework.stereotype.Service;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class BlogServiceImpl extends ServiceImpl<BlogMapper, Blog> implements IBlogService {
 
+    /**
+     * 组装博客详情的总超时时间（毫秒），超时后返回已经拿到的部分数据
+     */
+    private static final long DETAIL_TIMEOUT_MILLIS = 300L;
+
+    /**
+     * 推送新博文时每批读取、写入收件箱的粉丝数
+     */
+    private static final int FEED_FANOUT_BATCH_SIZE = 1000;
+
+    /**
+     * 有界线程池，队列满时直接拒绝，对应的数据按缺失处理，不阻塞请求线程
+     */
+    private static final ExecutorService BLOG_DETAIL_EXECUTOR = new ThreadPoolExecutor(
+            8, 16, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(256),
+            r -> {
+                Thread thread = new Thread(r, "blog-detail");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.AbortPolicy());
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private IUserService userService;
+
+    @Resource
+    private IShopService shopService;
+
+    @Resource
+    private IFollowService followService;
+
+    @Resource
+    private EventBus eventBus;
+
+    /**
+     * 查询博客详情：作者、商铺、点赞状态三项互不依赖，并行查询，耗时取决于最慢的一项
+     * @param id 博客id
+     * @return 博客详情
+     */
+    @Override
+    public Result queryBlogById(Long id) {
+        Blog blog = cacheClient.queryWithPassThrough(CACHE_BLOG_KEY, id, Blog.class, this::getById,
+                CACHE_BLOG_TTL, TimeUnit.MINUTES);
+        if (blog == null) {
+            return Result.fail("笔记不存在");
+        }
+        // UserHolder基于ThreadLocal，需要在提交任务前取出
+        UserDTO currentUser = UserHolder.getUser();
+
+        CompletableFuture<UserDTO> authorFuture = supplyAsync(() -> cacheClient.queryWithPassThrough(
+                CACHE_USER_KEY, blog.getUserId(), UserDTO.class, this::queryUserDTO,
+                CACHE_USER_TTL, TimeUnit.MINUTES));
+        CompletableFuture<Shop> shopFuture = supplyAsync(() -> cacheClient.queryWithPassThrough(
+                CACHE_SHOP_KEY, blog.getShopId(), Shop.class, shopService::getById,
+                CACHE_SHOP_TTL, TimeUnit.MINUTES));
+        CompletableFuture<Boolean> likedFuture = currentUser == null
+                ? CompletableFuture.completedFuture(false)
+                : supplyAsync(() -> isLiked(id, currentUser.getId()));
+
+        try {
+            CompletableFuture.allOf(authorFuture, shopFuture, likedFuture)
+                    .get(DETAIL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("查询博客详情超时，返回部分数据，blogId：{}", id);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.warn("查询博客详情的部分数据失败，blogId：{}", id, e.getCause());
+        }
+
+        UserDTO author = getNow(authorFuture);
+        if (author != null) {
+            blog.setName(author.getNickName());
+            blog.setIcon(author.getIcon());
+        }
+        blog.setShop(getNow(shopFuture));
+        blog.setIsLike(getNow(likedFuture));
+        return Result.ok(blog);
+    }
+
+    @Override
+    public Result likeBlog(Long id) {
+        Long userId = UserHolder.getUser().getId();
+        // 每个用户只记一次赞，点赞记录同时用于判断详情页的点赞状态
+        Boolean isSuccess = stringRedisTemplate.opsForZSet()
+                .add(BLOG_LIKED_KEY + id, userId.toString(), System.currentTimeMillis());
+        if (BooleanUtil.isTrue(isSuccess)) {
+            update().setSql("liked = liked + 1").eq("id", id).update();
+            // 详情缓存中带有点赞数，更新后删除
+            cacheClient.delete(CACHE_BLOG_KEY + id);
+        }
+        return Result.ok();
+    }
+
+    /**
+     * 保存博文并在同一个事务中发布{@link BlogPostedEvent}，推送给粉丝不占用请求的时间
+     */
+    @Override
+    @Transactional
+    public Result saveBlog(Blog blog) {
+        save(blog);
+        eventBus.publish(new BlogPostedEvent(blog.getId(), blog.getUserId(), System.currentTimeMillis()));
+        return Result.ok(blog.getId());
+    }
+
+    @Override
+    @ReplicaRead
+    public List<Blog> queryBlogOfUser(Long userId, Integer current) {
+        return query().eq("user_id", userId)
+                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE))
+                .getRecords();
+    }
+
+    /**
+     * 按点赞数分页查询，并填充作者的昵称和头像，都从从库读取
+     */
+    @Override
+    @ReplicaRead
+    public List<Blog> queryHotBlog(Integer current) {
+        List<Blog> records = query()
+                .orderByDesc("liked")
+                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE))
+                .getRecords();
+        records.forEach(blog -> {
+            User user = userService.getById(blog.getUserId());
+            blog.setName(user.getNickName());
+            blog.setIcon(user.getIcon());
+        });
+        return records;
+    }
+
+    /**
+     * 推模式：把博文id写入每个粉丝的收件箱，分数为发布时间。
+     * 粉丝从tb_follow按user_id分批读取，每批在一个pipeline中写入；关注关系以数据库为准，不依赖本节点的关注图。
+     * 重复处理只会覆盖同一个成员的分数
+     */
+    @EventListener
+    public void onBlogPosted(BlogPostedEvent event) {
+        byte[] blogId = event.getBlogId().toString().getBytes(StandardCharsets.UTF_8);
+        double score = event.getPostedAt();
+        long lastFollower = 0L;
+        while (true) {
+            List<Follow> followers = followService.query()
+                    .select("user_id")
+                    .eq("follow_user_id", event.getUserId())
+                    .gt("user_id", lastFollower)
+                    .orderByAsc("user_id")
+                    .last("limit " + FEED_FANOUT_BATCH_SIZE)
+                    .list();
+            if (followers.isEmpty()) {
+                return;
+            }
+            stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (Follow follower : followers) {
+                    connection.zAdd((FEED_KEY + follower.getUserId()).getBytes(StandardCharsets.UTF_8), score, blogId);
+                }
+                return null;
+            });
+            if (followers.size() < FEED_FANOUT_BATCH_SIZE) {
+                return;
+            }
+            lastFollower = followers.get(followers.size() - 1).getUserId();
+        }
+    }
+
+    private boolean isLiked(Long blogId, Long userId) {
+        Double score = stringRedisTemplate.opsForZSet().score(BLOG_LIKED_KEY + blogId, userId.toString());
+        return score != null;
+    }
+
+    private UserDTO queryUserDTO(Long userId) {
+        User user = userService.getById(userId);
+        return user == null ? null : BeanUtil.copyProperties(user, UserDTO.class);
+    }
+
+    private static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, BLOG_DETAIL_EXECUTOR);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * 取出已经完成的结果，未完成或失败时返回null
+     */
+    private static <T> T getNow(CompletableFuture<T> future) {
+        if (!future.isDone() || future.isCompletedExceptionally()) {
+            return null;
+        }
+        return future.join();
+    }
 }
@@ -1,11 +1,28 @@
 package com.hmdp.service.impl;
 
+import cn.hutool.core.bean.BeanUtil;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.Follow;
 import com.hmdp.mapper.FollowMapper;
 import com.hmdp.service.IFollowService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IUserService;
+import com.hmdp.utils.BulkWriter;
+import com.hmdp.utils.FollowGraph;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
 /**
  * <p>
  *  服务实现类
@@ -14,7 +31,71 @@ import org.springframework.stereotype.Service;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class FollowServiceImpl extends ServiceImpl<FollowMapper, Follow> implements IFollowService {
 
+    /**
+     * 等待关注关系写入的最长时间（毫秒）
+     */
+    private static final long FOLLOW_TIMEOUT_MILLIS = 3000L;
+
+    @Resource
+    private FollowGraph followGraph;
+
+    @Resource
+    private BulkWriter bulkWriter;
+
+    @Resource
+    private IUserService userService;
+
+    @Override
+    public Result follow(Long followUserId, Boolean isFollow) {
+        Long userId = UserHolder.getUser().getId();
+        if (isFollow) {
+            // 以数据库的唯一索引去重，并发关注或已在其他节点关注过时忽略，不依赖本节点的关注图；
+            // 同一时刻的关注请求合并成一条多行INSERT
+            Follow follow = new Follow();
+            follow.setUserId(userId);
+            follow.setFollowUserId(followUserId);
+            try {
+                bulkWriter.submitFollow(follow).get(FOLLOW_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Result.fail("关注失败");
+            } catch (ExecutionException | TimeoutException e) {
+                log.error("写入关注关系失败，userId：{}，followUserId：{}", userId, followUserId, e);
+                return Result.fail("关注失败，请稍后重试");
+            }
+            // 无论是否新插入，数据库中都已存在，同时修正可能落后的关注图
+            followGraph.follow(userId, followUserId);
+        } else {
+            remove(query().getWrapper()
+                    .eq("user_id", userId).eq("follow_user_id", followUserId));
+            followGraph.unfollow(userId, followUserId);
+        }
+        return Result.ok();
+    }
+
+    @Override
+    public Result isFollow(Long followUserId) {
+        // 直接查询内存中的关注图，不访问数据库
+        Long userId = UserHolder.getUser().getId();
+        return Result.ok(followGraph.isFollowing(userId, followUserId));
+    }
+
+    @Override
+    public Result followCommons(Long id) {
+        Long userId = UserHolder.getUser().getId();
+        long[] commons = followGraph.commonFollowees(userId, id);
+        if (commons.length == 0) {
+            return Result.ok(Collections.emptyList());
+        }
+        List<Long> ids = LongStream.of(commons).boxed().collect(Collectors.toList());
+        List<UserDTO> users = userService.listByIds(ids)
+                .stream()
+                .map(user -> BeanUtil.copyProperties(user, UserDTO.class))
+                .collect(Collectors.toList());
+        return Result.ok(users);
+    }
 }
@@ -1,18 +1,30 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.hmdp.dto.Result;
+import com.hmdp.dto.ShopUpdatedEvent;
+import com.hmdp.dto.VoucherOrderCreatedEvent;
 import com.hmdp.entity.Shop;
+import com.hmdp.entity.ShopType;
+import com.hmdp.entity.Voucher;
 import com.hmdp.mapper.ShopMapper;
+import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.service.IShopService;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.service.IShopTypeService;
 import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheOutboxRelay;
+import com.hmdp.utils.EventBus;
 import com.hmdp.utils.RedisData;
+import com.hmdp.utils.ReplicaRead;
+import com.hmdp.utils.ShopSoldBuffer;
+import com.hmdp.utils.SystemConstants;
 import lombok.extern.slf4j.Slf4j;
 import lombok.val;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.geo.Point;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -20,8 +32,7 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.annotation.Resource;
 
 import java.time.LocalDateTime;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import static com.hmdp.utils.RedisConstants.*;
@@ -44,26 +55,20 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
     @Resource
     private CacheClient cacheClient;
 
-    //Java线程池
-    private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
+    @Resource
+    private CacheOutboxRelay cacheOutboxRelay;
 
-    /**
-     * 尝试获得redis的互斥锁
-     * @param key 锁对应的键
-     * @return true：成功获得锁 false：未获得锁
-     */
-    private boolean tryLock(String key){
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(flag);
-    }
+    @Resource
+    private ShopSoldBuffer shopSoldBuffer;
 
-    /**
-     * 解锁
-     * @param key
-     */
-    private void unlock(String key){
-        stringRedisTemplate.delete(key);
-    }
+    @Resource
+    private EventBus eventBus;
+
+    @Resource
+    private IShopTypeService shopTypeService;
+
+    @Resource
+    private VoucherMapper voucherMapper;
 
     /**
      * 通过id来查询对应店铺的信息
@@ -94,41 +99,8 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
      * @return 商店信息 null：未查询到相关信息
      */
     public Shop queryWithMutex(Long id){
-        String key = CACHE_SHOP_KEY + id;
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isNotBlank(shopJson)){
-            return JSONUtil.toBean(shopJson, Shop.class);
-        }
-        if (shopJson != null) {
-            return null;
-        }
-
-        String lockKey = LOCK_SHOP_KEY + id;
-        Shop shop = null;
-        try {
-            boolean isLock = tryLock(lockKey);
-            if(!isLock){
-                //不断轮询
-                Thread.sleep(50);
-                return queryWithMutex(id);
-            }
-            shopJson = stringRedisTemplate.opsForValue().get(key);
-            if (StrUtil.isNotBlank(shopJson)){
-                return JSONUtil.toBean(shopJson, Shop.class);
-            }
-
-            shop = getById(id);
-            if (shop == null) {
-                stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
-                return null;
-            }
-            stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(shop), CACHE_SHOP_TTL, TimeUnit.MINUTES);
-        } catch (InterruptedException e) {
-            throw new RuntimeException(e);
-        }finally {
-            unlock(lockKey);
-        }
-        return shop;
+        return cacheClient.queryWithMutex(CACHE_SHOP_KEY, id, Shop.class, this::getById,
+                CACHE_SHOP_TTL, TimeUnit.MINUTES);
     }
 
     /**
@@ -137,69 +109,24 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
      * @return
      */
     public Shop queryWithPassThrough(Long id){
-        String key = CACHE_SHOP_KEY + id;
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isNotBlank(shopJson)){
-            return JSONUtil.toBean(shopJson, Shop.class);
-        }
-        if (shopJson != null) {
-            return null;
-        }
-        Shop shop = getById(id);
-        if (shop == null) {
-            stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
-            return null;
-        }
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(shop), CACHE_SHOP_TTL, TimeUnit.MINUTES);
-        return shop;
+        return cacheClient.queryWithPassThrough(CACHE_SHOP_KEY, id, Shop.class, this::getById,
+                CACHE_SHOP_TTL, TimeUnit.MINUTES);
     }
 
     /**
-     * 逻辑过期防止缓存击穿
+     * 逻辑过期防止缓存击穿，缓存需要先由{@link #saveShop2Redis(Long, Long)}预热
      * @param id
      * @return
      */
     public Shop queryWithLogicalExpire(Long id){
-        String key = CACHE_SHOP_KEY + id;
-        String shopJson = stringRedisTemplate.opsForValue().get(key);
-        if (StrUtil.isBlank(shopJson)){
-            return null;
-        }
-        RedisData redisData = JSONUtil.toBean(shopJson, RedisData.class);
-        Shop shop = JSONUtil.toBean((JSONObject) redisData.getData(), Shop.class);
-        LocalDateTime expireTime = redisData.getExpireTime();
-
-        if(expireTime.isAfter(LocalDateTime.now())){
-            return shop;
-        }
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLock(lockKey);
-        if(isLock){
-            shopJson = stringRedisTemplate.opsForValue().get(key);
-            redisData = JSONUtil.toBean(shopJson, RedisData.class);
-            shop = JSONUtil.toBean((JSONObject) redisData.getData(), Shop.class);
-            expireTime = redisData.getExpireTime();
-
-            if(expireTime.isAfter(LocalDateTime.now())){
-                unlock(lockKey);
-                return shop;
-            }
-            CACHE_REBUILD_EXECUTOR.submit(()->{
-                try {
-                    this.saveShop2Redis(id, 20L);
-                } catch (InterruptedException e) {
-                    throw new RuntimeException(e);
-                }finally {
-                    unlock(lockKey);
-                }
-            });
-
-        }
-        return shop;
+        return cacheClient.queryWithLogicalExpire(CACHE_SHOP_KEY, id, Shop.class, this::getById,
+                20L, TimeUnit.SECONDS);
     }
 
     /**
-     * 为保证一致性，主动更新数据库。先更新数据库，后删除缓存来保证线程安全。
+     * 更新数据库，并在同一个事务中写入缓存失效记录，提交后由{@link CacheOutboxRelay}删除缓存。
+     * 在事务中直接删除缓存时，删除发生在提交之前，并发的读请求会把旧数据重新写回缓存。
+     * 同时发布{@link ShopUpdatedEvent}，由{@link #onShopUpdated(ShopUpdatedEvent)}异步更新GEO索引。
      * @param shop
      * @return
      */
@@ -211,10 +138,58 @@ public class ShopServiceImpl extends ServiceImpl<ShopMapper, Shop> implements IS
             return Result.fail("店铺id不能为空");
         }
         updateById(shop);
-        stringRedisTemplate.delete(CACHE_SHOP_KEY + id);
+        cacheOutboxRelay.record(CACHE_SHOP_KEY + id);
+        eventBus.publish(new ShopUpdatedEvent(id));
         return Result.ok();
     }
 
+    @Override
+    @ReplicaRead
+    public List<Shop> queryShopByType(Integer typeId, Integer current) {
+        return query().eq("type_id", typeId)
+                .page(new Page<>(current, SystemConstants.DEFAULT_PAGE_SIZE))
+                .getRecords();
+    }
+
+    @Override
+    @ReplicaRead
+    public List<Shop> queryShopByName(String name, Integer current) {
+        return query().like(StrUtil.isNotBlank(name), "name", name)
+                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE))
+                .getRecords();
+    }
+
+    /**
+     * 按数据库中最新的类型和坐标写入shop:geo:{typeId}，并从其他类型的集合中移除，类型和坐标都可能被修改
+     */
+    @EventListener
+    public void onShopUpdated(ShopUpdatedEvent event) {
+        Shop shop = getById(event.getShopId());
+        String member = event.getShopId().toString();
+        for (ShopType type : shopTypeService.query().select("id").list()) {
+            if (shop == null || !type.getId().equals(shop.getTypeId())) {
+                stringRedisTemplate.opsForGeo().remove(SHOP_GEO_KEY + type.getId(), member);
+            }
+        }
+        if (shop != null && shop.getX() != null && shop.getY() != null) {
+            stringRedisTemplate.opsForGeo().add(SHOP_GEO_KEY + shop.getTypeId(),
+                    new Point(shop.getX(), shop.getY()), member);
+        }
+    }
+
+    /**
+     * 优惠券所属店铺的销量加一，销量在店铺详情中。
+     * 增量由{@link ShopSoldBuffer}按批合并，在标记这批事件已处理的事务中写回并失效缓存，不是每个订单都失效一次店铺缓存
+     */
+    @EventListener
+    public void onVoucherOrderCreated(VoucherOrderCreatedEvent event) {
+        Voucher voucher = voucherMapper.selectById(event.getVoucherId());
+        if (voucher == null) {
+            return;
+        }
+        shopSoldBuffer.incrementSold(voucher.getShopId());
+    }
+
     /**
      * 为热点键附加ExpireTime属性，并将其存入redis中
      * @param id 商铺id
@@ -1,19 +1,19 @@
 package com.hmdp.service.impl;
 
-import cn.hutool.core.util.StrUtil;
-import cn.hutool.json.JSONUtil;
 import com.hmdp.dto.Result;
 import com.hmdp.entity.ShopType;
 import com.hmdp.mapper.ShopTypeMapper;
 import com.hmdp.service.IShopTypeService;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import com.hmdp.utils.CacheClient;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE_TTL;
 
 /**
  * <p>
@@ -27,26 +27,16 @@ import static com.hmdp.utils.RedisConstants.CACHE_SHOP_TYPE;
 public class ShopTypeServiceImpl extends ServiceImpl<ShopTypeMapper, ShopType> implements IShopTypeService {
 
     @Resource
-    private StringRedisTemplate stringRedisTemplate;
-
-    @Resource
-    private IShopTypeService typeService;
+    private CacheClient cacheClient;
 
     @Override
     public Result queryByTypeList() {
-        //查询redis，查到直接返回
-        String typeListJson = stringRedisTemplate.opsForValue().get(CACHE_SHOP_TYPE);
-        if(StrUtil.isNotBlank(typeListJson)){
-            return Result.ok(JSONUtil.parseArray(typeListJson).toList(ShopType.class));
-        }
-
-        //没有查到则查数据库
-        List<ShopType> typeList = typeService
-                .query().orderByAsc("sort").list();
+        // 经过CacheClient读取，Redis不可用时使用本地快照
+        List<ShopType> typeList = cacheClient.queryListWithPassThrough(CACHE_SHOP_TYPE, "list", ShopType.class,
+                id -> query().orderByAsc("sort").list(), CACHE_SHOP_TYPE_TTL, TimeUnit.MINUTES);
         if(typeList.size()==0){
             return Result.fail("商铺分类不存在");
         }
-        stringRedisTemplate.opsForValue().set(CACHE_SHOP_TYPE, JSONUtil.toJsonStr(typeList));
         return Result.ok(typeList);
     }
 }
@@ -0,0 +1,201 @@
+package com.hmdp.service.impl;
+
+import cn.hutool.core.collection.CollUtil;
+import com.hmdp.dto.Result;
+import com.hmdp.entity.Sign;
+import com.hmdp.mapper.SignMapper;
+import com.hmdp.service.ISignService;
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.BulkWriter;
+import com.hmdp.utils.RedisCircuitBreaker;
+import com.hmdp.utils.UserHolder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.hmdp.utils.RedisConstants.USER_SIGN_KEY;
+
+/**
+ * <p>
+ *  服务实现类
+ * </p>
+ *
+ * @author 虎哥
+ * @since 2021-12-22
+ */
+@Slf4j
+@Service
+public class SignServiceImpl extends ServiceImpl<SignMapper, Sign> implements ISignService {
+
+    private static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyyMM");
+
+    /**
+     * 归档时每批写入数据库的签到记录数
+     */
+    private static final int ARCHIVE_BATCH_SIZE = 1000;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private BulkWriter bulkWriter;
+
+    /**
+     * 签到，每个用户每月一个bitmap，第n天对应偏移量n-1
+     */
+    @Override
+    public Result sign() {
+        Long userId = UserHolder.getUser().getId();
+        LocalDate now = LocalDate.now();
+        stringRedisTemplate.opsForValue().setBit(signKey(userId, YearMonth.from(now)), now.getDayOfMonth() - 1, true);
+        return Result.ok();
+    }
+
+    /**
+     * 本月签到总天数
+     */
+    @Override
+    public Result signCount() {
+        Long userId = UserHolder.getUser().getId();
+        byte[] key = signKey(userId, YearMonth.now()).getBytes(StandardCharsets.UTF_8);
+        Long count = stringRedisTemplate.execute((RedisCallback<Long>) connection -> connection.bitCount(key));
+        return Result.ok(count == null ? 0 : count);
+    }
+
+    /**
+     * 截止到今天的连续签到天数，今天还未签到时从昨天开始计算，本月全勤时继续向前查询上个月
+     */
+    @Override
+    public Result signStreak() {
+        Long userId = UserHolder.getUser().getId();
+        LocalDate today = LocalDate.now();
+        YearMonth month = YearMonth.from(today);
+        int days = today.getDayOfMonth();
+
+        long bits = monthBits(userId, month, days);
+        if ((bits & 1) == 0) {
+            // 今天还没签到，连续签到从昨天算起
+            bits >>>= 1;
+            days--;
+        }
+        int streak = trailingOnes(bits, days);
+        boolean reachedMonthStart = streak == days;
+        while (reachedMonthStart) {
+            // 连续签到已经到了月初，继续统计上个月末尾的连续签到
+            month = month.minusMonths(1);
+            days = month.lengthOfMonth();
+            int previous = trailingOnes(monthBits(userId, month, days), days);
+            streak += previous;
+            reachedMonthStart = previous == days;
+        }
+        return Result.ok(streak);
+    }
+
+    /**
+     * 用BITFIELD一次取出某月前days天的签到位，第1天在最高位，第days天在最低位
+     */
+    private long monthBits(Long userId, YearMonth month, int days) {
+        if (days <= 0) {
+            return 0;
+        }
+        List<Long> result = stringRedisTemplate.opsForValue().bitField(signKey(userId, month),
+                BitFieldSubCommands.create()
+                        .get(BitFieldSubCommands.BitFieldType.unsigned(days)).valueAt(0));
+        if (CollUtil.isEmpty(result) || result.get(0) == null) {
+            return 0;
+        }
+        return result.get(0);
+    }
+
+    /**
+     * 从最低位开始连续为1的位数
+     */
+    private static int trailingOnes(long bits, int days) {
+        return Math.min(Long.numberOfTrailingZeros(~bits), days);
+    }
+
+    /**
+     * 将指定月份的签到bitmap展开为tb_sign记录，分批写入数据库后删除Redis中的key
+     * @param month 要归档的月份
+     * @return 归档的用户数
+     */
+    @Override
+    public int archive(YearMonth month) {
+        String suffix = ":" + month.format(MONTH_FORMATTER);
+        // 一次SCAN遍历所有用户的key，耗时与用户数成正比，按批量调用统计
+        List<String> keys = RedisCircuitBreaker.batch(() -> stringRedisTemplate.execute((RedisCallback<List<String>>) connection -> {
+            List<String> found = new ArrayList<>();
+            ScanOptions options = ScanOptions.scanOptions().match(USER_SIGN_KEY + "*" + suffix).count(1000).build();
+            try (Cursor<byte[]> cursor = connection.scan(options)) {
+                while (cursor.hasNext()) {
+                    found.add(new String(cursor.next(), StandardCharsets.UTF_8));
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            return found;
+        }));
+        if (CollUtil.isEmpty(keys)) {
+            return 0;
+        }
+
+        List<Sign> rows = new ArrayList<>(ARCHIVE_BATCH_SIZE);
+        List<String> archivedKeys = new ArrayList<>();
+        for (String key : keys) {
+            Long userId = Long.valueOf(key.substring(USER_SIGN_KEY.length(), key.length() - suffix.length()));
+            byte[] bitmap = stringRedisTemplate.execute(
+                    (RedisCallback<byte[]>) connection -> connection.get(key.getBytes(StandardCharsets.UTF_8)));
+            if (bitmap != null) {
+                for (int day = 1; day <= month.lengthOfMonth(); day++) {
+                    int index = (day - 1) >> 3;
+                    if (index < bitmap.length && (bitmap[index] & (0x80 >>> ((day - 1) & 7))) != 0) {
+                        rows.add(new Sign()
+                                .setUserId(userId)
+                                .setYear(month.getYear())
+                                .setMonth(month.getMonthValue())
+                                .setDate(month.atDay(day))
+                                .setIsBackup(false));
+                    }
+                }
+            }
+            archivedKeys.add(key);
+            if (rows.size() >= ARCHIVE_BATCH_SIZE) {
+                flushArchive(rows, archivedKeys);
+            }
+        }
+        flushArchive(rows, archivedKeys);
+        log.info("签到数据归档完成，月份：{}，用户数：{}", month, keys.size());
+        return keys.size();
+    }
+
+    /**
+     * 先写数据库再删除key，写库失败时Redis中的数据保持不变
+     */
+    private void flushArchive(List<Sign> rows, List<String> archivedKeys) {
+        if (!rows.isEmpty()) {
+            // 多行INSERT，按(user_id, date)去重，写库成功、删除key失败时重新归档不会产生重复的行
+            bulkWriter.upsertSigns(rows);
+            rows.clear();
+        }
+        if (!archivedKeys.isEmpty()) {
+            RedisCircuitBreaker.batch(() -> stringRedisTemplate.delete(archivedKeys));
+            archivedKeys.clear();
+        }
+    }
+
+    private static String signKey(Long userId, YearMonth month) {
+        return USER_SIGN_KEY + userId + ":" + month.format(MONTH_FORMATTER);
+    }
+}
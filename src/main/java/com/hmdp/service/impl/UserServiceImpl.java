@@ -4,15 +4,22 @@ import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.bean.copier.CopyOptions;
 import cn.hutool.core.lang.UUID;
 import cn.hutool.core.util.RandomUtil;
+import cn.hutool.core.util.StrUtil;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.config.LoginProperties;
 import com.hmdp.dto.LoginFormDTO;
 import com.hmdp.dto.Result;
 import com.hmdp.dto.UserDTO;
 import com.hmdp.entity.User;
 import com.hmdp.mapper.UserMapper;
 import com.hmdp.service.IUserService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.LoginUserCache;
+import com.hmdp.utils.RateLimiter;
 import com.hmdp.utils.RegexUtils;
-import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.SignedTokenCodec;
+import com.hmdp.utils.TokenRevocationList;
+import com.hmdp.utils.UserCreateBatcher;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
@@ -40,6 +47,27 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
     @Resource
     private StringRedisTemplate stringRedisTemplate;
 
+    @Resource
+    private LoginUserCache loginUserCache;
+
+    @Resource
+    private RateLimiter rateLimiter;
+
+    @Resource
+    private LoginProperties loginProperties;
+
+    @Resource
+    private SignedTokenCodec signedTokenCodec;
+
+    @Resource
+    private TokenRevocationList tokenRevocationList;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private UserCreateBatcher userCreateBatcher;
+
     @Override
     public Result sendCode(String phone, HttpSession session) {
         if(RegexUtils.isPhoneInvalid(phone)){ //注意该函数返回true意味着手机号格式错误
@@ -57,17 +85,28 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         if(RegexUtils.isPhoneInvalid(phone)){
             return Result.fail("手机号格式错误！请重新输入");
         }
+        // 手机号在请求体中，拦截器拿不到，在这里按手机号限制验证码的尝试次数
+        if (!rateLimiter.tryAcquire(LOGIN_ATTEMPT_LIMIT + ":phone:" + phone, LOGIN_ATTEMPT_MAX,
+                LOGIN_ATTEMPT_WINDOW, TimeUnit.MINUTES)) {
+            return Result.fail("尝试次数过多，请稍后再试");
+        }
         String cacheCode = stringRedisTemplate.opsForValue().get(LOGIN_CODE_KEY + phone);
         String code = loginForm.getCode();
         if (cacheCode == null || !cacheCode.equals(code)){
             return Result.fail("验证码错误");
         }
-        User user = query().eq("phone", phone).one();
-        if (user == null){
-            user = createUserWithPhone(phone);
+        UserDTO userDTO = queryUserByPhone(phone);
+        if (userDTO == null){
+            userDTO = createUserWithPhone(phone);
+            if (userDTO == null) {
+                return Result.fail("登录失败，请稍后再试");
+            }
+        }
+        if (loginProperties.isSignedMode()) {
+            // 用户信息签名后直接放在token中，不在Redis中保存会话
+            return Result.ok(signedTokenCodec.encode(userDTO, TimeUnit.MINUTES.toSeconds(LOGIN_USER_TTL)));
         }
         String token = UUID.randomUUID().toString(true);
-        UserDTO userDTO = BeanUtil.copyProperties(user, UserDTO.class);
         Map<String, Object> userMap = BeanUtil.beanToMap(userDTO, new HashMap<>(), CopyOptions.create()
                 .ignoreNullValue()
                 .setFieldValueEditor((key, value)->value.toString()));
@@ -77,11 +116,73 @@ public class UserServiceImpl extends ServiceImpl<UserMapper, User> implements IU
         return Result.ok(token);
     }
 
-    private User createUserWithPhone(String phone) {
-        User user = new User();
-        user.setPhone(phone);
-        user.setNickName(SystemConstants.USER_NICK_NAME_PREFIX + RandomUtil.randomString(10));
-        save(user);
-        return user;
+    @Override
+    public Result logout(String token) {
+        if (StrUtil.isBlank(token)) {
+            return Result.ok();
+        }
+        if (SignedTokenCodec.isSignedToken(token)) {
+            SignedTokenCodec.TokenClaims claims = signedTokenCodec.decode(token);
+            if (claims != null) {
+                tokenRevocationList.revoke(claims.getTokenId(), claims.getExpireAt());
+            }
+        } else {
+            stringRedisTemplate.delete(LOGIN_USER_KEY + token);
+            loginUserCache.invalidate(token);
+        }
+        return Result.ok();
+    }
+
+    /**
+     * 通过缓存的手机号索引查询用户，索引和用户信息都命中缓存时不访问数据库
+     * @param phone 手机号
+     * @return 用户信息 null：手机号未注册
+     */
+    private UserDTO queryUserByPhone(String phone) {
+        String indexKey = CACHE_USER_PHONE_KEY + phone;
+        String userId = stringRedisTemplate.opsForValue().get(indexKey);
+        if (StrUtil.isNotBlank(userId)) {
+            UserDTO userDTO = cacheClient.queryWithPassThrough(CACHE_USER_KEY, Long.valueOf(userId), UserDTO.class,
+                    this::queryUserDTO, CACHE_USER_TTL, TimeUnit.MINUTES);
+            if (userDTO != null) {
+                return userDTO;
+            }
+        } else if (userId != null) {
+            // 负缓存：手机号未注册
+            return null;
+        }
+        User user = query().select("id", "nick_name", "icon").eq("phone", phone).one();
+        if (user == null) {
+            stringRedisTemplate.opsForValue().set(indexKey, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
+            return null;
+        }
+        UserDTO userDTO = BeanUtil.copyProperties(user, UserDTO.class);
+        cacheUser(phone, userDTO);
+        return userDTO;
+    }
+
+    private UserDTO queryUserDTO(Long userId) {
+        User user = getById(userId);
+        return user == null ? null : BeanUtil.copyProperties(user, UserDTO.class);
+    }
+
+    /**
+     * 写入手机号索引和用户信息缓存，新用户的索引会覆盖之前的负缓存
+     */
+    private void cacheUser(String phone, UserDTO userDTO) {
+        stringRedisTemplate.opsForValue().set(CACHE_USER_PHONE_KEY + phone, userDTO.getId().toString(),
+                CACHE_USER_PHONE_TTL, TimeUnit.MINUTES);
+        cacheClient.set(CACHE_USER_KEY + userDTO.getId(), userDTO, CACHE_USER_TTL, TimeUnit.MINUTES);
+    }
+
+    private UserDTO createUserWithPhone(String phone) {
+        // 交给批量写入线程，和同一时间的其他新用户合并成一条INSERT，自增id由驱动回填
+        User user = userCreateBatcher.create(phone);
+        if (user == null) {
+            return null;
+        }
+        UserDTO userDTO = BeanUtil.copyProperties(user, UserDTO.class);
+        cacheUser(phone, userDTO);
+        return userDTO;
     }
 }
@@ -1,10 +1,39 @@
 package com.hmdp.service.impl;
 
+import com.hmdp.config.BulkWriteProperties;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.VoucherOrderCreatedEvent;
+import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.entity.VoucherOrder;
 import com.hmdp.mapper.VoucherOrderMapper;
+import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherOrderService;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.hmdp.utils.BulkWriter;
+import com.hmdp.utils.EventBus;
+import com.hmdp.utils.RedisLock;
+import com.hmdp.utils.RedisLockFactory;
+import com.hmdp.utils.SystemConstants;
+import com.hmdp.utils.UserHolder;
+import com.hmdp.utils.VoucherOrderSharding;
+import com.hmdp.utils.WriteBatcher;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.LOCK_ORDER_KEY;
 
 /**
  * <p>
@@ -14,7 +43,222 @@ import org.springframework.stereotype.Service;
  * @author 虎哥
  * @since 2021-12-22
  */
+@Slf4j
 @Service
 public class VoucherOrderServiceImpl extends ServiceImpl<VoucherOrderMapper, VoucherOrder> implements IVoucherOrderService {
 
+    /**
+     * 等待订单写入的最长时间（毫秒）
+     */
+    private static final long ORDER_TIMEOUT_MILLIS = 3000L;
+
+    @Resource
+    private ISeckillVoucherService seckillVoucherService;
+
+    @Resource
+    private VoucherOrderSharding orderSharding;
+
+    @Resource
+    private RedisLockFactory lockFactory;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private EventBus eventBus;
+
+    @Resource
+    private BulkWriter bulkWriter;
+
+    @Resource
+    private BulkWriteProperties bulkWriteProperties;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 秒杀订单的合并写入，同一时刻的下单请求在一个事务中扣库存、写订单
+     */
+    private WriteBatcher<VoucherOrder, Result> orderBatcher;
+
+    @PostConstruct
+    public void start() {
+        orderBatcher = new WriteBatcher<>(VoucherOrderSharding.LOGIC_TABLE, bulkWriteProperties, meterRegistry,
+                this::createVoucherOrders);
+        orderBatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        orderBatcher.stop();
+    }
+
+    @Override
+    public Result seckillVoucher(Long voucherId) {
+        SeckillVoucher voucher = seckillVoucherService.getById(voucherId);
+        if (voucher == null) {
+            return Result.fail("秒杀券不存在");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        if (voucher.getBeginTime().isAfter(now)) {
+            return Result.fail("秒杀尚未开始");
+        }
+        if (voucher.getEndTime().isBefore(now)) {
+            return Result.fail("秒杀已经结束");
+        }
+        if (voucher.getStock() < 1) {
+            return Result.fail("库存不足");
+        }
+        Long userId = UserHolder.getUser().getId();
+        // 一人一单：同一用户的并发请求只放行一个，其余直接失败，不等待；锁在事务提交之后才释放
+        RedisLock lock = lockFactory.getLock(LOCK_ORDER_KEY + userId);
+        if (!lock.tryLock()) {
+            return Result.fail("不允许重复下单");
+        }
+        try {
+            VoucherOrder voucherOrder = new VoucherOrder();
+            voucherOrder.setId(orderSharding.nextOrderId(userId));
+            voucherOrder.setUserId(userId);
+            voucherOrder.setVoucherId(voucherId);
+            return orderBatcher.submit(voucherOrder).get(ORDER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Result.fail("下单失败");
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("写入秒杀订单失败，userId：{}，voucherId：{}", userId, voucherId, e);
+            return Result.fail("下单失败，请稍后查看订单");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 一批秒杀订单在一个事务中处理：按优惠券检查一人一单、一次扣减这批订单的库存，
+     * 订单按分表多行插入，连同下单事件一起提交。写订单只有一个线程，批与批之间不会并发下单
+     * @return 与订单一一对应的下单结果
+     */
+    private List<Result> createVoucherOrders(List<VoucherOrder> orders) {
+        Result[] results = new Result[orders.size()];
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<Long, List<Integer>> byVoucher = new LinkedHashMap<>();
+            for (int i = 0; i < orders.size(); i++) {
+                byVoucher.computeIfAbsent(orders.get(i).getVoucherId(), k -> new ArrayList<>()).add(i);
+            }
+            List<VoucherOrder> created = new ArrayList<>(orders.size());
+            for (Map.Entry<Long, List<Integer>> entry : byVoucher.entrySet()) {
+                Long voucherId = entry.getKey();
+                Set<Long> bought = boughtUsers(voucherId, entry.getValue().stream()
+                        .map(i -> orders.get(i).getUserId()).collect(Collectors.toSet()));
+                List<Integer> candidates = new ArrayList<>(entry.getValue().size());
+                for (Integer i : entry.getValue()) {
+                    // 同一用户在一批中出现多次时只保留第一单
+                    if (bought.add(orders.get(i).getUserId())) {
+                        candidates.add(i);
+                    } else {
+                        results[i] = Result.fail("用户已经购买过一次");
+                    }
+                }
+                int granted = decrementStock(voucherId, candidates.size());
+                for (int k = 0; k < candidates.size(); k++) {
+                    int i = candidates.get(k);
+                    if (k < granted) {
+                        created.add(orders.get(i));
+                        results[i] = Result.ok(orders.get(i).getId());
+                    } else {
+                        results[i] = Result.fail("库存不足");
+                    }
+                }
+            }
+            if (created.isEmpty()) {
+                return;
+            }
+            bulkWriter.insertVoucherOrders(created);
+            // 销量等副作用在提交后异步处理，请求只等待扣库存和写订单
+            for (VoucherOrder order : created) {
+                eventBus.publish(new VoucherOrderCreatedEvent(order.getId(), order.getUserId(), order.getVoucherId()));
+            }
+        });
+        return Arrays.asList(results);
+    }
+
+    /**
+     * @return 已经购买过该优惠券的用户，每个用户只查自己所在的分表
+     */
+    private Set<Long> boughtUsers(Long voucherId, Set<Long> userIds) {
+        Map<Integer, List<Long>> shards = new TreeMap<>();
+        for (Long userId : userIds) {
+            shards.computeIfAbsent(orderSharding.shardOfUser(userId), k -> new ArrayList<>()).add(userId);
+        }
+        Set<Long> bought = new HashSet<>();
+        for (Map.Entry<Integer, List<Long>> shard : shards.entrySet()) {
+            orderSharding.onShard(shard.getKey(), () -> query()
+                    .select("user_id")
+                    .eq("voucher_id", voucherId)
+                    .in("user_id", shard.getValue())
+                    .list())
+                    .forEach(order -> bought.add(order.getUserId()));
+        }
+        return bought;
+    }
+
+    /**
+     * 锁住库存行，一次扣减本批能满足的数量
+     * @return 实际扣减的库存，不超过count
+     */
+    private int decrementStock(Long voucherId, int count) {
+        if (count == 0) {
+            return 0;
+        }
+        SeckillVoucher voucher = seckillVoucherService.query()
+                .eq("voucher_id", voucherId)
+                .last("for update")
+                .one();
+        int granted = voucher == null ? 0 : Math.min(count, voucher.getStock());
+        if (granted > 0) {
+            seckillVoucherService.update()
+                    .setSql("stock = stock - " + granted)
+                    .eq("voucher_id", voucherId)
+                    .update();
+        }
+        return granted;
+    }
+
+    /**
+     * 订单id带有分表号，只查一张表
+     */
+    @Override
+    public VoucherOrder queryOrderById(Long id) {
+        return orderSharding.onOrderShard(id, () -> getById(id));
+    }
+
+    /**
+     * 用户的订单都在同一张分表，按id倒序即下单时间倒序。刚下单就会查看，读主库
+     */
+    @Override
+    public List<VoucherOrder> queryOrderOfUser(Long userId, Integer current) {
+        return orderSharding.onUserShard(userId, () -> query()
+                .eq("user_id", userId)
+                .orderByDesc("id")
+                .page(new Page<>(current, SystemConstants.MAX_PAGE_SIZE))
+                .getRecords());
+    }
+
+    /**
+     * 优惠券的订单分散在所有分表：每张表按id倒序取lastId之后的一页，合并后再取一页。
+     * 按id定位起点，每张表每次只读pageSize行，与翻到第几页无关
+     */
+    @Override
+    public List<VoucherOrder> queryOrderOfVoucher(Long voucherId, Long lastId) {
+        int pageSize = SystemConstants.MAX_PAGE_SIZE;
+        List<VoucherOrder> orders = orderSharding.queryAllShards(shard -> query()
+                .eq("voucher_id", voucherId)
+                .lt(lastId != null, "id", lastId)
+                .orderByDesc("id")
+                .last("limit " + pageSize)
+                .list());
+        return orders.stream()
+                .sorted(Comparator.comparing(VoucherOrder::getId).reversed())
+                .limit(pageSize)
+                .collect(Collectors.toList());
+    }
 }
@@ -7,11 +7,19 @@ import com.hmdp.mapper.VoucherMapper;
 import com.hmdp.entity.SeckillVoucher;
 import com.hmdp.service.ISeckillVoucherService;
 import com.hmdp.service.IVoucherService;
+import com.hmdp.utils.CacheClient;
+import com.hmdp.utils.CacheOutboxRelay;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.Resource;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_VOUCHER_KEY;
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_VOUCHER_TTL;
 
 /**
  * <p>
@@ -27,14 +35,61 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
     @Resource
     private ISeckillVoucherService seckillVoucherService;
 
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private CacheOutboxRelay cacheOutboxRelay;
+
     @Override
     public Result queryVoucherOfShop(Long shopId) {
-        // 查询优惠券信息
-        List<Voucher> vouchers = getBaseMapper().queryVoucherOfShop(shopId);
+        // 查询优惠券信息，列表中的秒杀库存只用于展示，缓存有效期很短，下单时以数据库为准
+        List<Voucher> vouchers = cacheClient.queryListWithPassThrough(CACHE_SHOP_VOUCHER_KEY, shopId, Voucher.class,
+                getBaseMapper()::queryVoucherOfShop, CACHE_SHOP_VOUCHER_TTL, TimeUnit.MINUTES);
         // 返回结果
         return Result.ok(vouchers);
     }
 
+    @Override
+    public Map<Long, List<Voucher>> queryVoucherOfShops(Collection<Long> shopIds) {
+        Map<Long, List<Voucher>> result = new LinkedHashMap<>();
+        for (Long shopId : shopIds) {
+            result.put(shopId, new ArrayList<>());
+        }
+        if (shopIds.isEmpty()) {
+            return result;
+        }
+        // 与queryVoucherOfShop查询相同的列
+        List<Voucher> vouchers = query()
+                .select("id", "shop_id", "title", "sub_title", "rules", "pay_value", "actual_value", "type")
+                .in("shop_id", shopIds).eq("status", 1)
+                .list();
+        if (vouchers.isEmpty()) {
+            return result;
+        }
+        Map<Long, SeckillVoucher> seckills = seckillVoucherService
+                .listByIds(vouchers.stream().map(Voucher::getId).collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(SeckillVoucher::getVoucherId, Function.identity()));
+        for (Voucher voucher : vouchers) {
+            SeckillVoucher seckill = seckills.get(voucher.getId());
+            if (seckill != null) {
+                voucher.setStock(seckill.getStock());
+                voucher.setBeginTime(seckill.getBeginTime());
+                voucher.setEndTime(seckill.getEndTime());
+            }
+            result.get(voucher.getShopId()).add(voucher);
+        }
+        return result;
+    }
+
+    @Override
+    @Transactional
+    public void addVoucher(Voucher voucher) {
+        save(voucher);
+        cacheOutboxRelay.record(CACHE_SHOP_VOUCHER_KEY + voucher.getShopId());
+    }
+
     @Override
     @Transactional
     public void addSeckillVoucher(Voucher voucher) {
@@ -47,5 +102,6 @@ public class VoucherServiceImpl extends ServiceImpl<VoucherMapper, Voucher> impl
         seckillVoucher.setBeginTime(voucher.getBeginTime());
         seckillVoucher.setEndTime(voucher.getEndTime());
         seckillVoucherService.save(seckillVoucher);
+        cacheOutboxRelay.record(CACHE_SHOP_VOUCHER_KEY + voucher.getShopId());
     }
 }
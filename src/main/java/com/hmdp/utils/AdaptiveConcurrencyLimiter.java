@@ -0,0 +1,111 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基于响应时间梯度的自适应并发限制。
+ * 记录无排队时的响应时间（观测到的最小值，随时间缓慢上浮以适应基线变化）和近期响应时间的滑动平均，
+ * 近期响应时间升高说明请求开始排队，按两者之比收缩上限；响应时间平稳时上限按sqrt(limit)的排队余量缓慢增长。
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * 近期响应时间的平滑系数
+     */
+    private static final double SHORT_SMOOTHING = 0.2;
+    /**
+     * 无排队响应时间每秒上浮的比例，按时间而不是按请求数上浮，避免高流量时基线被迅速抬高
+     */
+    private static final double NO_LOAD_DRIFT_PER_SECOND = 0.01;
+    /**
+     * 上限变化的平滑系数
+     */
+    private static final double LIMIT_SMOOTHING = 0.2;
+    /**
+     * 允许近期响应时间超过无排队响应时间的比例，超过后才开始收缩
+     */
+    private static final double TOLERANCE = 1.5;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+    private volatile double limit;
+
+    private double noLoadRtt;
+    private double shortRtt;
+    private long lastSampleNanos;
+    private long rejected;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * 尝试占用一个并发名额
+     * @return true：成功，完成后必须调用{@link #onComplete(long, boolean)} false：已达上限
+     */
+    public boolean tryAcquire() {
+        if (inflight.incrementAndGet() > (int) limit) {
+            inflight.decrementAndGet();
+            synchronized (this) {
+                rejected++;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 请求完成，释放名额并根据响应时间调整上限
+     * @param rttNanos 响应时间（纳秒）
+     * @param failed 请求是否失败，失败的请求不参与调整
+     */
+    public void onComplete(long rttNanos, boolean failed) {
+        int current = inflight.getAndDecrement();
+        if (failed) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (this) {
+            if (noLoadRtt == 0) {
+                noLoadRtt = rttNanos;
+                shortRtt = rttNanos;
+                lastSampleNanos = now;
+                return;
+            }
+            double elapsedSeconds = (now - lastSampleNanos) / 1e9;
+            lastSampleNanos = now;
+            noLoadRtt = Math.min(noLoadRtt * (1 + NO_LOAD_DRIFT_PER_SECOND * elapsedSeconds), rttNanos);
+            shortRtt = shortRtt * (1 - SHORT_SMOOTHING) + rttNanos * SHORT_SMOOTHING;
+            // 只有并发真正用到了一半以上，才说明当前上限是瓶颈，可以继续增长
+            if (current < limit / 2 && shortRtt <= noLoadRtt * TOLERANCE) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * noLoadRtt / shortRtt));
+            double newLimit = limit * gradient + Math.sqrt(limit);
+            newLimit = limit * (1 - LIMIT_SMOOTHING) + newLimit * LIMIT_SMOOTHING;
+            limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
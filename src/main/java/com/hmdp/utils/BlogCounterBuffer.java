@@ -0,0 +1,116 @@
+package com.hmdp.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 博客计数器的写回缓冲。
+ * 评论数、评论点赞数的增量先在内存中按id累加，由后台线程定时写回数据库，每个id一条UPDATE，
+ * 同一次刷写的所有UPDATE由{@link BulkWriter}批量发送、在一个事务中提交，
+ * 避免热门博客的每条评论都去竞争tb_blog的同一行锁。
+ */
+@Slf4j
+@Component
+public class BlogCounterBuffer {
+
+    /**
+     * 刷写间隔（毫秒）
+     */
+    private static final long FLUSH_INTERVAL_MILLIS = 1000L;
+
+    @Resource
+    private BulkWriter bulkWriter;
+
+    /**
+     * blogId -> 评论数增量
+     */
+    private final Map<Long, Long> blogComments = new ConcurrentHashMap<>();
+    /**
+     * commentId -> 点赞数增量
+     */
+    private final Map<Long, Long> commentLiked = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "blog-counter-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        flushExecutor.scheduleWithFixedDelay(this::flushQuietly,
+                FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flushExecutor.shutdown();
+        // 停机前把剩余的增量写回
+        flushQuietly();
+    }
+
+    public void incrementBlogComments(Long blogId) {
+        blogComments.merge(blogId, 1L, Long::sum);
+    }
+
+    public void incrementCommentLiked(Long commentId) {
+        commentLiked.merge(commentId, 1L, Long::sum);
+    }
+
+    /**
+     * 读取尚未写回数据库的评论数增量，用于修正展示的数据
+     */
+    public long pendingBlogComments(Long blogId) {
+        Long delta = blogComments.get(blogId);
+        return delta == null ? 0 : delta;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("博客计数器写回失败", e);
+        }
+    }
+
+    /**
+     * 将累加的增量写回数据库，每个id只执行一条UPDATE
+     */
+    public synchronized void flush() {
+        flush(blogComments, bulkWriter::incrementBlogComments);
+        flush(commentLiked, bulkWriter::incrementCommentLiked);
+    }
+
+    private void flush(Map<Long, Long> counters, Consumer<Map<Long, Long>> writer) {
+        // 按id排序，BulkWriter按这个顺序更新
+        Map<Long, Long> deltas = new TreeMap<>();
+        for (Long id : counters.keySet()) {
+            // remove是原子的，取走之后的新增量会累加到新的条目中，不会丢失
+            Long delta = counters.remove(id);
+            if (delta != null && delta != 0) {
+                deltas.put(id, delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        try {
+            writer.accept(deltas);
+        } catch (RuntimeException e) {
+            // 整批回滚，把增量全部还回去，等待下次刷写
+            deltas.forEach((id, delta) -> counters.merge(id, delta, Long::sum));
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.collection.CollUtil;
+import com.hmdp.config.BulkWriteProperties;
+import com.hmdp.entity.Follow;
+import com.hmdp.entity.Sign;
+import com.hmdp.entity.VoucherOrder;
+import com.hmdp.mapper.BlogCommentsMapper;
+import com.hmdp.mapper.BlogMapper;
+import com.hmdp.mapper.FollowMapper;
+import com.hmdp.mapper.ShopMapper;
+import com.hmdp.mapper.SignMapper;
+import com.hmdp.mapper.VoucherOrderMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * 批量写入，供合并写入的请求和后台任务使用。
+ * <ul>
+ *     <li>插入：每batchSize行拼成一条多行INSERT，一次网络往返；订单、关注按唯一键忽略已存在的行，
+ *     签到按(user_id, date)更新已存在的行，同一批重试不会写出重复数据。订单按分表拆开，每张分表一条INSERT</li>
+ *     <li>关注：请求通过{@link #submitFollow}合并写入，见{@link WriteBatcher}</li>
+ *     <li>计数器（评论数、点赞数、销量）：每个id一条固定SQL的UPDATE，用BATCH执行器复用同一个PreparedStatement分批发送，在一个事务中提交</li>
+ * </ul>
+ * 写入行数记在bulk.write.rows{table}，按时间求速率即为每秒写入行数。
+ */
+@Component
+public class BulkWriter {
+
+    @Resource
+    private SqlSessionFactory sqlSessionFactory;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private SignMapper signMapper;
+
+    @Resource
+    private FollowMapper followMapper;
+
+    @Resource
+    private VoucherOrderMapper voucherOrderMapper;
+
+    @Resource
+    private VoucherOrderSharding orderSharding;
+
+    private final BulkWriteProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final WriteBatcher<Follow, Void> follows;
+
+    public BulkWriter(BulkWriteProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.follows = new WriteBatcher<>("tb_follow", properties, meterRegistry, rows -> {
+            insertFollows(rows);
+            return Collections.nCopies(rows.size(), null);
+        });
+    }
+
+    @PostConstruct
+    public void start() {
+        follows.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        follows.stop();
+    }
+
+    /**
+     * 合并写入一条关注关系，已存在时忽略
+     */
+    public CompletableFuture<Void> submitFollow(Follow follow) {
+        return follows.submit(follow);
+    }
+
+    /**
+     * @return 实际插入的行数
+     */
+    public int insertFollows(List<Follow> rows) {
+        int inserted = 0;
+        for (List<Follow> batch : CollUtil.split(rows, properties.getBatchSize())) {
+            long start = System.nanoTime();
+            inserted += followMapper.insertIgnoreBatch(batch);
+            record("tb_follow", batch.size(), System.nanoTime() - start);
+        }
+        return inserted;
+    }
+
+    /**
+     * 订单按用户分表，行按分表拆开，每张分表每batchSize行一条INSERT，id已存在的行被忽略。
+     * 在调用方的事务中执行
+     * @return 实际插入的行数
+     */
+    public int insertVoucherOrders(List<VoucherOrder> rows) {
+        Map<Integer, List<VoucherOrder>> shards = new TreeMap<>();
+        for (VoucherOrder row : rows) {
+            shards.computeIfAbsent(orderSharding.shardOfUser(row.getUserId()), k -> new ArrayList<>()).add(row);
+        }
+        int inserted = 0;
+        for (Map.Entry<Integer, List<VoucherOrder>> shard : shards.entrySet()) {
+            for (List<VoucherOrder> batch : CollUtil.split(shard.getValue(), properties.getBatchSize())) {
+                long start = System.nanoTime();
+                inserted += orderSharding.onShard(shard.getKey(), () -> voucherOrderMapper.insertIgnoreBatch(batch));
+                record(VoucherOrderSharding.LOGIC_TABLE, batch.size(), System.nanoTime() - start);
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * @return MySQL的影响行数，插入计1、更新计2
+     */
+    public int upsertSigns(List<Sign> rows) {
+        int affected = 0;
+        for (List<Sign> batch : CollUtil.split(rows, properties.getBatchSize())) {
+            long start = System.nanoTime();
+            affected += signMapper.upsertBatch(batch);
+            record("tb_sign", batch.size(), System.nanoTime() - start);
+        }
+        return affected;
+    }
+
+    /**
+     * 博客评论数加上增量，全部成功或全部回滚
+     * @param deltas blogId -> 增量
+     */
+    public void incrementBlogComments(Map<Long, Long> deltas) {
+        updateBatch("tb_blog", BlogMapper.class, deltas,
+                (mapper, delta) -> mapper.incrementComments(delta.getKey(), delta.getValue()));
+    }
+
+    /**
+     * 评论点赞数加上增量，全部成功或全部回滚
+     * @param deltas commentId -> 增量
+     */
+    public void incrementCommentLiked(Map<Long, Long> deltas) {
+        updateBatch("tb_blog_comments", BlogCommentsMapper.class, deltas,
+                (mapper, delta) -> mapper.incrementLiked(delta.getKey(), delta.getValue()));
+    }
+
+    /**
+     * 店铺销量加上增量，全部成功或全部回滚
+     * @param deltas shopId -> 增量
+     */
+    public void incrementShopSold(Map<Long, Long> deltas) {
+        updateBatch("tb_shop", ShopMapper.class, deltas,
+                (mapper, delta) -> mapper.incrementSold(delta.getKey(), delta.getValue()));
+    }
+
+    private <M> void updateBatch(String table, Class<M> mapperType, Map<Long, Long> deltas,
+                                 BiConsumer<M, Map.Entry<Long, Long>> statement) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        // 按id升序更新，多个节点同时刷新时按相同的顺序加行锁，不会互相死锁
+        SortedMap<Long, Long> sorted = deltas instanceof SortedMap ? (SortedMap<Long, Long>) deltas : new TreeMap<>(deltas);
+        // 在Spring事务中打开的SqlSession使用事务绑定的连接，提交由事务管理器完成
+        transactionTemplate.executeWithoutResult(status -> {
+            try (SqlSession session = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+                M mapper = session.getMapper(mapperType);
+                int pending = 0;
+                for (Map.Entry<Long, Long> delta : sorted.entrySet()) {
+                    statement.accept(mapper, delta);
+                    if (++pending == properties.getBatchSize()) {
+                        session.flushStatements();
+                        pending = 0;
+                    }
+                }
+                session.flushStatements();
+            }
+        });
+        record(table, deltas.size(), System.nanoTime() - start);
+    }
+
+    private void record(String table, int rows, long nanos) {
+        meterRegistry.counter("bulk.write.rows", "table", table).increment(rows);
+        Timer.builder("bulk.write.batch")
+                .description("一批写入的耗时")
+                .tag("table", table)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,74 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 基于信号量的隔离舱：限制同时执行的任务数，拿不到许可的调用最多排队等待maxWaitMillis。
+ * 某一类数据的缓存大面积失效时，只会占满自己的许可，不会耗尽整个数据库连接池。
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public Bulkhead(String name, int maxConcurrent, long maxWaitMillis, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxConcurrent);
+        this.waitTimer = Timer.builder("cache.bulkhead.wait")
+                .description("查询数据源前等待许可的时间")
+                .tag("prefix", name)
+                .register(meterRegistry);
+        this.rejected = Counter.builder("cache.bulkhead.rejected")
+                .description("等待许可超时被拒绝的查询次数")
+                .tag("prefix", name)
+                .register(meterRegistry);
+        Gauge.builder("cache.bulkhead.active", permits, p -> maxConcurrent - p.availablePermits())
+                .description("正在查询数据源的线程数")
+                .tag("prefix", name)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 获得许可后执行任务
+     * @throws CacheLoadRejectedException 等待许可超时或被中断
+     */
+    public <T> T execute(Supplier<T> task) {
+        // 有空闲许可时不计时，只有排队才记录等待时间
+        if (!permits.tryAcquire()) {
+            long start = System.nanoTime();
+            boolean acquired;
+            try {
+                acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                acquired = false;
+            }
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (!acquired) {
+                rejected.increment();
+                throw new CacheLoadRejectedException("数据源查询已达并发上限" + maxConcurrent + "：" + name);
+            }
+        } else {
+            waitTimer.record(0, TimeUnit.NANOSECONDS);
+        }
+        try {
+            return task.get();
+        } finally {
+            permits.release();
+        }
+    }
+}
@@ -1,15 +1,28 @@
 package com.hmdp.utils;
 
-import cn.hutool.core.util.BooleanUtil;
 import cn.hutool.core.util.StrUtil;
 import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
-import com.hmdp.entity.Shop;
+import com.hmdp.config.HotKeyProperties;
+import com.hmdp.config.CacheBulkheadProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -22,41 +35,353 @@ import static com.hmdp.utils.RedisConstants.*;
 public class CacheClient {
     private final StringRedisTemplate stringRedisTemplate;
 
+    private final MeterRegistry meterRegistry;
+
+    private final HotKeyDetector hotKeyDetector;
+
+    private final HotKeyProperties hotKeyProperties;
+
+    /**
+     * 热点key的本地副本，key -> Redis中的原始内容。只保存当前的热点key，副本过期后重新读取Redis
+     */
+    private final Map<String, LocalReplica> localReplicas = new ConcurrentHashMap<>();
+
+    private final Counter replicaHits;
+
+    private final RedisLockFactory lockFactory;
+
+    /**
+     * 本节点正在后台重建的key
+     */
+    private final Set<String> rebuilding = ConcurrentHashMap.newKeySet();
+
+    private final RedisCircuitBreaker circuitBreaker;
+
+    /**
+     * 最近一次从Redis读到或写入的内容，Redis不可用时作为降级数据，最多保存MAX_SNAPSHOT_SIZE个key
+     */
+    private final Map<String, String> snapshots = new ConcurrentHashMap<>();
+
+    private final CacheBulkheadProperties bulkheadProperties;
+
+    /**
+     * key前缀 -> 查询数据源的隔离舱
+     */
+    private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+
+    private final CacheExpiryPolicy expiryPolicy;
+
+    private final Counter snapshotHits;
+    private final Counter snapshotMisses;
+
+    /**
+     * 按key前缀和结果缓存的计数器、计时器，避免每次查询都去注册表中查找
+     */
+    private final Map<String, Counter> requestCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> loadTimers = new ConcurrentHashMap<>();
+
     private static final ExecutorService CACHE_REBUILD_EXECUTOR = Executors.newFixedThreadPool(10);
 
-    public CacheClient(StringRedisTemplate stringRedisTemplate) {
+    private static final int MAX_SNAPSHOT_SIZE = 10000;
+
+    public CacheClient(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry,
+                       HotKeyDetector hotKeyDetector, HotKeyProperties hotKeyProperties,
+                       RedisLockFactory lockFactory, RedisCircuitBreaker circuitBreaker,
+                       CacheBulkheadProperties bulkheadProperties, CacheExpiryPolicy expiryPolicy) {
         this.stringRedisTemplate = stringRedisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.hotKeyDetector = hotKeyDetector;
+        this.hotKeyProperties = hotKeyProperties;
+        // 降级的key可能不会再被访问，不能只在读取时清除副本
+        hotKeyDetector.onDemoted(localReplicas::remove);
+        this.lockFactory = lockFactory;
+        this.replicaHits = Counter.builder("cache.replica.hits")
+                .description("热点key命中本地副本、未访问Redis的次数")
+                .register(meterRegistry);
+        this.circuitBreaker = circuitBreaker;
+        this.bulkheadProperties = bulkheadProperties;
+        this.expiryPolicy = expiryPolicy;
+        this.snapshotHits = Counter.builder("cache.snapshot.reads")
+                .description("Redis不可用时读取本地快照的次数")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.snapshotMisses = Counter.builder("cache.snapshot.reads")
+                .description("Redis不可用时读取本地快照的次数")
+                .tag("result", "miss")
+                .register(meterRegistry);
     }
 
     /**
-     * 尝试获得redis的互斥锁
-     * @param key 锁对应的键
-     * @return true：成功获得锁 false：未获得锁
+     * 读取缓存内容。热点key优先读本地副本，不再每次访问同一个Redis分片；Redis不可用时读取本地快照
      */
-    private boolean tryLock(String key){
-        Boolean flag = stringRedisTemplate.opsForValue().setIfAbsent(key, "1", 10, TimeUnit.SECONDS);
-        return BooleanUtil.isTrue(flag);
+    private String get(String key) {
+        hotKeyDetector.record(key);
+        expiryPolicy.touch(key);
+        boolean hot = hotKeyDetector.isHot(key);
+        if (hot) {
+            LocalReplica replica = localReplicas.get(key);
+            if (replica != null && replica.expireAt > System.currentTimeMillis()) {
+                replicaHits.increment();
+                return replica.value;
+            }
+        } else if (!localReplicas.isEmpty()) {
+            // 降级时已清除副本，这里清除降级前正在读取Redis的请求随后写入的副本
+            localReplicas.remove(key);
+        }
+        String value;
+        try {
+            value = stringRedisTemplate.opsForValue().get(key);
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isUnavailable(e)) {
+                throw e;
+            }
+            // 没有快照时按未命中处理，由load限制查询数据库的并发
+            value = snapshots.get(key);
+            (value == null ? snapshotMisses : snapshotHits).increment();
+            return value;
+        }
+        if (value != null) {
+            if (hot) {
+                localReplicas.put(key, new LocalReplica(value,
+                        System.currentTimeMillis() + hotKeyProperties.getReplicaTtlMillis()));
+            }
+            snapshot(key, value);
+        }
+        return value;
+    }
+
+    private void snapshot(String key, String value) {
+        // 内容没有变化时不写，命中路径上只多一次get和equals
+        if (value.equals(snapshots.get(key))) {
+            return;
+        }
+        if (snapshots.size() < MAX_SNAPSHOT_SIZE || snapshots.containsKey(key)) {
+            snapshots.put(key, value);
+        }
     }
 
     /**
-     * 解锁
-     * @param key
+     * 写入缓存，同时更新本地快照、清除副本。Redis不可用时只更新快照，不影响本次查询的结果
+     * @param time 有效期，为null时不过期
      */
-    private void unlock(String key){
-        stringRedisTemplate.delete(key);
+    private void write(String key, String value, Long time, TimeUnit unit) {
+        localReplicas.remove(key);
+        snapshot(key, value);
+        try {
+            if (time == null) {
+                stringRedisTemplate.opsForValue().set(key, value);
+            } else {
+                stringRedisTemplate.opsForValue().set(key, value, time, unit);
+            }
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isUnavailable(e)) {
+                throw e;
+            }
+            log.debug("Redis不可用，缓存未写入：{}", key);
+        }
+    }
+
+    /**
+     * 记录一次缓存查询的结果
+     * @param result hit：命中 null：命中空值 stale：命中已逻辑过期的数据 miss：未命中
+     *               fallback：未命中且查询数据源被拒绝，返回了本地快照中的旧数据
+     */
+    private void recordRequest(String keyPrefix, String result) {
+        requestCounters.computeIfAbsent(keyPrefix + result, k -> Counter.builder("cache.requests")
+                .description("缓存查询次数")
+                .tag("prefix", keyPrefix)
+                .tag("result", result)
+                .register(meterRegistry))
+                .increment();
+    }
+
+    /**
+     * 执行数据库查询并记录耗时，缓存未命中和重建时调用。
+     * 每个key前缀有独立的隔离舱限制并发，Redis熔断或被清空时所有读取都会落到这里，也不会耗尽连接池
+     * @throws CacheLoadRejectedException 等待许可超时
+     */
+    private <R, ID> R load(String keyPrefix, ID id, Function<ID, R> function) {
+        if (!bulkheadProperties.isEnabled()) {
+            return timedLoad(keyPrefix, id, function);
+        }
+        Bulkhead bulkhead = bulkheads.computeIfAbsent(keyPrefix, k -> new Bulkhead(k,
+                bulkheadProperties.maxConcurrent(k), bulkheadProperties.getMaxWaitMillis(), meterRegistry));
+        return bulkhead.execute(() -> timedLoad(keyPrefix, id, function));
+    }
+
+    /**
+     * 查询数据源，被隔离舱拒绝时返回旧数据，结果不写回缓存
+     */
+    private <R, ID> R loadOrStale(String keyPrefix, ID id, Function<ID, R> function, Function<String, R> parser) {
+        try {
+            return load(keyPrefix, id, function);
+        } catch (CacheLoadRejectedException e) {
+            return stale(keyPrefix, id, e, parser);
+        }
+    }
+
+    /**
+     * 查询数据源被拒绝时，从本地快照中取最近一次见到的数据；快照也没有时请求失败
+     * @param parser 把快照内容还原为结果，快照是空值标记时直接返回null
+     */
+    private <R, ID> R stale(String keyPrefix, ID id, CacheLoadRejectedException e, Function<String, R> parser) {
+        String json = snapshots.get(keyPrefix + id);
+        if (json == null) {
+            throw e;
+        }
+        recordRequest(keyPrefix, "fallback");
+        return json.isEmpty() ? null : parser.apply(json);
+    }
+
+    private <R, ID> R timedLoad(String keyPrefix, ID id, Function<ID, R> function) {
+        Timer timer = loadTimers.computeIfAbsent(keyPrefix, k -> Timer.builder("cache.load")
+                .description("缓存未命中或重建时查询数据源的耗时")
+                .tag("prefix", keyPrefix)
+                .register(meterRegistry));
+        long start = System.nanoTime();
+        try {
+            return function.apply(id);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+            RequestTrace trace = RequestTrace.current();
+            if (trace != null) {
+                trace.add(RequestTrace.Tier.CACHE, "load " + keyPrefix + id, start, nanos);
+            }
+        }
+    }
+
+    /**
+     * 反序列化缓存内容，被追踪的请求记录JSON解析耗时
+     */
+    private static <R> R toBean(String json, Class<R> type) {
+        long span = RequestTrace.start();
+        try {
+            return JSONUtil.toBean(json, type);
+        } finally {
+            RequestTrace.end(RequestTrace.Tier.JSON, type.getSimpleName(), span);
+        }
+    }
+
+    private static <R> R toBean(JSONObject json, Class<R> type) {
+        long span = RequestTrace.start();
+        try {
+            return JSONUtil.toBean(json, type);
+        } finally {
+            RequestTrace.end(RequestTrace.Tier.JSON, type.getSimpleName(), span);
+        }
+    }
+
+    private static <R> List<R> toList(String json, Class<R> type) {
+        long span = RequestTrace.start();
+        try {
+            return JSONUtil.parseArray(json).toList(type);
+        } finally {
+            RequestTrace.end(RequestTrace.Tier.JSON, "List<" + type.getSimpleName() + ">", span);
+        }
+    }
+
+    private static String toJsonStr(Object value) {
+        long span = RequestTrace.start();
+        try {
+            return JSONUtil.toJsonStr(value);
+        } finally {
+            RequestTrace.end(RequestTrace.Tier.JSON, "toJsonStr", span);
+        }
     }
 
+    /**
+     * 写入缓存，有效期按过期策略随机延长，避免同时写入的key同时过期
+     */
     public void set(String key, Object value, Long time, TimeUnit unit) {
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(value), time, unit);
+        write(key, toJsonStr(value), expiryPolicy.jitter(unit.toMillis(time)), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 写入从数据源查询到的结果并登记到期前预热，有效期按过期策略确定；结果为null时写入空值防止缓存穿透
+     */
+    private <R, ID> void setLoaded(String keyPrefix, ID id, R result, Function<ID, R> function,
+                                   Long time, TimeUnit unit) {
+        String key = keyPrefix + id;
+        if (result == null) {
+            expiryPolicy.untrack(key);
+            write(key, "", expiryPolicy.jitter(TimeUnit.MINUTES.toMillis(CACHE_NULL_TTL)), TimeUnit.MILLISECONDS);
+            return;
+        }
+        long ttlMillis = expiryPolicy.ttlMillis(keyPrefix, time, unit);
+        write(key, toJsonStr(result), ttlMillis, TimeUnit.MILLISECONDS);
+        expiryPolicy.track(key, ttlMillis,
+                () -> setLoaded(keyPrefix, id, load(keyPrefix, id, function), function, time, unit));
+    }
+
+    /**
+     * 批量写入从数据源查询到的结果，一次pipeline写完，同时更新本地快照并登记到期前预热，用于启动预热
+     * @param values id -> 查询结果，不会为null
+     * @param function 到期前预热时查询单个id
+     * @throws RuntimeException Redis不可用
+     */
+    public <R, ID> void setAllLoaded(String keyPrefix, Map<ID, R> values, Function<ID, R> function,
+                                     Long time, TimeUnit unit) {
+        if (values.isEmpty()) {
+            return;
+        }
+        List<ID> ids = new ArrayList<>(values.keySet());
+        byte[][] keys = new byte[ids.size()][];
+        byte[][] jsons = new byte[ids.size()][];
+        long[] ttls = new long[ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            String key = keyPrefix + ids.get(i);
+            String json = toJsonStr(values.get(ids.get(i)));
+            localReplicas.remove(key);
+            snapshot(key, json);
+            keys[i] = key.getBytes(StandardCharsets.UTF_8);
+            jsons[i] = json.getBytes(StandardCharsets.UTF_8);
+            ttls[i] = expiryPolicy.ttlMillis(keyPrefix, time, unit);
+        }
+        // MSET不能带有效期，逐个PSETEX放在同一个pipeline中
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < keys.length; i++) {
+                connection.pSetEx(keys[i], ttls[i], jsons[i]);
+            }
+            return null;
+        });
+        for (int i = 0; i < ids.size(); i++) {
+            ID id = ids.get(i);
+            expiryPolicy.track(keyPrefix + id, ttls[i],
+                    () -> setLoaded(keyPrefix, id, load(keyPrefix, id, function), function, time, unit));
+        }
+    }
+
+    /**
+     * 删除缓存和本节点的副本，其他节点的副本在有效期后失效。
+     * Redis不可用时抛出异常，调用方的事务随之回滚，避免数据库与缓存长时间不一致
+     */
+    public void delete(String key) {
+        stringRedisTemplate.delete(key);
+        localReplicas.remove(key);
+        snapshots.remove(key);
+        expiryPolicy.untrack(key);
+    }
+
+    /**
+     * 批量删除缓存和本节点的副本、快照
+     */
+    public void delete(Collection<String> keys) {
+        stringRedisTemplate.delete(keys);
+        for (String key : keys) {
+            localReplicas.remove(key);
+            snapshots.remove(key);
+            expiryPolicy.untrack(key);
+        }
     }
 
     public void setWithLogicalExpire(String key, Object value, Long time, TimeUnit unit) {
         // 设置逻辑过期
         RedisData redisData = new RedisData();
         redisData.setData(value);
-        redisData.setExpireTime(LocalDateTime.now().plusSeconds(unit.toSeconds(time)));
+        redisData.setExpireTime(LocalDateTime.now().plus(expiryPolicy.jitter(unit.toMillis(time)), ChronoUnit.MILLIS));
         // 写入Redis
-        stringRedisTemplate.opsForValue().set(key, JSONUtil.toJsonStr(redisData));
+        write(key, toJsonStr(redisData), null, null);
     }
 
     /**
@@ -67,19 +392,51 @@ public class CacheClient {
     public <R, ID> R queryWithPassThrough(String keyPrefix, ID id, Class<R> type, Function<ID, R> function,
                                           Long time, TimeUnit timeUnit){
         String key = keyPrefix + id;
-        String resultJson = stringRedisTemplate.opsForValue().get(key);
+        String resultJson = get(key);
         if (StrUtil.isNotBlank(resultJson)){
-            return JSONUtil.toBean(resultJson, type);
+            recordRequest(keyPrefix, "hit");
+            return toBean(resultJson, type);
         }
         if (resultJson != null) {
+            recordRequest(keyPrefix, "null");
             return null;
         }
-        R result = function.apply(id);
-        if (result == null) {
-            stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
-            return null;
+        recordRequest(keyPrefix, "miss");
+        R result;
+        try {
+            result = load(keyPrefix, id, function);
+        } catch (CacheLoadRejectedException e) {
+            return stale(keyPrefix, id, e, json -> toBean(json, type));
         }
-        this.set(key, result, time, timeUnit);
+        setLoaded(keyPrefix, id, result, function, time, timeUnit);
+        return result;
+    }
+
+    /**
+     * 缓存列表数据，空列表同样写入缓存防止缓存穿透
+     * @param type 列表元素类型
+     * @return 列表数据，不会返回null
+     */
+    public <R, ID> List<R> queryListWithPassThrough(String keyPrefix, ID id, Class<R> type,
+                                                    Function<ID, List<R>> function, Long time, TimeUnit timeUnit){
+        String key = keyPrefix + id;
+        String resultJson = get(key);
+        if (StrUtil.isNotBlank(resultJson)){
+            recordRequest(keyPrefix, "hit");
+            return toList(resultJson, type);
+        }
+        recordRequest(keyPrefix, "miss");
+        Function<ID, List<R>> loader = i -> {
+            List<R> list = function.apply(i);
+            return list == null ? Collections.emptyList() : list;
+        };
+        List<R> result;
+        try {
+            result = load(keyPrefix, id, loader);
+        } catch (CacheLoadRejectedException e) {
+            return stale(keyPrefix, id, e, json -> toList(json, type));
+        }
+        setLoaded(keyPrefix, id, result, loader, time, timeUnit);
         return result;
     }
 
@@ -91,46 +448,63 @@ public class CacheClient {
     public <R, ID> R queryWithLogicalExpire(String keyPrefix, ID id, Class<R> type, Function<ID, R> function,
                                           Long time, TimeUnit timeUnit){
         String key = keyPrefix + id;
-        String resultJson = stringRedisTemplate.opsForValue().get(key);
+        String resultJson = get(key);
         if (StrUtil.isBlank(resultJson)){
+            recordRequest(keyPrefix, "miss");
             return null;
         }
-        RedisData redisData = JSONUtil.toBean(resultJson, RedisData.class);
-        R result = JSONUtil.toBean((JSONObject) redisData.getData(), type);
+        RedisData redisData = toBean(resultJson, RedisData.class);
+        R result = toBean((JSONObject) redisData.getData(), type);
         LocalDateTime expireTime = redisData.getExpireTime();
 
         if(expireTime.isAfter(LocalDateTime.now())){
+            recordRequest(keyPrefix, "hit");
             return result;
         }
-        String lockKey = LOCK_SHOP_KEY + id;
-        boolean isLock = tryLock(lockKey);
-        if(isLock){
-            resultJson = stringRedisTemplate.opsForValue().get(key);
-            redisData = JSONUtil.toBean(resultJson, RedisData.class);
-            result = JSONUtil.toBean((JSONObject) redisData.getData(), type);
-            expireTime = redisData.getExpireTime();
+        recordRequest(keyPrefix, "stale");
+        rebuildAsync(keyPrefix, id, function, time, timeUnit);
+        return result;
+    }
 
-            if(expireTime.isAfter(LocalDateTime.now())){
-                unlock(lockKey);
-                return result;
-            }
-            CACHE_REBUILD_EXECUTOR.submit(()->{
+    /**
+     * 后台重建逻辑过期的缓存。本节点同一个key只提交一个任务，集群内由分布式锁保证只有一个节点查询数据源
+     */
+    private <R, ID> void rebuildAsync(String keyPrefix, ID id, Function<ID, R> function, Long time, TimeUnit timeUnit) {
+        String key = keyPrefix + id;
+        // Redis不可用时继续返回旧数据，恢复后再重建
+        if (!circuitBreaker.isClosed() || !rebuilding.add(key)) {
+            return;
+        }
+        CACHE_REBUILD_EXECUTOR.submit(() -> {
+            // 锁在重建线程中获取和释放，持有者与解锁者是同一个线程
+            RedisLock lock = lockFactory.getLock(LOCK_CACHE_KEY + key);
+            try {
+                if (!lock.tryLock()) {
+                    return;
+                }
                 try {
+                    // 获得锁后再次检查，其他节点可能刚刚重建完成
+                    String json = stringRedisTemplate.opsForValue().get(key);
+                    if (StrUtil.isNotBlank(json)
+                            && toBean(json, RedisData.class).getExpireTime().isAfter(LocalDateTime.now())) {
+                        return;
+                    }
                     // 查询数据库
-                    R newR = function.apply(id);
+                    R newR = load(keyPrefix, id, function);
                     // 重建缓存
                     this.setWithLogicalExpire(key, newR, time, timeUnit);
-                    //模拟耗时
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-
                 } finally {
-                    unlock(lockKey);
+                    lock.unlock();
                 }
-            });
-
-        }
-        return result;
+            } catch (CacheLoadRejectedException e) {
+                // 数据源繁忙，继续返回旧数据，下次访问再重建
+                log.debug("缓存重建被拒绝，key：{}", key);
+            } catch (Exception e) {
+                log.error("缓存重建失败，key：{}", key, e);
+            } finally {
+                rebuilding.remove(key);
+            }
+        });
     }
 
     /**
@@ -141,44 +515,75 @@ public class CacheClient {
     public <R, ID> R queryWithMutex(String keyPrefix, ID id, Class<R> type, Function<ID, R> function,
                                     Long time, TimeUnit timeUnit){
         String key = keyPrefix + id;
-        String resultJson = stringRedisTemplate.opsForValue().get(key);
+        String resultJson = get(key);
         if (StrUtil.isNotBlank(resultJson)){
-            return JSONUtil.toBean(resultJson, type);
+            recordRequest(keyPrefix, "hit");
+            return toBean(resultJson, type);
         }
         if (resultJson != null) {
+            recordRequest(keyPrefix, "null");
             return null;
         }
+        recordRequest(keyPrefix, "miss");
 
-        String lockKey = LOCK_SHOP_KEY + id;
-        R result = null;
+        // 只有获得锁的线程查询数据源；其余线程等待释放通知，同一次通知全部唤醒，直接读取重建好的缓存，不再依次加锁
+        RedisLock lock = lockFactory.getLock(LOCK_CACHE_KEY + key);
         try {
-            boolean isLock = tryLock(lockKey);
-            if(!isLock){
-                //不断轮询
-                Thread.sleep(50);
-                return queryWithMutex(keyPrefix, id, type, function, time, timeUnit);
-            }
-            resultJson = stringRedisTemplate.opsForValue().get(key);
-            if (StrUtil.isNotBlank(resultJson)){
-                return JSONUtil.toBean(resultJson, type);
-            }
-            if (resultJson != null) {
-                return null;
+            boolean isLock;
+            try {
+                isLock = lock.tryLock();
+                if (!isLock) {
+                    if (lock.awaitRelease(LOCK_CACHE_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        resultJson = stringRedisTemplate.opsForValue().get(key);
+                        if (StrUtil.isNotBlank(resultJson)) {
+                            return toBean(resultJson, type);
+                        }
+                        if (resultJson != null) {
+                            return null;
+                        }
+                    }
+                    // 重建失败或迟迟没有完成，直接查询数据源，不写缓存
+                    return loadOrStale(keyPrefix, id, function, json -> toBean(json, type));
+                }
+            } catch (RuntimeException e) {
+                if (!RedisCircuitBreaker.isUnavailable(e)) {
+                    throw e;
+                }
+                // Redis不可用时无法加锁，查询数据库的并发由load限制
+                return loadOrStale(keyPrefix, id, function, json -> toBean(json, type));
             }
-
-            result = function.apply(id);
-            if (result == null) {
-                stringRedisTemplate.opsForValue().set(key, "", CACHE_NULL_TTL, TimeUnit.MINUTES);
-                return null;
+            try {
+                resultJson = stringRedisTemplate.opsForValue().get(key);
+                if (StrUtil.isNotBlank(resultJson)){
+                    return toBean(resultJson, type);
+                }
+                if (resultJson != null) {
+                    return null;
+                }
+                R result;
+                try {
+                    result = load(keyPrefix, id, function);
+                } catch (CacheLoadRejectedException e) {
+                    return stale(keyPrefix, id, e, json -> toBean(json, type));
+                }
+                setLoaded(keyPrefix, id, result, function, time, timeUnit);
+                return result;
+            } finally {
+                lock.unlock();
             }
-            this.set(key, result, time, timeUnit);
-            //模拟耗时
-            Thread.sleep(500);
         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
-        }finally {
-            unlock(lockKey);
         }
-        return result;
+    }
+
+    private static class LocalReplica {
+        final String value;
+        final long expireAt;
+
+        LocalReplica(String value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
     }
 }
@@ -0,0 +1,228 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.CacheExpiryProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 缓存过期策略，防止缓存雪崩。
+ * <ul>
+ *     <li>打散：同一批写入的key（如发布或预热后）有效期随机延长一部分，不会在同一时刻集中过期</li>
+ *     <li>预热：{@link CacheClient}写入时登记重新加载的方法，有效期内访问次数达到阈值的key在到期前由后台重新查询并写入，
+ *     访问少的key按原有效期自然过期。预热在单个线程中串行执行，每个节点对数据库最多增加一个并发；
+ *     预热按稳态速率进行，同一批写入的key集中过期时提前开始，以不超过稳态速率{@link #REWARM_HEADROOM}倍的速率分散完成，
+ *     之后逐轮摊开到整个有效期</li>
+ * </ul>
+ * 多个节点可能在同一周期预热同一个key，每个节点每个有效期最多查询一次。
+ */
+@Slf4j
+@Component
+public class CacheExpiryPolicy {
+
+    /**
+     * 预热速率最多为稳态所需速率的多少倍，数据库的预热压力不超过平均值的这个倍数
+     */
+    private static final double REWARM_HEADROOM = 1.5;
+
+    private final CacheExpiryProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * key -> 预热登记，每次写入时替换
+     */
+    private final Map<String, Rewarm> rewarms = new ConcurrentHashMap<>();
+
+    /**
+     * 按稳态速率累积的预热配额和上次检查的时间，只在预热线程中访问
+     */
+    private double credit;
+
+    private long lastRewarmAt;
+
+    private final ScheduledExecutorService rewarmExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cache-rewarm");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CacheExpiryPolicy(CacheExpiryProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("cache.rewarm.tracked", rewarms, Map::size)
+                .description("登记了到期前预热的key个数")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = properties.getRewarmIntervalMillis();
+        rewarmExecutor.scheduleWithFixedDelay(this::rewarmDue, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        rewarmExecutor.shutdownNow();
+    }
+
+    /**
+     * @param keyPrefix 配置了该前缀的有效期时忽略调用方传入的值
+     * @return 打散后的有效期（毫秒）
+     */
+    public long ttlMillis(String keyPrefix, long time, TimeUnit unit) {
+        Duration ttl = properties.getTtls().get(keyPrefix);
+        return jitter(ttl != null ? ttl.toMillis() : unit.toMillis(time));
+    }
+
+    /**
+     * @return 在 [ttlMillis, ttlMillis*(1+jitterRatio)) 之间随机的有效期
+     */
+    public long jitter(long ttlMillis) {
+        long spread = (long) (ttlMillis * properties.getJitterRatio());
+        return spread <= 0 ? ttlMillis : ttlMillis + ThreadLocalRandom.current().nextLong(spread);
+    }
+
+    /**
+     * 登记key的预热方法，替换之前的登记
+     * @param ttlMillis 本次写入的有效期
+     * @param reload 重新查询数据源并写入缓存，写入时会再次登记
+     */
+    public void track(String key, long ttlMillis, Runnable reload) {
+        if (!properties.isRewarmEnabled()) {
+            return;
+        }
+        if (rewarms.size() >= properties.getRewarmMaxKeys() && !rewarms.containsKey(key)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        // 提前量至少两个检查周期，有效期很短时也不会错过
+        long ahead = Math.max((long) (ttlMillis * properties.getRewarmAheadRatio()),
+                properties.getRewarmIntervalMillis() * 2);
+        rewarms.put(key, new Rewarm(ttlMillis, now + ttlMillis, now + ttlMillis - ahead, reload));
+    }
+
+    /**
+     * 缓存被删除或写入了空值，不再预热
+     */
+    public void untrack(String key) {
+        rewarms.remove(key);
+    }
+
+    /**
+     * 记录一次缓存命中
+     */
+    public void touch(String key) {
+        Rewarm rewarm = rewarms.get(key);
+        if (rewarm != null) {
+            rewarm.hits.increment();
+        }
+    }
+
+    private void rewarmDue() {
+        long now = System.currentTimeMillis();
+        long interval = properties.getRewarmIntervalMillis();
+        // 预热耗时或线程调度使周期变长时，按实际的周期留出余量
+        long cycle = lastRewarmAt == 0 ? interval : Math.max(interval, now - lastRewarmAt);
+        lastRewarmAt = now;
+        // 稳态下每毫秒需要预热的key数：每个key每个有效期预热一次
+        double steady = 0;
+        List<Map.Entry<String, Rewarm>> tracked = new ArrayList<>(rewarms.size());
+        for (Map.Entry<String, Rewarm> entry : rewarms.entrySet()) {
+            Rewarm rewarm = entry.getValue();
+            if (now >= rewarm.expireAt) {
+                // 到期前访问频率一直没有达到阈值
+                if (rewarms.remove(entry.getKey(), rewarm)) {
+                    record("cold");
+                }
+                continue;
+            }
+            steady += 1.0 / rewarm.ttlMillis;
+            tracked.add(entry);
+        }
+        // 按过期时间从后往前，以不超过稳态REWARM_HEADROOM倍的速率倒推每个key最晚的预热时间：
+        // 不晚于自己过期前两个周期，也给之后过期的key留出时间，最晚时间已到的key必须在本周期预热
+        double gap = 1 / Math.max(steady * REWARM_HEADROOM, 1.0 / interval);
+        tracked.sort(Comparator.comparingLong(entry -> entry.getValue().expireAt));
+        List<Map.Entry<String, Rewarm>> eligible = new ArrayList<>();
+        int required = 0;
+        double latest = Double.MAX_VALUE;
+        for (int i = tracked.size() - 1; i >= 0; i--) {
+            Rewarm rewarm = tracked.get(i).getValue();
+            latest = Math.min(latest, rewarm.expireAt - 2 * cycle) - gap;
+            // 访问频率暂时不够的key留到之后的周期再判断，刚写入时的访问频率不能代表整个有效期
+            if (now >= rewarm.rewarmAt && rewarm.isHot(now, properties.getRewarmMinHits())) {
+                eligible.add(tracked.get(i));
+                if (latest <= now) {
+                    required++;
+                }
+            }
+        }
+        Collections.reverse(eligible);
+        // 没有必须预热的key时，按稳态速率提前预热最早过期的key：同一批写入的key逐轮被摊开，数据库压力趋于平稳，
+        // 总的预热次数仍是每个key每个有效期一次
+        credit = eligible.isEmpty() ? 0 : credit + steady * cycle;
+        int budget = Math.max(required, (int) Math.min(credit, eligible.size()));
+        credit = Math.max(0, credit - budget);
+        List<Map.Entry<String, Rewarm>> due = eligible.subList(0, budget);
+        for (Map.Entry<String, Rewarm> entry : due) {
+            Rewarm rewarm = entry.getValue();
+            if (!rewarms.remove(entry.getKey(), rewarm)) {
+                continue;
+            }
+            try {
+                rewarm.reload.run();
+                record("reloaded");
+            } catch (CacheLoadRejectedException e) {
+                // 数据源繁忙，由到期后的访问重新加载
+                record("rejected");
+            } catch (Exception e) {
+                record("failed");
+                log.warn("缓存预热失败，key：{}", entry.getKey(), e);
+            }
+        }
+    }
+
+    private void record(String result) {
+        meterRegistry.counter("cache.rewarm", "result", result).increment();
+    }
+
+    private static class Rewarm {
+        final long ttlMillis;
+        final long expireAt;
+        final long rewarmAt;
+        final Runnable reload;
+        final LongAdder hits = new LongAdder();
+
+        Rewarm(long ttlMillis, long expireAt, long rewarmAt, Runnable reload) {
+            this.ttlMillis = ttlMillis;
+            this.expireAt = expireAt;
+            this.rewarmAt = rewarmAt;
+            this.reload = reload;
+        }
+
+        /**
+         * 按写入以来的访问频率折算成一个有效期内的访问次数，提前预热时有效期还没有过完，不能直接比较访问次数
+         */
+        boolean isHot(long now, int minHits) {
+            long elapsed = Math.max(1L, now - (expireAt - ttlMillis));
+            return hits.sum() * ttlMillis >= (long) minHits * elapsed;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.hmdp.utils;
+
+/**
+ * 缓存未命中后查询数据源的请求被拒绝，数据库处于保护状态
+ */
+public class CacheLoadRejectedException extends RuntimeException {
+
+    public CacheLoadRejectedException(String message) {
+        super(message);
+    }
+}
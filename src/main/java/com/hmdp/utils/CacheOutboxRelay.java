@@ -0,0 +1,185 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.config.CacheOutboxProperties;
+import com.hmdp.entity.CacheOutbox;
+import com.hmdp.mapper.CacheOutboxMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于outbox表的缓存失效，替代事务中的“更新数据库后删除缓存”。
+ * 事务内的删除在提交之前执行，并发的读请求可能把旧数据重新写回缓存，而且删除失败会让事务回滚。
+ * <ul>
+ *     <li>写入方在更新数据的事务中调用{@link #record(String...)}写入失效记录，与数据一起提交或回滚</li>
+ *     <li>每个节点按id顺序轮询outbox表（代替订阅binlog），批量删除Redis和本节点的本地副本、快照，
+ *     延迟一段时间后再删除一次，清除提交前读到旧数据、在第一次删除之后写回的缓存</li>
+ *     <li>自增id的分配顺序和提交顺序不一定相同，id不连续时游标停在空洞处等待较小的id提交，超时后视为事务已回滚</li>
+ * </ul>
+ * 删除是幂等的，多个节点、重复消费都不影响结果。
+ */
+@Slf4j
+@Component
+public class CacheOutboxRelay {
+
+    /**
+     * 清理过期记录的周期（毫秒）
+     */
+    private static final long CLEANUP_PERIOD_MILLIS = 10 * 60 * 1000L;
+
+    @Resource
+    private CacheOutboxMapper cacheOutboxMapper;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    private final CacheOutboxProperties properties;
+
+    /**
+     * 已连续处理到的最大id，只在轮询线程中访问
+     */
+    private long cursor;
+    /**
+     * 大于游标、已经处理过的id
+     */
+    private final Set<Long> processedAhead = new HashSet<>();
+    /**
+     * 发现空洞的时间，0表示没有空洞
+     */
+    private long gapSince;
+
+    private final Timer lag;
+    private final Counter invalidated;
+
+    private final ScheduledExecutorService relayExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cache-outbox-relay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CacheOutboxRelay(CacheOutboxProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.lag = Timer.builder("cache.outbox.lag")
+                .description("失效记录从写入到删除缓存的延迟")
+                .register(meterRegistry);
+        this.invalidated = Counter.builder("cache.outbox.invalidated")
+                .description("根据outbox删除的缓存key个数")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        // 从最新的记录开始，本节点启动前的本地缓存都是空的，Redis中的key已由其他节点删除
+        CacheOutbox last = cacheOutboxMapper.selectOne(new QueryWrapper<CacheOutbox>()
+                .select("id").orderByDesc("id").last("limit 1"));
+        cursor = last == null ? 0 : last.getId();
+        relayExecutor.scheduleWithFixedDelay(this::pollQuietly, properties.getPollIntervalMillis(),
+                properties.getPollIntervalMillis(), TimeUnit.MILLISECONDS);
+        relayExecutor.scheduleWithFixedDelay(this::cleanupQuietly, CLEANUP_PERIOD_MILLIS,
+                CLEANUP_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        relayExecutor.shutdownNow();
+    }
+
+    /**
+     * 写入缓存失效记录，应在修改数据的事务中调用，提交后由各节点删除这些key
+     */
+    public void record(String... keys) {
+        LocalDateTime now = LocalDateTime.now();
+        for (String key : keys) {
+            cacheOutboxMapper.insert(new CacheOutbox().setCacheKey(key).setCreateTime(now));
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (Exception e) {
+            // 下个周期从同一个游标重试
+            log.warn("消费缓存失效记录失败", e);
+        }
+    }
+
+    private void poll() {
+        List<CacheOutbox> rows = cacheOutboxMapper.selectList(new QueryWrapper<CacheOutbox>()
+                .gt("id", cursor)
+                .orderByAsc("id")
+                .last("limit " + properties.getBatchSize()));
+        Set<String> keys = new LinkedHashSet<>();
+        for (CacheOutbox row : rows) {
+            if (!processedAhead.contains(row.getId())) {
+                keys.add(row.getCacheKey());
+            }
+        }
+        if (!keys.isEmpty()) {
+            // Redis不可用时抛出异常，游标不动，下个周期重试
+            cacheClient.delete(keys);
+            invalidated.increment(keys.size());
+            relayExecutor.schedule(() -> deleteAgain(keys), properties.getDoubleDeleteDelayMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        boolean contiguous = true;
+        for (CacheOutbox row : rows) {
+            long id = row.getId();
+            Duration delay = Duration.between(row.getCreateTime(), now);
+            if (!processedAhead.contains(id) && !delay.isNegative()) {
+                lag.record(delay);
+            }
+            if (contiguous && id == cursor + 1) {
+                cursor = id;
+                processedAhead.remove(id);
+            } else {
+                contiguous = false;
+                processedAhead.add(id);
+            }
+        }
+        if (processedAhead.isEmpty()) {
+            gapSince = 0;
+        } else if (gapSince == 0) {
+            gapSince = System.currentTimeMillis();
+        } else if (System.currentTimeMillis() - gapSince >= properties.getGapTimeoutMillis()) {
+            // 空洞中的id迟迟没有提交，跳过，之后的记录已经处理过，下次轮询时游标会连续前进
+            long skipTo = Collections.min(processedAhead) - 1;
+            log.debug("缓存失效记录id不连续，跳过{}~{}", cursor + 1, skipTo);
+            cursor = skipTo;
+            gapSince = 0;
+        }
+    }
+
+    private void deleteAgain(Set<String> keys) {
+        try {
+            cacheClient.delete(keys);
+        } catch (Exception e) {
+            log.warn("延迟删除缓存失败，key：{}", keys, e);
+        }
+    }
+
+    private void cleanupQuietly() {
+        try {
+            int deleted = cacheOutboxMapper.delete(new QueryWrapper<CacheOutbox>()
+                    .lt("create_time", LocalDateTime.now().minusMinutes(properties.getRetentionMinutes())));
+            if (deleted > 0) {
+                log.debug("清理缓存失效记录{}条", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("清理缓存失效记录失败", e);
+        }
+    }
+}
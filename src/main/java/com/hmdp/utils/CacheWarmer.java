@@ -0,0 +1,155 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.collection.CollUtil;
+import com.hmdp.config.CacheWarmupProperties;
+import com.hmdp.entity.Shop;
+import com.hmdp.entity.Voucher;
+import com.hmdp.mapper.VoucherMapper;
+import com.hmdp.service.IShopService;
+import com.hmdp.service.IShopTypeService;
+import com.hmdp.service.IVoucherService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 启动后的缓存预热，发布或Redis故障切换后不会在最初几分钟全部未命中。
+ * <ul>
+ *     <li>热门店铺按销量、评论数取前topShops个（热点key的访问统计只在内存中，重启后就没有了），
+ *     分批用listByIds查询，每批一次pipeline写入，同时写入这些店铺的优惠券列表</li>
+ *     <li>店铺类型只有一个key，经过正常的查询路径加载</li>
+ * </ul>
+ * 同时作为就绪探针的一部分（/actuator/health/readiness中的cacheWarmup），覆盖率达到minCoverage后才返回UP。
+ */
+@Slf4j
+@Component("cacheWarmup")
+public class CacheWarmer implements HealthIndicator {
+
+    @Resource
+    private CacheWarmupProperties properties;
+
+    @Resource
+    private CacheClient cacheClient;
+
+    @Resource
+    private IShopService shopService;
+
+    @Resource
+    private IShopTypeService shopTypeService;
+
+    @Resource
+    private IVoucherService voucherService;
+
+    @Resource
+    private VoucherMapper voucherMapper;
+
+    private volatile long startedAt;
+    private volatile boolean finished;
+
+    /**
+     * 计划写入和已经写入的key个数
+     */
+    private final AtomicInteger planned = new AtomicInteger();
+    private final AtomicInteger warmed = new AtomicInteger();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        startedAt = System.currentTimeMillis();
+        if (!properties.isEnabled()) {
+            finished = true;
+            return;
+        }
+        Thread thread = new Thread(this::warmUp, "cache-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void warmUp() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(properties.getParallelism(), r -> {
+            Thread thread = new Thread(r, "cache-warmup-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Long> shopIds = shopService.query()
+                    .select("id")
+                    .orderByDesc("sold").orderByDesc("comments")
+                    .last("limit " + properties.getTopShops())
+                    .list()
+                    .stream().map(Shop::getId).collect(Collectors.toList());
+            // 店铺类型1个key，每个店铺的详情和优惠券各1个key
+            planned.set(1 + shopIds.size() * 2);
+
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> {
+                shopTypeService.queryByTypeList();
+                warmed.incrementAndGet();
+            }));
+            for (List<Long> batch : CollUtil.split(shopIds, properties.getBatchSize())) {
+                futures.add(executor.submit(() -> warmUpShops(batch)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (Exception e) {
+                    log.warn("缓存预热批次失败", e);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("缓存预热失败", e);
+        } finally {
+            executor.shutdown();
+            finished = true;
+        }
+        log.info("缓存预热完成，写入{}/{}个key，耗时{}ms", warmed.get(), planned.get(),
+                System.currentTimeMillis() - startedAt);
+    }
+
+    private void warmUpShops(List<Long> shopIds) {
+        Map<Long, Shop> shops = shopService.listByIds(shopIds).stream()
+                .collect(Collectors.toMap(Shop::getId, Function.identity()));
+        cacheClient.setAllLoaded(CACHE_SHOP_KEY, shops, shopService::getById, CACHE_SHOP_TTL, TimeUnit.MINUTES);
+        warmed.addAndGet(shops.size());
+
+        Map<Long, List<Voucher>> vouchers = voucherService.queryVoucherOfShops(shopIds);
+        cacheClient.setAllLoaded(CACHE_SHOP_VOUCHER_KEY, vouchers, voucherMapper::queryVoucherOfShop,
+                CACHE_SHOP_VOUCHER_TTL, TimeUnit.MINUTES);
+        warmed.addAndGet(vouchers.size());
+    }
+
+    /**
+     * 覆盖率 = 已写入的key / 计划写入的key
+     */
+    @Override
+    public Health health() {
+        int total = planned.get();
+        double coverage = total == 0 ? (finished ? 1 : 0) : (double) warmed.get() / total;
+        long elapsedSeconds = startedAt == 0 ? 0 : (System.currentTimeMillis() - startedAt) / 1000;
+        boolean ready = !properties.isEnabled() || coverage >= properties.getMinCoverage()
+                || (startedAt > 0 && elapsedSeconds >= properties.getReadyTimeoutSeconds());
+        return (ready ? Health.up() : Health.outOfService())
+                .withDetail("coverage", coverage)
+                .withDetail("warmed", warmed.get())
+                .withDetail("planned", total)
+                .withDetail("finished", finished)
+                .build();
+    }
+}
@@ -0,0 +1,122 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.Validator;
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.config.ClientIpProperties;
+import org.springframework.stereotype.Component;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 解析请求的客户端IP，用于按IP限流和UV统计。
+ * 直连地址不是可信代理时请求头可以被客户端伪造，直接使用直连地址；
+ * 否则从右向左读取X-Forwarded-For，跳过可信代理追加的地址，第一个不可信的地址就是客户端；
+ * X-Forwarded-For中全部是可信代理时依次使用X-Real-IP、X-Forwarded-For最左边的地址。
+ */
+@Component
+public class ClientIpResolver {
+
+    private final List<Cidr> trustedProxies = new ArrayList<>();
+
+    public ClientIpResolver(ClientIpProperties properties) {
+        for (String proxy : properties.getTrustedProxies()) {
+            if (StrUtil.isNotBlank(proxy)) {
+                trustedProxies.add(Cidr.parse(proxy.trim()));
+            }
+        }
+    }
+
+    public String resolve(HttpServletRequest request) {
+        String remote = request.getRemoteAddr();
+        if (!isTrusted(remote)) {
+            return remote;
+        }
+        List<String> forwarded = StrUtil.split(StrUtil.nullToEmpty(request.getHeader("X-Forwarded-For")), ',', true, true);
+        for (int i = forwarded.size() - 1; i >= 0; i--) {
+            String address = forwarded.get(i);
+            if (!isTrusted(address)) {
+                return address;
+            }
+        }
+        String realIp = StrUtil.trim(request.getHeader("X-Real-IP"));
+        if (StrUtil.isNotEmpty(realIp)) {
+            return realIp;
+        }
+        return forwarded.isEmpty() ? remote : forwarded.get(0);
+    }
+
+    private boolean isTrusted(String address) {
+        if (trustedProxies.isEmpty()) {
+            return false;
+        }
+        byte[] bytes = toBytes(address);
+        if (bytes == null) {
+            return false;
+        }
+        for (Cidr cidr : trustedProxies) {
+            if (cidr.contains(bytes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return 地址不是IP字面量时返回null，不会触发DNS查询
+     */
+    private static byte[] toBytes(String address) {
+        if (!Validator.isIpv4(address) && !Validator.isIpv6(address)) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(address).getAddress();
+        } catch (UnknownHostException e) {
+            return null;
+        }
+    }
+
+    private static final class Cidr {
+        private final byte[] network;
+        private final int prefix;
+
+        private Cidr(byte[] network, int prefix) {
+            this.network = network;
+            this.prefix = prefix;
+        }
+
+        static Cidr parse(String value) {
+            int slash = value.indexOf('/');
+            byte[] network = toBytes(slash < 0 ? value : value.substring(0, slash));
+            if (network == null) {
+                throw new IllegalStateException("可信代理不是合法的IP或CIDR：" + value);
+            }
+            int prefix = slash < 0 ? network.length * 8 : Integer.parseInt(value.substring(slash + 1));
+            if (prefix < 0 || prefix > network.length * 8) {
+                throw new IllegalStateException("可信代理的前缀长度不合法：" + value);
+            }
+            return new Cidr(network, prefix);
+        }
+
+        boolean contains(byte[] address) {
+            if (address.length != network.length) {
+                return false;
+            }
+            int bytes = prefix / 8;
+            for (int i = 0; i < bytes; i++) {
+                if (address[i] != network[i]) {
+                    return false;
+                }
+            }
+            int bits = prefix % 8;
+            if (bits == 0) {
+                return true;
+            }
+            int mask = 0xFF << (8 - bits) & 0xFF;
+            return (address[bytes] & mask) == (network[bytes] & mask);
+        }
+    }
+}
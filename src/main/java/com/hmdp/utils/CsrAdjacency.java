@@ -0,0 +1,262 @@
+package com.hmdp.utils;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * 不可变的压缩邻接表（CSR布局）。
+ * 每个源节点的邻居按升序排列，首个元素存原值，其余存与前一个元素的差值，均以varint编码写入同一个byte数组。
+ */
+public final class CsrAdjacency {
+
+    private static final long[] EMPTY = new long[0];
+
+    /**
+     * 升序排列的源节点id
+     */
+    private final long[] keys;
+    /**
+     * keys[i]的邻居数据在data中的起始位置，offsets[keys.length]为data的有效长度
+     */
+    private final int[] offsets;
+    /**
+     * keys[i]的邻居数量
+     */
+    private final int[] degrees;
+    private final byte[] data;
+    private final long edgeCount;
+
+    private CsrAdjacency(long[] keys, int[] offsets, int[] degrees, byte[] data, long edgeCount) {
+        this.keys = keys;
+        this.offsets = offsets;
+        this.degrees = degrees;
+        this.data = data;
+        this.edgeCount = edgeCount;
+    }
+
+    public static CsrAdjacency empty() {
+        return new CsrAdjacency(EMPTY, new int[]{0}, new int[0], new byte[0], 0);
+    }
+
+    /**
+     * 根据边集合构建邻接表，src[i] -> dst[i]，重复的边会被去重
+     * @param src 源节点数组
+     * @param dst 目标节点数组
+     * @param size 有效边数量
+     */
+    public static CsrAdjacency build(long[] src, long[] dst, int size) {
+        if (size == 0) {
+            return empty();
+        }
+        // 按(src, dst)排序，直接在两个原始类型数组上交换，避免装箱
+        long[] s = Arrays.copyOf(src, size);
+        long[] d = Arrays.copyOf(dst, size);
+        sortPairs(s, d, 0, size - 1);
+
+        int keyCount = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0 || s[i] != s[i - 1]) {
+                keyCount++;
+            }
+        }
+        long[] keys = new long[keyCount];
+        int[] offsets = new int[keyCount + 1];
+        int[] degrees = new int[keyCount];
+        ByteSink sink = new ByteSink(size * 2);
+        long edges = 0;
+        int k = -1;
+        long prev = 0;
+        for (int i = 0; i < size; i++) {
+            boolean newKey = i == 0 || s[i] != s[i - 1];
+            if (newKey) {
+                k++;
+                keys[k] = s[i];
+                offsets[k] = sink.size;
+                sink.writeVarLong(d[i]);
+            } else if (d[i] == prev) {
+                continue;
+            } else {
+                sink.writeVarLong(d[i] - prev);
+            }
+            prev = d[i];
+            degrees[k]++;
+            edges++;
+        }
+        offsets[keyCount] = sink.size;
+        return new CsrAdjacency(keys, offsets, degrees, sink.toArray(), edges);
+    }
+
+    /**
+     * 在(src, dst)上做原地快速排序
+     */
+    private static void sortPairs(long[] s, long[] d, int lo, int hi) {
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            long ps = s[mid];
+            long pd = d[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (compare(s[i], d[i], ps, pd) < 0) {
+                    i++;
+                }
+                while (compare(s[j], d[j], ps, pd) > 0) {
+                    j--;
+                }
+                if (i <= j) {
+                    long t = s[i]; s[i] = s[j]; s[j] = t;
+                    t = d[i]; d[i] = d[j]; d[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            // 先递归较短的一侧，控制栈深度
+            if (j - lo < hi - i) {
+                sortPairs(s, d, lo, j);
+                lo = i;
+            } else {
+                sortPairs(s, d, i, hi);
+                hi = j;
+            }
+        }
+    }
+
+    private static int compare(long s1, long d1, long s2, long d2) {
+        int c = Long.compare(s1, s2);
+        return c != 0 ? c : Long.compare(d1, d2);
+    }
+
+    private int indexOf(long key) {
+        return Arrays.binarySearch(keys, key);
+    }
+
+    public int degree(long key) {
+        int idx = indexOf(key);
+        return idx < 0 ? 0 : degrees[idx];
+    }
+
+    /**
+     * 判断 key -> value 这条边是否存在，邻居有序，遇到更大的值即可提前结束
+     */
+    public boolean contains(long key, long value) {
+        int idx = indexOf(key);
+        if (idx < 0) {
+            return false;
+        }
+        int pos = offsets[idx];
+        long current = 0;
+        for (int n = 0; n < degrees[idx]; n++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            current = n == 0 ? delta : current + delta;
+            if (current >= value) {
+                return current == value;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按升序遍历key的所有邻居
+     */
+    public void forEach(long key, LongConsumer consumer) {
+        int idx = indexOf(key);
+        if (idx < 0) {
+            return;
+        }
+        int pos = offsets[idx];
+        long current = 0;
+        for (int n = 0; n < degrees[idx]; n++) {
+            long delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[pos++];
+                delta |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            current = n == 0 ? delta : current + delta;
+            consumer.accept(current);
+        }
+    }
+
+    /**
+     * 解码key的全部邻居，结果升序
+     */
+    public long[] neighbors(long key) {
+        int idx = indexOf(key);
+        if (idx < 0) {
+            return EMPTY;
+        }
+        long[] result = new long[degrees[idx]];
+        int[] i = {0};
+        forEach(key, v -> result[i[0]++] = v);
+        return result;
+    }
+
+    /**
+     * 遍历所有边，供合并写日志时重建使用
+     */
+    public void forEachEdge(EdgeConsumer consumer) {
+        for (int k = 0; k < keys.length; k++) {
+            long key = keys[k];
+            forEach(key, v -> consumer.accept(key, v));
+        }
+    }
+
+    public int keyCount() {
+        return keys.length;
+    }
+
+    public long edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * 估算占用的堆内存字节数（不含对象头）
+     */
+    public long sizeInBytes() {
+        return (long) keys.length * Long.BYTES
+                + (long) offsets.length * Integer.BYTES
+                + (long) degrees.length * Integer.BYTES
+                + data.length;
+    }
+
+    @FunctionalInterface
+    public interface EdgeConsumer {
+        void accept(long src, long dst);
+    }
+
+    /**
+     * 可增长的字节缓冲区
+     */
+    private static final class ByteSink {
+        private byte[] buf;
+        private int size;
+
+        ByteSink(int capacity) {
+            buf = new byte[Math.max(16, capacity)];
+        }
+
+        void writeVarLong(long v) {
+            if (buf.length - size < 10) {
+                buf = Arrays.copyOf(buf, buf.length + (buf.length >> 1) + 10);
+            }
+            while ((v & ~0x7FL) != 0) {
+                buf[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[size++] = (byte) v;
+        }
+
+        byte[] toArray() {
+            return Arrays.copyOf(buf, size);
+        }
+    }
+}
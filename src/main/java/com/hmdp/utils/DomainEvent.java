@@ -0,0 +1,14 @@
+package com.hmdp.utils;
+
+/**
+ * 通过{@link EventBus#publish(DomainEvent)}发布的领域事件，序列化为JSON保存，需要无参构造方法和getter/setter。
+ * 监听者是带{@link org.springframework.context.event.EventListener}注解、参数为事件类型的方法，
+ * 投递至少一次，监听者需要能承受重复处理。
+ */
+public interface DomainEvent {
+
+    /**
+     * 聚合key，如shop:1，同一聚合的事件按发布顺序处理，前一个事件处理成功之前不会处理后面的事件
+     */
+    String aggregateKey();
+}
@@ -0,0 +1,20 @@
+package com.hmdp.utils;
+
+/**
+ * 按批持久化的事件副作用。
+ * 监听者处理单个事件时只在内存中合并，{@link EventBus}处理完一批事件后调用{@link #flush()}，
+ * 与把这批事件标记为已处理在同一个事务中提交；事务回滚时调用{@link #discard()}，
+ * 这批事件会重新投递，合并的内容随之重建。
+ */
+public interface EventBatchListener {
+
+    /**
+     * 写入本批合并的内容，在EventBus的事务中执行，异常时整批回滚
+     */
+    void flush();
+
+    /**
+     * 丢弃本批合并的内容
+     */
+    void discard();
+}
@@ -0,0 +1,305 @@
+package com.hmdp.utils;
+
+import cn.hutool.json.JSONUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
+import com.hmdp.config.EventBusProperties;
+import com.hmdp.entity.EventOutbox;
+import com.hmdp.mapper.EventOutboxMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ClassUtils;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hmdp.utils.RedisConstants.LOCK_EVENT_DISPATCH_KEY;
+
+/**
+ * 基于outbox表的进程内事件总线，请求线程只负责写入业务数据和事件记录，推送、计数等副作用在提交后异步执行。
+ * <ul>
+ *     <li>{@link #publish(DomainEvent)}在调用方的事务中写入事件记录，与业务数据一起提交或回滚</li>
+ *     <li>各节点轮询outbox表，通过分布式锁保证同一时刻只有一个节点在分发，一次读取一批事件，
+ *     按聚合key哈希到固定的工作线程，同一聚合的事件按id顺序交给{@link EventListener}监听者</li>
+ *     <li>监听者抛出异常时，该聚合本批剩余的事件不再处理，失败的事件按指数退避重试，重试期间同一聚合之后的事件等待；
+ *     重试次数用尽后标记为失败并记录日志，不再阻塞之后的事件</li>
+ * </ul>
+ * 标记处理结果之前节点宕机或数据库不可用时事件会再次投递，监听者需要能承受重复处理。
+ * 需要按批合并写入的副作用实现{@link EventBatchListener}，与标记已处理在同一个事务中提交。
+ */
+@Slf4j
+@Component
+public class EventBus {
+
+    /**
+     * 清理已处理记录的周期（毫秒）
+     */
+    private static final long CLEANUP_PERIOD_MILLIS = 10 * 60 * 1000L;
+
+    @Resource
+    private EventOutboxMapper eventOutboxMapper;
+
+    @Resource
+    private RedisLockFactory lockFactory;
+
+    @Resource
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    @Resource
+    private TransactionTemplate transactionTemplate;
+
+    @Resource
+    private List<EventBatchListener> batchListeners;
+
+    private final EventBusProperties properties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final Timer lag;
+
+    private final ScheduledExecutorService dispatchExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "event-dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ExecutorService workers;
+
+    public EventBus(EventBusProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.lag = Timer.builder("event.lag")
+                .description("事件从发布到处理成功的延迟")
+                .register(meterRegistry);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(properties.getWorkers(), r -> {
+            Thread thread = new Thread(r, "event-worker-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 监听者可能依赖尚未初始化完成的Bean，应用启动完成后再开始分发
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        dispatchExecutor.scheduleWithFixedDelay(this::dispatchQuietly, properties.getPollIntervalMillis(),
+                properties.getPollIntervalMillis(), TimeUnit.MILLISECONDS);
+        dispatchExecutor.scheduleWithFixedDelay(this::cleanupQuietly, CLEANUP_PERIOD_MILLIS,
+                CLEANUP_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatchExecutor.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * 发布事件，应在修改数据的事务中调用，提交后才会被处理；不在事务中时立即写入
+     */
+    public void publish(DomainEvent event) {
+        LocalDateTime now = LocalDateTime.now();
+        eventOutboxMapper.insert(new EventOutbox()
+                .setEventType(event.getClass().getName())
+                .setAggregateKey(event.aggregateKey())
+                .setPayload(JSONUtil.toJsonStr(event))
+                .setStatus(EventOutbox.STATUS_PENDING)
+                .setAttempts(0)
+                .setNextAttemptTime(now)
+                .setCreateTime(now));
+    }
+
+    private void dispatchQuietly() {
+        try {
+            RedisLock lock = lockFactory.getLock(LOCK_EVENT_DISPATCH_KEY);
+            if (!lock.tryLock()) {
+                // 其他节点正在分发
+                return;
+            }
+            try {
+                dispatch();
+            } finally {
+                lock.unlock();
+            }
+        } catch (Exception e) {
+            // 未标记的事件下个周期重新读取
+            log.warn("分发领域事件失败", e);
+        }
+    }
+
+    private void dispatch() throws InterruptedException {
+        LocalDateTime now = LocalDateTime.now();
+        List<EventOutbox> rows = eventOutboxMapper.selectList(new QueryWrapper<EventOutbox>()
+                .eq("status", EventOutbox.STATUS_PENDING)
+                .le("next_attempt_time", now)
+                .orderByAsc("id")
+                .last("limit " + properties.getBatchSize()));
+        if (rows.isEmpty()) {
+            return;
+        }
+        // 上一批中途失败时残留的合并内容对应的事件没有标记已处理，会随本批重新投递
+        for (EventBatchListener listener : batchListeners) {
+            listener.discard();
+        }
+        // 聚合key -> 本批要处理的事件，按id升序；同一聚合中更早的事件还在等待重试时，之后的事件都不处理
+        Map<String, Long> waitingFrom = waitingAggregates(rows, now);
+        Map<String, List<EventOutbox>> aggregates = new LinkedHashMap<>();
+        for (EventOutbox row : rows) {
+            Long waiting = waitingFrom.get(row.getAggregateKey());
+            if (waiting == null || row.getId() < waiting) {
+                aggregates.computeIfAbsent(row.getAggregateKey(), k -> new ArrayList<>()).add(row);
+            }
+        }
+        int partitionCount = properties.getWorkers();
+        List<List<List<EventOutbox>>> partitions = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (Map.Entry<String, List<EventOutbox>> entry : aggregates.entrySet()) {
+            partitions.get((entry.getKey().hashCode() & Integer.MAX_VALUE) % partitionCount).add(entry.getValue());
+        }
+
+        Queue<Long> done = new ConcurrentLinkedQueue<>();
+        Queue<EventOutbox> failed = new ConcurrentLinkedQueue<>();
+        List<Future<?>> futures = new ArrayList<>(partitionCount);
+        for (List<List<EventOutbox>> partition : partitions) {
+            if (!partition.isEmpty()) {
+                futures.add(workers.submit(() -> process(partition, done, failed)));
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.warn("处理领域事件的线程异常", e.getCause());
+            }
+        }
+
+        if (!done.isEmpty()) {
+            markDone(done);
+        }
+        for (EventOutbox row : failed) {
+            scheduleRetry(row);
+        }
+    }
+
+    /**
+     * 写入本批合并的副作用并标记事件已处理，两者一起提交；回滚时丢弃合并的内容，这批事件会重新投递
+     */
+    private void markDone(Collection<Long> done) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (EventBatchListener listener : batchListeners) {
+                    listener.flush();
+                }
+                eventOutboxMapper.update(null, new UpdateWrapper<EventOutbox>()
+                        .set("status", EventOutbox.STATUS_DONE)
+                        .in("id", done));
+            });
+        } catch (RuntimeException e) {
+            for (EventBatchListener listener : batchListeners) {
+                listener.discard();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return 聚合key -> 最早一个还在等待重试的事件id，只查询本批涉及的聚合
+     */
+    private Map<String, Long> waitingAggregates(List<EventOutbox> rows, LocalDateTime now) {
+        Set<String> keys = new HashSet<>();
+        for (EventOutbox row : rows) {
+            keys.add(row.getAggregateKey());
+        }
+        List<EventOutbox> waiting = eventOutboxMapper.selectList(new QueryWrapper<EventOutbox>()
+                .select("aggregate_key", "min(id) as id")
+                .eq("status", EventOutbox.STATUS_PENDING)
+                .gt("next_attempt_time", now)
+                .in("aggregate_key", keys)
+                .groupBy("aggregate_key"));
+        Map<String, Long> waitingFrom = new HashMap<>();
+        for (EventOutbox row : waiting) {
+            waitingFrom.put(row.getAggregateKey(), row.getId());
+        }
+        return waitingFrom;
+    }
+
+    /**
+     * 在一个工作线程中依次处理分配到的聚合，某个事件失败时跳过同一聚合之后的事件
+     */
+    private void process(List<List<EventOutbox>> aggregates, Queue<Long> done, Queue<EventOutbox> failed) {
+        for (List<EventOutbox> events : aggregates) {
+            for (EventOutbox row : events) {
+                try {
+                    handle(row);
+                    done.add(row.getId());
+                    Duration delay = Duration.between(row.getCreateTime(), LocalDateTime.now());
+                    if (!delay.isNegative()) {
+                        lag.record(delay);
+                    }
+                    record(row, "success");
+                } catch (Exception e) {
+                    log.warn("处理领域事件失败，id：{}，类型：{}，聚合：{}", row.getId(), row.getEventType(),
+                            row.getAggregateKey(), e);
+                    failed.add(row);
+                    record(row, "failed");
+                    break;
+                }
+            }
+        }
+    }
+
+    private void handle(EventOutbox row) throws ClassNotFoundException {
+        Class<?> type = ClassUtils.forName(row.getEventType(), getClass().getClassLoader());
+        // 同步调用所有监听者，异常直接抛给当前线程
+        applicationEventPublisher.publishEvent(JSONUtil.toBean(row.getPayload(), type));
+    }
+
+    private void scheduleRetry(EventOutbox row) {
+        int attempts = row.getAttempts() + 1;
+        EventOutbox update = new EventOutbox().setId(row.getId()).setAttempts(attempts);
+        if (attempts >= properties.getMaxAttempts()) {
+            update.setStatus(EventOutbox.STATUS_DEAD);
+            log.error("领域事件重试{}次仍然失败，不再处理，id：{}，类型：{}，内容：{}", attempts, row.getId(),
+                    row.getEventType(), row.getPayload());
+            record(row, "dead");
+        } else {
+            long backoff = Math.min(properties.getRetryBackoffMillis() << Math.min(attempts - 1, 30),
+                    properties.getMaxRetryBackoffMillis());
+            update.setNextAttemptTime(LocalDateTime.now().plusNanos(TimeUnit.MILLISECONDS.toNanos(backoff)));
+        }
+        eventOutboxMapper.updateById(update);
+    }
+
+    private void record(EventOutbox row, String result) {
+        meterRegistry.counter("event.dispatched", "type", ClassUtils.getShortName(row.getEventType()),
+                "result", result).increment();
+    }
+
+    private void cleanupQuietly() {
+        try {
+            int deleted = eventOutboxMapper.delete(new QueryWrapper<EventOutbox>()
+                    .eq("status", EventOutbox.STATUS_DONE)
+                    .lt("create_time", LocalDateTime.now().minusMinutes(properties.getRetentionMinutes())));
+            if (deleted > 0) {
+                log.debug("清理已处理的领域事件{}条", deleted);
+            }
+        } catch (Exception e) {
+            log.warn("清理领域事件记录失败", e);
+        }
+    }
+}
@@ -0,0 +1,451 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.Follow;
+import com.hmdp.mapper.FollowMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hmdp.utils.RedisConstants.FOLLOW_CHANGED_CHANNEL;
+
+/**
+ * 进程内的关注关系图，由tb_follow构建，是数据库的缓存，关注关系以数据库为准。
+ * 关注列表和粉丝列表各用一份{@link CsrAdjacency}保存，新增的关注/取关先写入写日志，
+ * 读取时叠加写日志，写日志中的边数超过阈值后在后台线程合并进新的邻接表。
+ * <ul>
+ *     <li>本节点的修改通过频道通知其他节点，各节点写入自己的写日志</li>
+ *     <li>定期从数据库全量重建，补偿丢失的频道消息，以及多个节点并发修改同一条边时消息的乱序</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class FollowGraph implements MessageListener {
+
+    /**
+     * 从数据库分批加载关注关系时每批的数量
+     */
+    private static final int LOAD_BATCH_SIZE = 10000;
+    /**
+     * 写日志中不同的边数超过该值时触发合并
+     */
+    private static final int COMPACT_THRESHOLD = 4096;
+    /**
+     * 从数据库全量重建的间隔（分钟）
+     */
+    private static final long RELOAD_INTERVAL_MINUTES = 10L;
+
+    @Resource
+    private FollowMapper followMapper;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 区分频道消息是否来自本节点
+     */
+    private final String nodeId = UUID.randomUUID().toString(true);
+
+    /**
+     * 邻接表和写日志放在同一个不可变引用里，保证读线程看到的快照和写日志是配套的
+     */
+    private volatile State state = new State(CsrAdjacency.empty(), CsrAdjacency.empty(), new WriteLog(), new WriteLog());
+
+    private final Object writeLock = new Object();
+
+    /**
+     * 重建和合并互斥执行
+     */
+    private final Object maintenanceLock = new Object();
+
+    /**
+     * 重建期间的写入，加载完成后重放到新的写日志中；不在重建时为null。由writeLock保护
+     */
+    private List<long[]> reloadJournal;
+
+    /**
+     * 是否已经提交了合并任务，由writeLock保护
+     */
+    private boolean compacting;
+
+    private final ScheduledExecutorService maintenanceExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "follow-graph-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        // 先订阅再加载，加载期间其他节点的修改记入重建日志，不会丢失
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(FOLLOW_CHANGED_CHANNEL));
+        try {
+            reload();
+        } catch (Exception e) {
+            log.error("加载关注关系失败，关注图以空图启动", e);
+        }
+        maintenanceExecutor.scheduleWithFixedDelay(this::reloadQuietly, RELOAD_INTERVAL_MINUTES,
+                RELOAD_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        maintenanceExecutor.shutdownNow();
+    }
+
+    private void reloadQuietly() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("重建关注图失败", e);
+        }
+    }
+
+    /**
+     * 从tb_follow全量重建关注图，按主键分批读取，只查询两列，避免一次性创建大量Follow对象。
+     * 读取期间的写入可能已经或还没有反映在读到的数据中，都在替换时重放到新的写日志，以写日志为准
+     */
+    public void reload() {
+        synchronized (maintenanceLock) {
+            synchronized (writeLock) {
+                reloadJournal = new ArrayList<>();
+            }
+            try {
+                doReload();
+            } finally {
+                synchronized (writeLock) {
+                    reloadJournal = null;
+                }
+            }
+        }
+    }
+
+    private void doReload() {
+        long[] src = new long[1024];
+        long[] dst = new long[1024];
+        int size = 0;
+        long lastId = 0;
+        while (true) {
+            List<Follow> batch = followMapper.selectList(new QueryWrapper<Follow>()
+                    .select("id", "user_id", "follow_user_id")
+                    .gt("id", lastId)
+                    .orderByAsc("id")
+                    .last("limit " + LOAD_BATCH_SIZE));
+            if (batch.isEmpty()) {
+                break;
+            }
+            if (size + batch.size() > src.length) {
+                int capacity = Math.max(src.length << 1, size + batch.size());
+                src = Arrays.copyOf(src, capacity);
+                dst = Arrays.copyOf(dst, capacity);
+            }
+            for (Follow follow : batch) {
+                src[size] = follow.getUserId();
+                dst[size] = follow.getFollowUserId();
+                size++;
+            }
+            lastId = batch.get(batch.size() - 1).getId();
+            if (batch.size() < LOAD_BATCH_SIZE) {
+                break;
+            }
+        }
+        CsrAdjacency followees = CsrAdjacency.build(src, dst, size);
+        CsrAdjacency followers = CsrAdjacency.build(dst, src, size);
+        State newState;
+        synchronized (writeLock) {
+            WriteLog active = new WriteLog();
+            for (long[] edge : reloadJournal) {
+                active.put(edge[0], edge[1], edge[2] == 1);
+            }
+            newState = new State(followees, followers, new WriteLog(), active);
+            state = newState;
+        }
+        log.info("关注图加载完成，用户数：{}，关注关系数：{}，占用约{}字节",
+                newState.followees.keyCount(), newState.followees.edgeCount(), sizeInBytes());
+    }
+
+    /**
+     * 记录一次关注并通知其他节点，应在数据库写入成功后调用
+     */
+    public void follow(long userId, long followUserId) {
+        write(userId, followUserId, true);
+        publish(userId, followUserId, true);
+    }
+
+    /**
+     * 记录一次取消关注并通知其他节点，应在数据库写入成功后调用
+     */
+    public void unfollow(long userId, long followUserId) {
+        write(userId, followUserId, false);
+        publish(userId, followUserId, false);
+    }
+
+    private void publish(long userId, long followUserId, boolean followed) {
+        try {
+            stringRedisTemplate.convertAndSend(FOLLOW_CHANGED_CHANNEL,
+                    nodeId + ":" + userId + ":" + followUserId + ":" + (followed ? 1 : 0));
+        } catch (Exception e) {
+            // 其他节点在下次重建时同步
+            log.warn("通知关注关系变更失败，userId：{}，followUserId：{}", userId, followUserId, e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(":");
+        if (parts.length != 4 || nodeId.equals(parts[0])) {
+            return;
+        }
+        write(Long.parseLong(parts[1]), Long.parseLong(parts[2]), "1".equals(parts[3]));
+    }
+
+    private void write(long userId, long followUserId, boolean followed) {
+        synchronized (writeLock) {
+            State current = state;
+            current.active.put(userId, followUserId, followed);
+            if (reloadJournal != null) {
+                reloadJournal.add(new long[]{userId, followUserId, followed ? 1 : 0});
+            }
+            if (!compacting && current.active.size() >= COMPACT_THRESHOLD) {
+                compacting = true;
+                maintenanceExecutor.execute(this::compactQuietly);
+            }
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (Exception e) {
+            log.warn("合并关注图写日志失败", e);
+        } finally {
+            synchronized (writeLock) {
+                compacting = false;
+            }
+        }
+    }
+
+    /**
+     * 冻结当前的写日志，之后的写入进入新的写日志；在锁外把冻结的写日志合并进新的邻接表，再替换回去
+     */
+    private void compact() {
+        synchronized (maintenanceLock) {
+            State frozen;
+            synchronized (writeLock) {
+                State current = state;
+                frozen = new State(current.followees, current.followers,
+                        WriteLog.merge(current.frozen, current.active), new WriteLog());
+                state = frozen;
+            }
+            WriteLog frozenLog = frozen.frozen;
+            long[][] edges = {new long[(int) frozen.followees.edgeCount() + frozenLog.size()],
+                    new long[(int) frozen.followees.edgeCount() + frozenLog.size()]};
+            int[] size = {0};
+            frozen.followees.forEachEdge((src, dst) -> {
+                if (frozenLog.get(src, dst) != null) {
+                    // 写日志中的记录优先，在下面统一处理
+                    return;
+                }
+                edges[0][size[0]] = src;
+                edges[1][size[0]] = dst;
+                size[0]++;
+            });
+            frozenLog.followees.forEach((src, delta) -> delta.forEach((dst, followed) -> {
+                if (followed) {
+                    edges[0][size[0]] = src;
+                    edges[1][size[0]] = dst;
+                    size[0]++;
+                }
+            }));
+            CsrAdjacency followees = CsrAdjacency.build(edges[0], edges[1], size[0]);
+            CsrAdjacency followers = CsrAdjacency.build(edges[1], edges[0], size[0]);
+            synchronized (writeLock) {
+                // 期间的写入都在新的写日志中，保留下来
+                state = new State(followees, followers, new WriteLog(), state.active);
+            }
+        }
+    }
+
+    /**
+     * userId是否关注了followUserId
+     */
+    public boolean isFollowing(long userId, long followUserId) {
+        State current = state;
+        Boolean followed = current.active.get(userId, followUserId);
+        if (followed == null) {
+            followed = current.frozen.get(userId, followUserId);
+        }
+        return followed != null ? followed : current.followees.contains(userId, followUserId);
+    }
+
+    /**
+     * userId关注的人，升序
+     */
+    public long[] followees(long userId) {
+        State current = state;
+        return merge(current.followees, delta(current.frozen.followees, current.active.followees, userId), userId);
+    }
+
+    /**
+     * 关注了userId的人，升序
+     */
+    public long[] followers(long userId) {
+        State current = state;
+        return merge(current.followers, delta(current.frozen.followers, current.active.followers, userId), userId);
+    }
+
+    /**
+     * 两个用户共同关注的人，升序
+     */
+    public long[] commonFollowees(long userId, long otherUserId) {
+        long[] a = followees(userId);
+        long[] b = followees(otherUserId);
+        long[] result = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, n);
+    }
+
+    public long sizeInBytes() {
+        State current = state;
+        return current.followees.sizeInBytes() + current.followers.sizeInBytes();
+    }
+
+    /**
+     * 冻结的写日志和当前写日志中key的记录，当前写日志优先，都没有时返回null
+     */
+    private static Map<Long, Boolean> delta(Map<Long, Map<Long, Boolean>> frozen,
+                                            Map<Long, Map<Long, Boolean>> active, long key) {
+        Map<Long, Boolean> older = frozen.get(key);
+        Map<Long, Boolean> newer = active.get(key);
+        if (older == null || older.isEmpty()) {
+            return newer;
+        }
+        if (newer == null || newer.isEmpty()) {
+            return older;
+        }
+        Map<Long, Boolean> merged = new HashMap<>(older);
+        merged.putAll(newer);
+        return merged;
+    }
+
+    /**
+     * 邻接表中的邻居叠加写日志后的结果
+     */
+    private static long[] merge(CsrAdjacency adjacency, Map<Long, Boolean> delta, long key) {
+        long[] base = adjacency.neighbors(key);
+        if (delta == null || delta.isEmpty()) {
+            return base;
+        }
+        long[] result = new long[base.length + delta.size()];
+        int n = 0;
+        for (long v : base) {
+            if (!Boolean.FALSE.equals(delta.get(v))) {
+                result[n++] = v;
+            }
+        }
+        for (Map.Entry<Long, Boolean> entry : delta.entrySet()) {
+            if (entry.getValue() && Arrays.binarySearch(base, entry.getKey()) < 0) {
+                result[n++] = entry.getKey();
+            }
+        }
+        result = Arrays.copyOf(result, n);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * 写日志，同一条边只保留最后一次的结果
+     */
+    private static final class WriteLog {
+        /**
+         * userId -> (followUserId -> 是否关注)
+         */
+        final Map<Long, Map<Long, Boolean>> followees = new ConcurrentHashMap<>();
+        /**
+         * followUserId -> (userId -> 是否关注)
+         */
+        final Map<Long, Map<Long, Boolean>> followers = new ConcurrentHashMap<>();
+        /**
+         * 不同的边数，重复修改同一条边不增加
+         */
+        final AtomicInteger size = new AtomicInteger();
+
+        void put(long userId, long followUserId, boolean followed) {
+            if (followees.computeIfAbsent(userId, k -> new ConcurrentHashMap<>()).put(followUserId, followed) == null) {
+                size.incrementAndGet();
+            }
+            followers.computeIfAbsent(followUserId, k -> new ConcurrentHashMap<>()).put(userId, followed);
+        }
+
+        Boolean get(long userId, long followUserId) {
+            Map<Long, Boolean> delta = followees.get(userId);
+            return delta == null ? null : delta.get(followUserId);
+        }
+
+        int size() {
+            return size.get();
+        }
+
+        /**
+         * 依次重放两个写日志，后者优先
+         */
+        static WriteLog merge(WriteLog older, WriteLog newer) {
+            if (older.size() == 0) {
+                return newer;
+            }
+            WriteLog merged = new WriteLog();
+            older.followees.forEach((src, delta) -> delta.forEach((dst, followed) -> merged.put(src, dst, followed)));
+            newer.followees.forEach((src, delta) -> delta.forEach((dst, followed) -> merged.put(src, dst, followed)));
+            return merged;
+        }
+    }
+
+    private static final class State {
+        final CsrAdjacency followees;
+        final CsrAdjacency followers;
+        /**
+         * 正在合并的写日志，只读
+         */
+        final WriteLog frozen;
+        /**
+         * 接收新写入的写日志
+         */
+        final WriteLog active;
+
+        State(CsrAdjacency followees, CsrAdjacency followers, WriteLog frozen, WriteLog active) {
+            this.followees = followees;
+            this.followers = followers;
+            this.frozen = frozen;
+            this.active = active;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.HotKeyProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * 缓存热点key探测。
+ * 按采样比例把访问计入count-min sketch，计数每个周期减半，近似为最近几个周期内的访问频率；
+ * 估计值最高的topK个key保存在小顶堆中，频率超过阈值的key视为热点，由{@link CacheClient}在本地保存短期副本。
+ * 升级和降级都按{@link #toQps}换算成同一口径的频率再比较，降级阈值低于升级阈值，频率在阈值附近波动的key不会反复升降级。
+ * 未被采样的访问只有一次随机数判断和一次volatile读，不加锁。
+ * 通过 /actuator/hotkeys 查看当前的候选和热点key。
+ */
+@Slf4j
+@Component
+@Endpoint(id = "hotkeys")
+public class HotKeyDetector {
+
+    /**
+     * sketch的行数，估计值取各行最小值
+     */
+    private static final int DEPTH = 4;
+    /**
+     * sketch每行的计数器个数，必须是2的幂
+     */
+    private static final int WIDTH = 1 << 14;
+    /**
+     * 衰减周期（毫秒），每个周期所有计数减半
+     */
+    private static final long DECAY_PERIOD_MILLIS = 5000L;
+    /**
+     * 每行哈希使用的种子，各行对key的完整内容分别计算哈希，hashCode相同的key不会在所有行上都冲突
+     */
+    private static final long[] SEEDS = {0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0x85EBCA77C2B2AE63L};
+
+    private final HotKeyProperties properties;
+
+    private final AtomicLongArray sketch = new AtomicLongArray(DEPTH * WIDTH);
+
+    /**
+     * 候选热点key的小顶堆，堆顶是估计值最小的候选，访问时须持有heap的锁
+     */
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<>(Comparator.comparingLong(c -> c.count));
+    private final Map<String, Candidate> candidates = new HashMap<>();
+
+    /**
+     * 当前的热点key，写时复制，读取不加锁
+     */
+    private volatile Set<String> hotKeys = Collections.emptySet();
+
+    /**
+     * 上一次衰减的时间（毫秒）
+     */
+    private volatile long lastDecayMillis = System.currentTimeMillis();
+
+    /**
+     * key降级后的回调，如清除本地副本
+     */
+    private final List<Consumer<String>> demotionListeners = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService decayExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hot-key-decay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public HotKeyDetector(HotKeyProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        Gauge.builder("cache.hot.keys", this, detector -> detector.hotKeys.size())
+                .description("当前在本地保存副本的热点key个数")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        decayExecutor.scheduleAtFixedRate(this::decayQuietly,
+                DECAY_PERIOD_MILLIS, DECAY_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        decayExecutor.shutdownNow();
+    }
+
+    /**
+     * 记录一次key的访问，按采样比例计入统计
+     */
+    public void record(String key) {
+        if (!properties.isEnabled() || ThreadLocalRandom.current().nextDouble() >= properties.getSampleRate()) {
+            return;
+        }
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, sketch.incrementAndGet(index(row, key)));
+        }
+        offer(key, estimate);
+    }
+
+    public boolean isHot(String key) {
+        return hotKeys.contains(key);
+    }
+
+    /**
+     * 注册key降级后的回调，在衰减线程上执行
+     */
+    public void onDemoted(Consumer<String> listener) {
+        demotionListeners.add(listener);
+    }
+
+    private void offer(String key, long estimate) {
+        synchronized (heap) {
+            Candidate candidate = candidates.get(key);
+            if (candidate != null) {
+                // PriorityQueue不支持修改优先级，先移除再放回，topK很小，线性查找的开销可以接受
+                heap.remove(candidate);
+                candidate.count = estimate;
+                heap.add(candidate);
+            } else if (heap.size() < properties.getTopK()) {
+                candidate = new Candidate(key, estimate);
+                candidates.put(key, candidate);
+                heap.add(candidate);
+            } else if (heap.peek().count < estimate) {
+                Candidate evicted = heap.poll();
+                candidates.remove(evicted.key);
+                candidate = new Candidate(key, estimate);
+                candidates.put(key, candidate);
+                heap.add(candidate);
+            } else {
+                return;
+            }
+            // 刚变热的key立即提升，不等下一个衰减周期
+            if (!hotKeys.contains(key) && toQps(estimate) >= properties.getThresholdQps()) {
+                Set<String> next = new HashSet<>(hotKeys);
+                next.add(key);
+                hotKeys = Collections.unmodifiableSet(next);
+                log.info("发现热点key：{}，估计访问频率{}次/秒", key, (long) toQps(estimate));
+            }
+        }
+    }
+
+    private void decayQuietly() {
+        try {
+            decay();
+        } catch (Exception e) {
+            log.error("热点key统计衰减失败", e);
+        }
+    }
+
+    /**
+     * 所有计数减半，重新计算候选的估计值和热点集合。
+     * 减半与并发的自增之间没有同步，偶尔丢失一次采样，对频率估计没有影响
+     */
+    private void decay() {
+        for (int i = 0; i < sketch.length(); i++) {
+            long value = sketch.get(i);
+            if (value != 0) {
+                sketch.set(i, value >> 1);
+            }
+        }
+        lastDecayMillis = System.currentTimeMillis();
+        double demoteQps = properties.getThresholdQps() * properties.getDemoteRatio();
+        List<String> demoted = new ArrayList<>();
+        synchronized (heap) {
+            List<Candidate> retained = new ArrayList<>(heap.size());
+            for (Candidate candidate : heap) {
+                candidate.count = estimate(candidate.key);
+                if (candidate.count > 0) {
+                    retained.add(candidate);
+                } else {
+                    candidates.remove(candidate.key);
+                }
+            }
+            heap.clear();
+            heap.addAll(retained);
+            Set<String> next = new HashSet<>();
+            for (Candidate candidate : retained) {
+                double qps = toQps(candidate.count);
+                if (qps >= properties.getThresholdQps() || hotKeys.contains(candidate.key) && qps >= demoteQps) {
+                    next.add(candidate.key);
+                }
+            }
+            for (String key : hotKeys) {
+                if (!next.contains(key)) {
+                    log.info("热点key降级：{}", key);
+                    demoted.add(key);
+                }
+            }
+            hotKeys = Collections.unmodifiableSet(next);
+        }
+        // 回调在锁外执行，此时热点集合已经更新，之后的读取不会再为降级的key写入副本
+        for (String key : demoted) {
+            for (Consumer<String> listener : demotionListeners) {
+                listener.accept(key);
+            }
+        }
+    }
+
+    private long estimate(String key) {
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, sketch.get(index(row, key)));
+        }
+        return estimate;
+    }
+
+    private static int index(int row, String key) {
+        // 以行种子为初始值的64位FNV-1a，再用murmur3的finalizer让相近的key（如cache:shop:1和cache:shop:2）分散到不同的列
+        long h = SEEDS[row];
+        for (int i = 0; i < key.length(); i++) {
+            h = (h ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return row * WIDTH + (int) (h & (WIDTH - 1));
+    }
+
+    /**
+     * 把计数换算成访问频率（次/秒，单节点）。
+     * 每个周期减半时，稳定访问下的计数 = 频率*采样比例*(周期 + 距上次衰减的时间)，衰减刚结束时约为一个周期的访问数，
+     * 衰减前约为两个周期；按距上次衰减的时间换算，升级和降级时的估计值口径一致
+     */
+    private double toQps(long count) {
+        long sinceDecay = Math.min(Math.max(0L, System.currentTimeMillis() - lastDecayMillis), DECAY_PERIOD_MILLIS);
+        return count / properties.getSampleRate() / ((DECAY_PERIOD_MILLIS + sinceDecay) / 1000.0);
+    }
+
+    /**
+     * 候选热点key，按估计的访问频率从高到低排列
+     */
+    @ReadOperation
+    public List<Map<String, Object>> hotKeys() {
+        List<Candidate> snapshot;
+        synchronized (heap) {
+            snapshot = new ArrayList<>(heap.size());
+            for (Candidate candidate : heap) {
+                snapshot.add(new Candidate(candidate.key, candidate.count));
+            }
+        }
+        snapshot.sort(Comparator.comparingLong((Candidate c) -> c.count).reversed());
+        Set<String> hot = hotKeys;
+        List<Map<String, Object>> result = new ArrayList<>(snapshot.size());
+        for (Candidate candidate : snapshot) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", candidate.key);
+            item.put("estimatedQps", (long) toQps(candidate.count));
+            item.put("hot", hot.contains(candidate.key));
+            result.add(item);
+        }
+        return result;
+    }
+
+    private static class Candidate {
+        final String key;
+        long count;
+
+        Candidate(String key, long count) {
+            this.key = key;
+            this.count = count;
+        }
+    }
+}
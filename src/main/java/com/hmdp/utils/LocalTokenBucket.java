@@ -0,0 +1,50 @@
+package com.hmdp.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的无锁令牌桶，采用GCRA算法：只保存一个"理论到达时间"，补充令牌不需要定时任务，
+ * 获取令牌是一次CAS。
+ */
+public class LocalTokenBucket {
+
+    /**
+     * 每个令牌的间隔（纳秒）
+     */
+    private final long intervalNanos;
+    /**
+     * 允许的突发量对应的时间（纳秒），即桶容量 * 间隔
+     */
+    private final long burstNanos;
+    private final AtomicLong theoreticalArrival = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param capacity 桶容量，也是每个周期的令牌数
+     * @param periodNanos 补满整个桶所需的时间（纳秒）
+     */
+    public LocalTokenBucket(int capacity, long periodNanos) {
+        this.intervalNanos = Math.max(1, periodNanos / capacity);
+        this.burstNanos = intervalNanos * capacity;
+    }
+
+    public boolean tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long tat = theoreticalArrival.get();
+            long next = Math.max(tat, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (theoreticalArrival.compareAndSet(tat, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 桶是否已经补满，补满的桶可以被清理
+     */
+    public boolean isIdle() {
+        return theoreticalArrival.get() <= System.nanoTime();
+    }
+}
@@ -0,0 +1,238 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.dto.UserDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 登录用户的本地缓存，token -> UserDTO。
+ * 命中时请求不访问Redis；token的有效期刷新按间隔节流，并交给后台线程异步执行。
+ * 登出时删除本地条目，并通过Redis频道通知其他节点删除。
+ */
+@Slf4j
+@Component
+public class LoginUserCache implements MessageListener {
+
+    /**
+     * 本地缓存的有效期（毫秒），其他节点的登出通知丢失时，最多在这段时间内仍然有效
+     */
+    private static final long LOCAL_TTL_MILLIS = 60 * 1000L;
+    /**
+     * 无效token的缓存时间（毫秒），防止伪造的token反复打到Redis
+     */
+    private static final long NEGATIVE_TTL_MILLIS = 5 * 1000L;
+    /**
+     * Redis不可用时，已过期的本地条目延长的有效期（毫秒）
+     */
+    private static final long DEGRADED_TTL_MILLIS = 5 * 1000L;
+    /**
+     * 同一个token两次刷新有效期的最小间隔（毫秒）
+     */
+    private static final long REFRESH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(LOGIN_USER_REFRESH_INTERVAL);
+    /**
+     * 本地缓存的最大条目数
+     */
+    private static final int MAX_SIZE = 100000;
+    /**
+     * 缓存已满时放入新用户前最多检查的条目数
+     */
+    private static final int EVICT_SAMPLES = 8;
+    /**
+     * 后台清理过期条目的周期（毫秒）
+     */
+    private static final long PRUNE_PERIOD_MILLIS = 10 * 1000L;
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    /**
+     * 刷新有效期的后台线程，队列满时直接丢弃，下次访问会重新触发
+     */
+    private final ExecutorService refreshExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(10000), r -> {
+        Thread thread = new Thread(r, "login-token-refresh");
+        thread.setDaemon(true);
+        return thread;
+    }, new ThreadPoolExecutor.DiscardPolicy());
+
+    private final ScheduledExecutorService pruneExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "login-cache-prune");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(LOGIN_USER_INVALIDATE_CHANNEL));
+        pruneExecutor.scheduleWithFixedDelay(this::pruneQuietly,
+                PRUNE_PERIOD_MILLIS, PRUNE_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        refreshExecutor.shutdownNow();
+        pruneExecutor.shutdownNow();
+    }
+
+    /**
+     * 根据token获取登录用户
+     * @param token 登录凭证
+     * @return 登录用户，token无效时返回null
+     */
+    public UserDTO get(String token) {
+        long now = System.currentTimeMillis();
+        Entry entry = cache.get(token);
+        if (entry == null || entry.expireAt <= now) {
+            entry = load(token, entry, now);
+        }
+        if (entry.user != null) {
+            refreshIfNecessary(token, entry, now);
+        }
+        return entry.user;
+    }
+
+    /**
+     * 删除本地缓存，并通知其他节点
+     */
+    public void invalidate(String token) {
+        cache.remove(token);
+        stringRedisTemplate.convertAndSend(LOGIN_USER_INVALIDATE_CHANNEL, token);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        cache.remove(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    private Entry load(String token, Entry previous, long now) {
+        Map<Object, Object> userMap;
+        try {
+            userMap = stringRedisTemplate.opsForHash().entries(LOGIN_USER_KEY + token);
+        } catch (RuntimeException e) {
+            if (!RedisCircuitBreaker.isUnavailable(e)) {
+                throw e;
+            }
+            return degraded(token, previous, now);
+        }
+        UserDTO user = userMap.isEmpty() ? null : toUserDTO(userMap);
+        Entry entry = user == null
+                ? new Entry(null, now + NEGATIVE_TTL_MILLIS, 0)
+                // 刚刚读到数据，说明key还在，保留上次刷新有效期的时间
+                : new Entry(user, now + LOCAL_TTL_MILLIS, previous == null ? 0 : previous.lastRefresh.get());
+        if (previous == null && cache.size() >= MAX_SIZE) {
+            // 缓存已满时不缓存无效token；有效用户淘汰一个旧条目后放入，过期条目由后台线程清理
+            if (user == null) {
+                return entry;
+            }
+            evictOne(now);
+        }
+        cache.put(token, entry);
+        return entry;
+    }
+
+    /**
+     * Redis不可用时的降级：本地已有的用户继续有效一小段时间，恢复后重新确认；
+     * 无法确认的token按未登录处理，不写入负缓存，Redis恢复后立即生效
+     */
+    private Entry degraded(String token, Entry previous, long now) {
+        if (previous == null || previous.user == null) {
+            return new Entry(null, now, 0);
+        }
+        Entry entry = new Entry(previous.user, now + DEGRADED_TTL_MILLIS, previous.lastRefresh.get());
+        cache.put(token, entry);
+        return entry;
+    }
+
+    /**
+     * 手动映射，避免每个请求都通过反射填充bean；benchmarks模块会与BeanUtil.fillBeanWithMap对比
+     */
+    public static UserDTO toUserDTO(Map<Object, Object> userMap) {
+        UserDTO user = new UserDTO();
+        Object id = userMap.get("id");
+        if (id != null) {
+            user.setId(Long.valueOf(id.toString()));
+        }
+        user.setNickName(StrUtil.toStringOrNull(userMap.get("nickName")));
+        user.setIcon(StrUtil.toStringOrNull(userMap.get("icon")));
+        return user;
+    }
+
+    private void refreshIfNecessary(String token, Entry entry, long now) {
+        long last = entry.lastRefresh.get();
+        if (now - last < REFRESH_INTERVAL_MILLIS || !entry.lastRefresh.compareAndSet(last, now)) {
+            return;
+        }
+        refreshExecutor.execute(() -> {
+            try {
+                stringRedisTemplate.expire(LOGIN_USER_KEY + token, LOGIN_USER_TTL, TimeUnit.MINUTES);
+            } catch (Exception e) {
+                log.warn("刷新登录token有效期失败", e);
+            }
+        });
+    }
+
+    /**
+     * 只检查迭代器开头的几个条目，优先淘汰已过期的条目和无效token，否则淘汰第一个
+     */
+    private void evictOne(long now) {
+        Iterator<Map.Entry<String, Entry>> it = cache.entrySet().iterator();
+        Map.Entry<String, Entry> victim = null;
+        for (int i = 0; i < EVICT_SAMPLES && it.hasNext(); i++) {
+            Map.Entry<String, Entry> candidate = it.next();
+            if (victim == null) {
+                victim = candidate;
+            }
+            Entry value = candidate.getValue();
+            if (value.expireAt <= now || value.user == null) {
+                victim = candidate;
+                break;
+            }
+        }
+        if (victim != null) {
+            cache.remove(victim.getKey(), victim.getValue());
+        }
+    }
+
+    private void pruneQuietly() {
+        try {
+            long now = System.currentTimeMillis();
+            cache.values().removeIf(e -> e.expireAt <= now);
+        } catch (Exception e) {
+            log.warn("清理登录用户本地缓存失败", e);
+        }
+    }
+
+    private static final class Entry {
+        final UserDTO user;
+        final long expireAt;
+        final AtomicLong lastRefresh;
+
+        Entry(UserDTO user, long expireAt, long lastRefresh) {
+            this.user = user;
+            this.expireAt = expireAt;
+            this.lastRefresh = new AtomicLong(lastRefresh);
+        }
+    }
+}
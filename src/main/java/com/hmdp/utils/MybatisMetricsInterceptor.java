@@ -0,0 +1,73 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计每个Mapper方法的执行耗时，以MappedStatement的id（Mapper全类名.方法名）作为标签。
+ * 失败的语句单独打上outcome=error标签，避免异常快速返回拉低耗时。被追踪的请求同时记入耗时分解。
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class,
+                        CacheKey.class, BoundSql.class})
+})
+public class MybatisMetricsInterceptor implements Interceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * statementId:outcome -> 计时器
+     */
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public MybatisMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement statement = (MappedStatement) invocation.getArgs()[0];
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            return invocation.proceed();
+        } catch (Throwable e) {
+            outcome = "error";
+            throw e;
+        } finally {
+            long nanos = System.nanoTime() - start;
+            timer(statement, outcome).record(nanos, TimeUnit.NANOSECONDS);
+            RequestTrace trace = RequestTrace.current();
+            if (trace != null) {
+                trace.add(RequestTrace.Tier.DB, statement.getId(), start, nanos);
+            }
+        }
+    }
+
+    private Timer timer(MappedStatement statement, String outcome) {
+        return timers.computeIfAbsent(statement.getId() + ":" + outcome, k -> Timer.builder("mybatis.statements")
+                .description("Mapper方法执行耗时")
+                .tag("statement", statement.getId())
+                .tag("type", statement.getSqlCommandType().name())
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+}
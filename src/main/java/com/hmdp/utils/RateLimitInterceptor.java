@@ -0,0 +1,117 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import cn.hutool.json.JSONUtil;
+import com.hmdp.dto.Result;
+import com.hmdp.dto.UserDTO;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.http.MediaType;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 处理controller方法上的{@link RateLimited}和{@link Shed}注解，超限的请求直接返回429
+ */
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    private static final String SHED_LIMITER_ATTRIBUTE = RateLimitInterceptor.class.getName() + ".limiter";
+    private static final String SHED_START_ATTRIBUTE = RateLimitInterceptor.class.getName() + ".start";
+
+    private RateLimiter rateLimiter;
+
+    private ClientIpResolver clientIpResolver;
+
+    /**
+     * 名称 -> 自适应并发限制
+     */
+    private final Map<String, AdaptiveConcurrencyLimiter> shedLimiters = new ConcurrentHashMap<>();
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        Method method = ((HandlerMethod) handler).getMethod();
+        Set<RateLimited> limits = AnnotatedElementUtils.findMergedRepeatableAnnotations(method, RateLimited.class);
+        for (RateLimited limit : limits) {
+            String value = resolveKey(limit, request);
+            if (value == null) {
+                continue;
+            }
+            String key = limit.name() + ":" + limit.key().name().toLowerCase() + ":" + value;
+            if (!rateLimiter.tryAcquire(key, limit.max(), limit.window(), TimeUnit.SECONDS, limit.algorithm())) {
+                reject(response);
+                return false;
+            }
+        }
+        // 并发限制放在配额检查之后，被配额拒绝的请求不占用并发名额
+        Shed shed = AnnotatedElementUtils.findMergedAnnotation(method, Shed.class);
+        if (shed != null) {
+            AdaptiveConcurrencyLimiter limiter = shedLimiters.computeIfAbsent(shed.name(),
+                    name -> new AdaptiveConcurrencyLimiter(name, shed.initialLimit(), shed.minLimit(), shed.maxLimit()));
+            if (!limiter.tryAcquire()) {
+                reject(response);
+                return false;
+            }
+            request.setAttribute(SHED_LIMITER_ATTRIBUTE, limiter);
+            request.setAttribute(SHED_START_ATTRIBUTE, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) throws Exception {
+        Object limiter = request.getAttribute(SHED_LIMITER_ATTRIBUTE);
+        if (limiter == null) {
+            return;
+        }
+        long start = (Long) request.getAttribute(SHED_START_ATTRIBUTE);
+        ((AdaptiveConcurrencyLimiter) limiter).onComplete(System.nanoTime() - start,
+                ex != null || response.getStatus() >= 500);
+    }
+
+    /**
+     * 当前所有的自适应并发限制，用于监控
+     */
+    public Collection<AdaptiveConcurrencyLimiter> getShedLimiters() {
+        return shedLimiters.values();
+    }
+
+    private String resolveKey(RateLimited limit, HttpServletRequest request) {
+        switch (limit.key()) {
+            case PARAM:
+                String value = request.getParameter(limit.param());
+                return StrUtil.isBlank(value) ? null : value;
+            case USER:
+                UserDTO user = UserHolder.getUser();
+                return user != null ? user.getId().toString() : clientIpResolver.resolve(request);
+            case GLOBAL:
+                return "all";
+            case IP:
+            default:
+                return clientIpResolver.resolve(request);
+        }
+    }
+
+    static void reject(HttpServletResponse response) throws Exception {
+        response.setStatus(429);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write(JSONUtil.toJsonStr(Result.fail("请求过于频繁，请稍后再试")));
+    }
+
+    public RateLimitInterceptor(RateLimiter rateLimiter, ClientIpResolver clientIpResolver) {
+        this.rateLimiter = rateLimiter;
+        this.clientIpResolver = clientIpResolver;
+    }
+}
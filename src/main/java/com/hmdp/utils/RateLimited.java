@@ -0,0 +1,85 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.*;
+
+/**
+ * 接口限流，标注在controller方法上，由{@link RateLimitInterceptor}处理。
+ * 同一个方法可以标注多次，按不同维度分别限流，任意一个超限即拒绝。
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Repeatable(RateLimited.List.class)
+@Documented
+public @interface RateLimited {
+
+    /**
+     * 限流规则的名称，作为Redis key的一部分
+     */
+    String name();
+
+    /**
+     * 限流维度
+     */
+    KeyType key() default KeyType.IP;
+
+    /**
+     * key为PARAM时，取值的请求参数名
+     */
+    String param() default "";
+
+    /**
+     * 时间窗口内允许的最大请求数
+     */
+    int max();
+
+    /**
+     * 时间窗口（秒），令牌桶算法下为补满整个桶所需的时间
+     */
+    long window();
+
+    /**
+     * 限流算法
+     */
+    Algorithm algorithm() default Algorithm.SLIDING_WINDOW;
+
+    enum KeyType {
+        /**
+         * 按客户端ip
+         */
+        IP,
+        /**
+         * 按请求参数，如手机号
+         */
+        PARAM,
+        /**
+         * 按登录用户，未登录时按ip
+         */
+        USER,
+        /**
+         * 整个接口共用一个配额
+         */
+        GLOBAL
+    }
+
+    enum Algorithm {
+        /**
+         * Redis滑动窗口，计数精确，每个请求占用一个zset成员，适合验证码等小配额
+         */
+        SLIDING_WINDOW,
+        /**
+         * Redis令牌桶，集群共享配额，每个key只占用一个数字，适合大配额
+         */
+        TOKEN_BUCKET,
+        /**
+         * 进程内令牌桶，不访问Redis，配额按节点计算
+         */
+        LOCAL_TOKEN_BUCKET
+    }
+
+    @Target(ElementType.METHOD)
+    @Retention(RetentionPolicy.RUNTIME)
+    @Documented
+    @interface List {
+        RateLimited[] value();
+    }
+}
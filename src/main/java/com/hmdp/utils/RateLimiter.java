@@ -0,0 +1,313 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.RandomUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.RATE_LIMIT_KEY;
+
+/**
+ * 基于Redis滑动窗口的限流器，集群内共享计数。
+ * 每个节点在本地记录本节点被Redis放行的请求时间，和Redis使用同一个时间戳、同样的滑动窗口：
+ * 本地窗口内的放行数只是全局计数的下界，本地已经超限的请求一定会被Redis拒绝，可以直接拒绝而不访问Redis；
+ * 被拒绝的请求不计数，封禁只持续到窗口内最早的一条记录移出窗口为止。
+ */
+@Slf4j
+@Component
+public class RateLimiter {
+
+    private static final DefaultRedisScript<Long> SLIDING_WINDOW_SCRIPT;
+    private static final DefaultRedisScript<Long> TOKEN_BUCKET_SCRIPT;
+
+    static {
+        SLIDING_WINDOW_SCRIPT = new DefaultRedisScript<>();
+        SLIDING_WINDOW_SCRIPT.setLocation(new ClassPathResource("sliding_window.lua"));
+        SLIDING_WINDOW_SCRIPT.setResultType(Long.class);
+        TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>();
+        TOKEN_BUCKET_SCRIPT.setLocation(new ClassPathResource("token_bucket.lua"));
+        TOKEN_BUCKET_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 本地表的最大条目数。本地窗口和封禁表只是Redis之前的预过滤，满了之后新key不再进入本地表、直接访问Redis；
+     * 令牌桶表满了之后淘汰一个旧桶再放入新key
+     */
+    private static final int MAX_LOCAL_ENTRIES = 100000;
+
+    /**
+     * 令牌桶表满时最多检查的条目数，优先淘汰其中已补满的桶
+     */
+    private static final int EVICT_SAMPLES = 8;
+
+    /**
+     * 后台清理空闲条目的周期（毫秒）
+     */
+    private static final long SWEEP_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * 限流key -> 本节点窗口内放行的请求时间
+     */
+    private final Map<String, LocalWindow> localWindows = new ConcurrentHashMap<>();
+
+    /**
+     * 限流key -> 本地封禁截止时间（毫秒）
+     */
+    private final Map<String, Long> blocked = new ConcurrentHashMap<>();
+
+    /**
+     * 限流key -> 进程内令牌桶
+     */
+    private final Map<String, LocalTokenBucket> localBuckets = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService sweepExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rate-limiter-sweep");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        sweepExecutor.scheduleWithFixedDelay(this::sweepQuietly,
+                SWEEP_PERIOD_MILLIS, SWEEP_PERIOD_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        sweepExecutor.shutdownNow();
+    }
+
+    /**
+     * 按指定算法获取一次请求许可
+     */
+    public boolean tryAcquire(String key, int max, long window, TimeUnit unit, RateLimited.Algorithm algorithm) {
+        switch (algorithm) {
+            case LOCAL_TOKEN_BUCKET:
+                return tryAcquireLocal(key, max, window, unit);
+            case TOKEN_BUCKET:
+                return tryAcquireTokenBucket(key, max, window, unit);
+            case SLIDING_WINDOW:
+            default:
+                return tryAcquire(key, max, window, unit);
+        }
+    }
+
+    /**
+     * 进程内令牌桶，不访问Redis
+     */
+    public boolean tryAcquireLocal(String key, int max, long window, TimeUnit unit) {
+        LocalTokenBucket bucket = localBuckets.get(key);
+        if (bucket == null) {
+            if (localBuckets.size() >= MAX_LOCAL_ENTRIES) {
+                evictOneBucket();
+            }
+            bucket = localBuckets.computeIfAbsent(key, k -> new LocalTokenBucket(max, unit.toNanos(window)));
+        }
+        return bucket.tryAcquire();
+    }
+
+    /**
+     * 只检查迭代器开头的几个桶，优先淘汰已补满的桶，都在使用中时淘汰第一个，
+     * 被淘汰的key下次请求时拿到一个满桶
+     */
+    private void evictOneBucket() {
+        Iterator<Map.Entry<String, LocalTokenBucket>> it = localBuckets.entrySet().iterator();
+        Map.Entry<String, LocalTokenBucket> victim = null;
+        for (int i = 0; i < EVICT_SAMPLES && it.hasNext(); i++) {
+            Map.Entry<String, LocalTokenBucket> entry = it.next();
+            if (victim == null) {
+                victim = entry;
+            }
+            if (entry.getValue().isIdle()) {
+                victim = entry;
+                break;
+            }
+        }
+        if (victim != null) {
+            localBuckets.remove(victim.getKey(), victim.getValue());
+        }
+    }
+
+    /**
+     * Redis令牌桶，集群内共享配额
+     */
+    public boolean tryAcquireTokenBucket(String key, int max, long window, TimeUnit unit) {
+        long now = System.currentTimeMillis();
+        Long blockedUntil = blocked.get(key);
+        if (blockedUntil != null && blockedUntil > now) {
+            return false;
+        }
+        double intervalMillis = (double) unit.toMillis(window) / max;
+        Long result;
+        try {
+            result = stringRedisTemplate.execute(TOKEN_BUCKET_SCRIPT,
+                    Collections.singletonList(RATE_LIMIT_KEY + key),
+                    String.valueOf(now), String.valueOf(intervalMillis), String.valueOf(unit.toMillis(window)));
+        } catch (Exception e) {
+            log.warn("限流脚本执行失败，key：{}", key, e);
+            return true;
+        }
+        if (result == null || result == 0L) {
+            // 桶已空，至少要等一个令牌的间隔才可能有新令牌
+            block(key, now + Math.max(1L, (long) intervalMillis));
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 尝试获取一次请求许可，使用Redis滑动窗口
+     * @param key 限流key，如 code:phone:13800000000
+     * @param max 窗口内允许的最大请求数
+     * @param window 窗口大小
+     * @param unit 窗口大小的单位
+     * @return true：允许 false：超限
+     */
+    public boolean tryAcquire(String key, int max, long window, TimeUnit unit) {
+        long now = System.currentTimeMillis();
+        long windowMillis = unit.toMillis(window);
+
+        Long blockedUntil = blocked.get(key);
+        if (blockedUntil != null) {
+            if (blockedUntil > now) {
+                return false;
+            }
+            blocked.remove(key, blockedUntil);
+        }
+        LocalWindow local = localWindow(key, max, windowMillis);
+        if (local != null) {
+            long wait = local.waitMillis(now);
+            if (wait > 0) {
+                block(key, now + wait);
+                return false;
+            }
+        }
+
+        Long result;
+        try {
+            result = stringRedisTemplate.execute(SLIDING_WINDOW_SCRIPT,
+                    Collections.singletonList(RATE_LIMIT_KEY + key),
+                    String.valueOf(now), String.valueOf(windowMillis), String.valueOf(max),
+                    now + "-" + RandomUtil.randomString(8));
+        } catch (Exception e) {
+            // Redis不可用时退化为只使用本地计数
+            log.warn("限流脚本执行失败，key：{}", key, e);
+            if (local != null) {
+                local.admit(now);
+            }
+            return true;
+        }
+        if (result == null) {
+            block(key, now + Math.min(windowMillis, TimeUnit.SECONDS.toMillis(5)));
+            return false;
+        }
+        if (result > 0L) {
+            // 被Redis拒绝的key在本地封禁到窗口内最早的记录过期，期间的请求不再访问Redis
+            block(key, now + result);
+            return false;
+        }
+        if (local != null) {
+            local.admit(now);
+        }
+        return true;
+    }
+
+    /**
+     * @return 本地窗口，本地表已满时返回null，这个key跳过本地预过滤
+     */
+    private LocalWindow localWindow(String key, int max, long windowMillis) {
+        LocalWindow local = localWindows.get(key);
+        if (local == null) {
+            if (localWindows.size() >= MAX_LOCAL_ENTRIES) {
+                return null;
+            }
+            local = localWindows.computeIfAbsent(key, k -> new LocalWindow(max, windowMillis));
+        }
+        return local;
+    }
+
+    private void block(String key, long until) {
+        // 封禁表已满时不记录新key，它的请求照常访问Redis，由Redis拒绝
+        if (blocked.size() >= MAX_LOCAL_ENTRIES && !blocked.containsKey(key)) {
+            return;
+        }
+        blocked.put(key, until);
+    }
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            log.warn("清理限流本地表失败", e);
+        }
+    }
+
+    /**
+     * 清理已补满的令牌桶、窗口内没有记录的本地窗口和已过期的封禁
+     */
+    private void sweep() {
+        long now = System.currentTimeMillis();
+        localBuckets.values().removeIf(LocalTokenBucket::isIdle);
+        localWindows.values().removeIf(w -> w.isIdle(now));
+        blocked.values().removeIf(t -> t <= now);
+    }
+
+    /**
+     * 本节点放行的请求时间，最多保留max条
+     */
+    private static final class LocalWindow {
+        private final int max;
+        private final long windowMillis;
+        private final Deque<Long> admitted = new ArrayDeque<>();
+
+        LocalWindow(int max, long windowMillis) {
+            this.max = max;
+            this.windowMillis = windowMillis;
+        }
+
+        /**
+         * @return 0：本地未超限；否则为窗口内最早的一条记录移出窗口还需要的毫秒数
+         */
+        synchronized long waitMillis(long now) {
+            expire(now);
+            return admitted.size() < max ? 0L : Math.max(1L, admitted.peekFirst() + windowMillis - now);
+        }
+
+        synchronized void admit(long now) {
+            admitted.addLast(now);
+            if (admitted.size() > max) {
+                admitted.pollFirst();
+            }
+        }
+
+        synchronized boolean isIdle(long now) {
+            expire(now);
+            return admitted.isEmpty();
+        }
+
+        private void expire(long now) {
+            // 和sliding_window.lua一致：时间戳不晚于now - window的记录已经移出窗口
+            while (!admitted.isEmpty() && admitted.peekFirst() <= now - windowMillis) {
+                admitted.pollFirst();
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.ReadWriteSplitProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 读写分离的数据源。本身是LazyConnectionDataSourceProxy，事务开始时不取连接，
+ * 执行第一条语句时只读标记已经设置好，才能决定路由到哪个库。
+ * <ul>
+ *     <li>只读事务（{@link ReplicaRead}或{@code @Transactional(readOnly = true)}）轮询可用的从库，其余都走主库</li>
+ *     <li>后台线程定期查询每个从库的复制延迟，查询失败、复制中断或延迟超过maxLagSeconds的从库不参与路由，
+ *     没有可用从库时只读事务回到主库</li>
+ *     <li>当前线程maxLagSeconds内写过数据库时，只读事务也走主库，保证同一个请求能读到自己刚写入的数据</li>
+ * </ul>
+ */
+@Slf4j
+public class ReadWriteRoutingDataSource extends LazyConnectionDataSourceProxy implements DisposableBean {
+
+    public static final String PRIMARY = "primary";
+
+    /**
+     * 当前线程最近一次写数据库的时间
+     */
+    private static final ThreadLocal<Long> LAST_WRITE = new ThreadLocal<>();
+
+    private final ReadWriteSplitProperties properties;
+
+    private final DataSource primary;
+
+    /**
+     * 从库名称 -> 数据源
+     */
+    private final Map<String, DataSource> replicas;
+
+    /**
+     * 从库名称 -> 最近一次检查到的延迟（秒），-1表示不可用
+     */
+    private final Map<String, AtomicLong> lags = new LinkedHashMap<>();
+
+    /**
+     * 可以路由的从库，由检查线程整体替换
+     */
+    private volatile List<String> available = Collections.emptyList();
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final Counter primaryRoutes;
+    private final Counter replicaRoutes;
+    private final Counter stickyRoutes;
+    private final Counter fallbackRoutes;
+
+    private final ScheduledExecutorService lagCheckExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "replica-lag-check");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReadWriteRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                      ReadWriteSplitProperties properties, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.properties = properties;
+        AbstractRoutingDataSource router = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return route();
+            }
+        };
+        Map<Object, Object> targets = new HashMap<>(replicas);
+        targets.put(PRIMARY, primary);
+        router.setTargetDataSources(targets);
+        router.setDefaultTargetDataSource(primary);
+        router.afterPropertiesSet();
+        setTargetDataSource(router);
+        for (String name : replicas.keySet()) {
+            AtomicLong lag = new AtomicLong(-1);
+            lags.put(name, lag);
+            Gauge.builder("datasource.replica.lag", lag, AtomicLong::get)
+                    .description("从库的复制延迟（秒），-1表示不可用")
+                    .tag("replica", name)
+                    .register(meterRegistry);
+        }
+        this.primaryRoutes = routeCounter(meterRegistry, "primary");
+        this.replicaRoutes = routeCounter(meterRegistry, "replica");
+        this.stickyRoutes = routeCounter(meterRegistry, "sticky");
+        this.fallbackRoutes = routeCounter(meterRegistry, "fallback");
+    }
+
+    private static Counter routeCounter(MeterRegistry meterRegistry, String target) {
+        return Counter.builder("datasource.route")
+                .description("获取连接时的路由结果，sticky：写入后读主库，fallback：没有可用从库")
+                .tag("target", target)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        // 第一次检查之前没有可用的从库，只读事务先走主库，从库连不上也不影响启动
+        lagCheckExecutor.scheduleWithFixedDelay(this::checkLags, 0,
+                properties.getLagCheckIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        lagCheckExecutor.shutdownNow();
+        for (DataSource dataSource : replicas.values()) {
+            close(dataSource);
+        }
+        close(primary);
+    }
+
+    /**
+     * 记录当前线程写过数据库，由{@link ReadWriteRoutingInterceptor}在执行写语句时调用
+     */
+    public static void markWrite() {
+        LAST_WRITE.set(System.currentTimeMillis());
+    }
+
+    private Object route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryRoutes.increment();
+            return PRIMARY;
+        }
+        Long lastWrite = LAST_WRITE.get();
+        if (lastWrite != null) {
+            if (System.currentTimeMillis() - lastWrite < TimeUnit.SECONDS.toMillis(properties.getMaxLagSeconds())) {
+                stickyRoutes.increment();
+                return PRIMARY;
+            }
+            LAST_WRITE.remove();
+        }
+        List<String> candidates = available;
+        if (candidates.isEmpty()) {
+            fallbackRoutes.increment();
+            return PRIMARY;
+        }
+        replicaRoutes.increment();
+        return candidates.get((next.getAndIncrement() & Integer.MAX_VALUE) % candidates.size());
+    }
+
+    private void checkLags() {
+        List<String> healthy = new ArrayList<>(replicas.size());
+        for (Map.Entry<String, DataSource> entry : replicas.entrySet()) {
+            String name = entry.getKey();
+            long lag = queryLag(name, entry.getValue());
+            lags.get(name).set(lag);
+            if (lag >= 0 && lag <= properties.getMaxLagSeconds()) {
+                healthy.add(name);
+            }
+        }
+        if (!healthy.equals(available)) {
+            log.info("可用从库变更：{} -> {}", available, healthy);
+        }
+        available = Collections.unmodifiableList(healthy);
+    }
+
+    /**
+     * @return 复制延迟（秒），-1：连接失败、不是从库或复制已中断
+     */
+    private long queryLag(String name, DataSource dataSource) {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(properties.getLagQuery())) {
+            if (!resultSet.next()) {
+                return -1;
+            }
+            long lag = resultSet.getLong(properties.getLagColumn());
+            return resultSet.wasNull() ? -1 : lag;
+        } catch (Exception e) {
+            log.debug("检查从库{}的复制延迟失败", name, e);
+            return -1;
+        }
+    }
+
+    private static void close(DataSource dataSource) {
+        if (dataSource instanceof HikariDataSource) {
+            ((HikariDataSource) dataSource).close();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.hmdp.utils;
+
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+/**
+ * 执行insert/update/delete时记录当前线程写过数据库，之后一段时间内的只读事务也读主库
+ */
+@Intercepts(@Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}))
+public class ReadWriteRoutingInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        ReadWriteRoutingDataSource.markWrite();
+        return invocation.proceed();
+    }
+}
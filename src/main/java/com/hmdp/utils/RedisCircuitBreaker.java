@@ -0,0 +1,222 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.RedisCircuitBreakerProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Redis熔断器，由{@link TracedStringRedisTemplate}在每次调用前后使用。
+ * <ul>
+ *     <li>关闭：按秒分桶统计最近一个窗口内的调用，连接失败、超时和慢调用的比例超过阈值时打开</li>
+ *     <li>打开：所有调用立即失败，不再等待Lettuce超时，调用方走本地降级逻辑</li>
+ *     <li>半开：打开一段时间后放行少量探测调用，全部成功则关闭，任何一次失败重新打开</li>
+ * </ul>
+ * pipeline、SCAN等批量调用的耗时与命令个数成正比，在{@link #batch}中执行，只统计失败，不按慢调用统计。
+ * 状态通过 redis.circuit.state 指标查看：0关闭，1打开，2半开。
+ */
+@Slf4j
+@Component
+public class RedisCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final RedisCircuitBreakerProperties properties;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private volatile long openedAt;
+
+    /**
+     * 半开状态剩余的探测次数和已成功的探测次数
+     */
+    private final AtomicInteger probesRemaining = new AtomicInteger();
+    private final AtomicInteger probeSuccesses = new AtomicInteger();
+
+    /**
+     * 按秒分桶的环形窗口
+     */
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    /**
+     * 当前线程上嵌套的批量调用层数
+     */
+    private static final ThreadLocal<int[]> BATCH_DEPTH = ThreadLocal.withInitial(() -> new int[1]);
+
+    private final Counter rejected;
+    private final MeterRegistry meterRegistry;
+
+    public RedisCircuitBreaker(RedisCircuitBreakerProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.buckets = new AtomicReferenceArray<>(properties.getWindowSeconds());
+        this.rejected = Counter.builder("redis.circuit.rejected")
+                .description("熔断期间被直接拒绝的Redis调用次数")
+                .register(meterRegistry);
+        Gauge.builder("redis.circuit.state", this, breaker -> breaker.state.get().ordinal())
+                .description("Redis熔断器状态，0：关闭 1：打开 2：半开")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Redis不可用导致的异常：连接失败、命令超时，以及熔断器拒绝
+     */
+    public static boolean isUnavailable(Throwable e) {
+        return e instanceof DataAccessResourceFailureException || e instanceof QueryTimeoutException;
+    }
+
+    /**
+     * 以批量调用执行，其中的Redis调用超过slow-call-millis不视为失败
+     */
+    public static <T> T batch(Supplier<T> action) {
+        int[] depth = BATCH_DEPTH.get();
+        depth[0]++;
+        try {
+            return action.get();
+        } finally {
+            depth[0]--;
+        }
+    }
+
+    public boolean isClosed() {
+        return state.get() == State.CLOSED;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * @return true：允许调用 false：熔断中，调用方应立即失败
+     */
+    public boolean tryAcquire() {
+        if (!properties.isEnabled()) {
+            return true;
+        }
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return true;
+        }
+        if (current == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < properties.getOpenMillis()
+                    || !state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                return reject();
+            }
+            probesRemaining.set(properties.getHalfOpenProbes());
+            probeSuccesses.set(0);
+            transitioned(State.HALF_OPEN);
+        }
+        return probesRemaining.getAndDecrement() > 0 || reject();
+    }
+
+    /**
+     * 记录一次调用的结果
+     * @param durationNanos 调用耗时
+     * @param error 调用抛出的异常，成功时为null
+     */
+    public void onResult(long durationNanos, Throwable error) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        boolean failed = (error != null && isUnavailable(error))
+                || (durationNanos > TimeUnit.MILLISECONDS.toNanos(properties.getSlowCallMillis())
+                && BATCH_DEPTH.get()[0] == 0);
+        State current = state.get();
+        if (current == State.HALF_OPEN) {
+            if (failed) {
+                open(State.HALF_OPEN);
+            } else if (probeSuccesses.incrementAndGet() >= properties.getHalfOpenProbes()
+                    && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                resetWindow();
+                transitioned(State.CLOSED);
+            }
+            return;
+        }
+        if (current != State.CLOSED) {
+            return;
+        }
+        long second = System.currentTimeMillis() / 1000;
+        Bucket bucket = bucket(second);
+        bucket.calls.increment();
+        if (!failed) {
+            return;
+        }
+        bucket.failures.increment();
+        // 只在失败时计算失败率，成功的调用不会触发熔断
+        long calls = 0;
+        long failures = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            Bucket b = buckets.get(i);
+            if (b != null && second - b.second < buckets.length()) {
+                calls += b.calls.sum();
+                failures += b.failures.sum();
+            }
+        }
+        if (calls >= properties.getMinimumCalls() && failures >= calls * properties.getFailureRateThreshold()) {
+            log.warn("Redis调用失败率过高，熔断{}毫秒，最近{}秒调用{}次，失败或超时{}次",
+                    properties.getOpenMillis(), properties.getWindowSeconds(), calls, failures);
+            open(State.CLOSED);
+        }
+    }
+
+    private void open(State from) {
+        if (state.compareAndSet(from, State.OPEN)) {
+            openedAt = System.currentTimeMillis();
+            transitioned(State.OPEN);
+        }
+    }
+
+    private boolean reject() {
+        rejected.increment();
+        return false;
+    }
+
+    private void transitioned(State to) {
+        if (to != State.OPEN) {
+            log.info("Redis熔断器状态：{}", to);
+        }
+        meterRegistry.counter("redis.circuit.transitions", "to", to.name().toLowerCase()).increment();
+    }
+
+    private Bucket bucket(long second) {
+        int index = (int) (second % buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(index);
+            if (bucket != null && bucket.second == second) {
+                return bucket;
+            }
+            Bucket created = new Bucket(second);
+            if (buckets.compareAndSet(index, bucket, created)) {
+                return created;
+            }
+        }
+    }
+
+    private void resetWindow() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, null);
+        }
+    }
+
+    private static class Bucket {
+        final long second;
+        final LongAdder calls = new LongAdder();
+        final LongAdder failures = new LongAdder();
+
+        Bucket(long second) {
+            this.second = second;
+        }
+    }
+}
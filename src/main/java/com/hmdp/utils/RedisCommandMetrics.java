@@ -0,0 +1,63 @@
+package com.hmdp.utils;
+
+import io.lettuce.core.metrics.CommandLatencyCollector;
+import io.lettuce.core.metrics.CommandLatencyId;
+import io.lettuce.core.metrics.CommandMetrics;
+import io.lettuce.core.protocol.ProtocolKeyword;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.SocketAddress;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 把Lettuce记录的每条Redis命令的耗时写入Micrometer。
+ * StringRedisTemplate的所有操作最终都经过Lettuce，在这里统计可以覆盖pipeline和Lua脚本，按命令类型区分。
+ */
+public class RedisCommandMetrics implements CommandLatencyCollector {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 命令类型 -> 计时器，避免每条命令都重新查找
+     */
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public RedisCommandMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param firstResponseLatency 发出命令到收到第一个响应的时间（纳秒）
+     * @param completionLatency 发出命令到命令完成的时间（纳秒）
+     */
+    @Override
+    public void recordCommandLatency(SocketAddress local, SocketAddress remote, ProtocolKeyword commandType,
+                                     long firstResponseLatency, long completionLatency) {
+        timers.computeIfAbsent(commandType.name(), command -> Timer.builder("redis.commands")
+                .description("Redis命令耗时")
+                .tag("command", command)
+                .register(meterRegistry))
+                .record(completionLatency, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    /**
+     * 数据已经写入Micrometer，不再通过Lettuce的事件总线发布
+     */
+    @Override
+    public Map<CommandLatencyId, CommandMetrics> retrieveMetrics() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
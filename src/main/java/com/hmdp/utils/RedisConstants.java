@@ -5,6 +5,13 @@ public class RedisConstants {
     public static final Long LOGIN_CODE_TTL = 2L;
     public static final String LOGIN_USER_KEY = "login:token:";
     public static final Long LOGIN_USER_TTL = 36000L;
+    public static final String LOGIN_ATTEMPT_LIMIT = "login:attempt";
+    public static final Integer LOGIN_ATTEMPT_MAX = 5;
+    public static final Long LOGIN_ATTEMPT_WINDOW = 10L;
+    public static final Long LOGIN_USER_REFRESH_INTERVAL = 10L;
+    public static final String LOGIN_USER_INVALIDATE_CHANNEL = "login:token:invalidate";
+    public static final String LOGIN_REVOKED_KEY = "login:revoked";
+    public static final String LOGIN_REVOKED_CHANNEL = "login:revoked";
 
     public static final Long CACHE_NULL_TTL = 2L;
 
@@ -13,12 +20,43 @@ public class RedisConstants {
 
     public static final String LOCK_SHOP_KEY = "lock:shop:";
     public static final Long LOCK_SHOP_TTL = 10L;
+    public static final String LOCK_CACHE_KEY = "lock:";
+    public static final Long LOCK_CACHE_WAIT_MILLIS = 2000L;
+    public static final String LOCK_ORDER_KEY = "lock:order:";
+    public static final String LOCK_RELEASED_CHANNEL = "lock:released";
+    public static final String LOCK_EVENT_DISPATCH_KEY = "lock:event:dispatch";
+
+    public static final String ID_COUNTER_KEY = "icr:";
+    public static final Long ID_COUNTER_TTL = 2L;
 
     public static final String SECKILL_STOCK_KEY = "seckill:stock:";
     public static final String BLOG_LIKED_KEY = "blog:liked:";
+    public static final String BLOG_COMMENT_LIKED_KEY = "blog:comment:liked:";
     public static final String FEED_KEY = "feed:";
+    public static final String FOLLOW_CHANGED_CHANNEL = "follow:changed";
     public static final String SHOP_GEO_KEY = "shop:geo:";
     public static final String USER_SIGN_KEY = "sign:";
+    public static final String LOCK_SIGN_ARCHIVE_KEY = "lock:sign:archive:";
 
     public static final String CACHE_SHOP_TYPE = "cache:type:";
+    public static final Long CACHE_SHOP_TYPE_TTL = 30L;
+    public static final String CACHE_SHOP_VOUCHER_KEY = "cache:voucher:shop:";
+    public static final Long CACHE_SHOP_VOUCHER_TTL = 1L;
+
+    public static final String CACHE_BLOG_KEY = "cache:blog:";
+    public static final Long CACHE_BLOG_TTL = 10L;
+    public static final String CACHE_USER_KEY = "cache:user:";
+    public static final Long CACHE_USER_TTL = 30L;
+    public static final String CACHE_USER_PHONE_KEY = "cache:user:phone:";
+    public static final Long CACHE_USER_PHONE_TTL = 30L;
+
+    public static final String UV_KEY = "uv:";
+    public static final Long UV_TTL = 40L;
+    public static final String UV_MERGED_KEY = "uv:merged:";
+    public static final Long UV_MERGED_TTL = 10L;
+
+    public static final String RATE_LIMIT_KEY = "limit:";
+
+    public static final String CACHE_BLOG_COMMENTS_KEY = "cache:blog:comments:";
+    public static final Long CACHE_BLOG_COMMENTS_TTL = 30L;
 }
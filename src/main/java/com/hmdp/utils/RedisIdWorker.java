@@ -0,0 +1,68 @@
+package com.hmdp.utils;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 全局唯一id生成器：高32位是相对起始时间的秒数，低32位是Redis中按天自增的序号。
+ */
+@Component
+public class RedisIdWorker {
+
+    /**
+     * 起始时间 2022-01-01 00:00:00 UTC（秒）
+     */
+    private static final long BEGIN_TIMESTAMP = 1640995200L;
+    /**
+     * 序号的位数
+     */
+    private static final int COUNT_BITS = 32;
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy:MM:dd");
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    /**
+     * @param keyPrefix 业务前缀，如order
+     */
+    public long nextId(String keyPrefix) {
+        return nextId(keyPrefix, 0, 0);
+    }
+
+    /**
+     * 生成带基因的id：序号左移geneBits位，低geneBits位放入gene，只根据id就能还原出gene（如所在的分表）。
+     * 每天可用的序号减少为2^(32-geneBits)-1个，用完后抛出异常，不会溢出到基因中改变路由或生成重复的id
+     * @param geneBits 基因的位数，0 ~ 31
+     * @param gene 基因，非负数，只取低geneBits位
+     */
+    public long nextId(String keyPrefix, int geneBits, long gene) {
+        if (geneBits < 0 || geneBits >= COUNT_BITS) {
+            throw new IllegalArgumentException("基因位数必须在0~" + (COUNT_BITS - 1) + "之间：" + geneBits);
+        }
+        if (gene < 0) {
+            throw new IllegalArgumentException("基因不能为负数：" + gene);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long timestamp = now.toEpochSecond(ZoneOffset.UTC) - BEGIN_TIMESTAMP;
+        // 每天一个key，序号从1重新开始，也方便按天统计
+        String key = RedisConstants.ID_COUNTER_KEY + keyPrefix + ":" + now.format(DATE_FORMATTER);
+        Long count = stringRedisTemplate.opsForValue().increment(key);
+        if (count != null && count == 1) {
+            stringRedisTemplate.expire(key, RedisConstants.ID_COUNTER_TTL, TimeUnit.DAYS);
+        }
+        if (count == null) {
+            throw new IllegalStateException("生成id失败：" + key);
+        }
+        if (count >= 1L << (COUNT_BITS - geneBits)) {
+            throw new IllegalStateException("当天的id序号已用完：" + key);
+        }
+        return timestamp << COUNT_BITS | count << geneBits | (gene & ((1L << geneBits) - 1));
+    }
+}
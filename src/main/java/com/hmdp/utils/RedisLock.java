@@ -0,0 +1,135 @@
+package com.hmdp.utils;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 可重入的分布式锁，由{@link RedisLockFactory#getLock(String)}创建。
+ * 持有者是线程，加锁和解锁必须在同一个线程中进行。
+ */
+public class RedisLock {
+
+    private final String name;
+    private final RedisLockFactory factory;
+
+    RedisLock(String name, RedisLockFactory factory) {
+        this.name = name;
+        this.factory = factory;
+    }
+
+    /**
+     * 尝试加锁一次，不等待，持有期间由看门狗续期
+     * @return true：成功获得锁 false：锁被其他线程持有
+     */
+    public boolean tryLock() {
+        return tryAcquire(RedisLockFactory.WATCHDOG_LEASE_MILLIS, true) == null;
+    }
+
+    /**
+     * 尝试加锁，锁被占用时等待释放通知，持有期间由看门狗续期
+     * @param waitTime 最长等待时间
+     * @return true：成功获得锁 false：等待超时
+     */
+    public boolean tryLock(long waitTime, TimeUnit unit) throws InterruptedException {
+        return tryLock(waitTime, -1, unit);
+    }
+
+    /**
+     * 尝试加锁，锁被占用时等待释放通知
+     * @param waitTime 最长等待时间
+     * @param leaseTime 租期，到期后锁自动释放；-1表示由看门狗续期，直到解锁或节点宕机
+     * @return true：成功获得锁 false：等待超时
+     */
+    public boolean tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        boolean watchdog = leaseTime < 0;
+        long leaseMillis = watchdog ? RedisLockFactory.WATCHDOG_LEASE_MILLIS : unit.toMillis(leaseTime);
+        Long ttl = tryAcquire(leaseMillis, watchdog);
+        if (ttl == null) {
+            return true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        if (waitTime <= 0) {
+            return false;
+        }
+        RedisLockFactory.Waiters waiters = factory.subscribe(name);
+        try {
+            while (true) {
+                // 注册等待之后再试一次，避免错过注册之前发出的释放通知
+                ttl = tryAcquire(leaseMillis, watchdog);
+                if (ttl == null) {
+                    return true;
+                }
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                // 持有者宕机时不会有释放通知，最多等到锁过期
+                long wait = ttl > 0 ? Math.min(ttl, remaining) : remaining;
+                waiters.semaphore.tryAcquire(wait, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            factory.unsubscribe(name);
+        }
+    }
+
+    /**
+     * 等待锁被释放，不加锁；本节点所有等待同一把锁的线程在同一次释放通知时一起返回，不需要依次获得锁
+     * @param waitTime 最长等待时间
+     * @return true：锁已释放 false：等待超时
+     */
+    public boolean awaitRelease(long waitTime, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        RedisLockFactory.Waiters waiters = factory.subscribe(name);
+        try {
+            while (true) {
+                // 注册等待之后再检查锁是否存在，避免错过注册之前发出的释放通知
+                long seen = waiters.releases();
+                Long ttl = factory.redis().getExpire(name, TimeUnit.MILLISECONDS);
+                if (ttl == null || ttl == -2) {
+                    return true;
+                }
+                long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remaining <= 0) {
+                    return false;
+                }
+                // 持有者宕机时不会有释放通知，最多等到锁过期
+                if (waiters.awaitRelease(seen, ttl > 0 ? Math.min(ttl, remaining) : remaining)) {
+                    return true;
+                }
+            }
+        } finally {
+            factory.unsubscribe(name);
+        }
+    }
+
+    /**
+     * 解锁一次，重入次数减为0时释放锁并唤醒等待者
+     * @throws IllegalMonitorStateException 当前线程不持有锁，或锁已过期被其他线程获得
+     */
+    public void unlock() {
+        String owner = factory.currentOwner();
+        Long result = factory.redis().execute(RedisLockFactory.UNLOCK_SCRIPT, Collections.singletonList(name),
+                owner, String.valueOf(RedisLockFactory.WATCHDOG_LEASE_MILLIS), RedisConstants.LOCK_RELEASED_CHANNEL);
+        factory.stopRenewal(name, owner);
+        if (result != null && result < 0) {
+            throw new IllegalMonitorStateException("当前线程不持有分布式锁：" + name);
+        }
+    }
+
+    /**
+     * @return null：加锁成功 其他：锁剩余的有效期（毫秒）
+     */
+    private Long tryAcquire(long leaseMillis, boolean watchdog) {
+        String owner = factory.currentOwner();
+        Long ttl = factory.redis().execute(RedisLockFactory.LOCK_SCRIPT, Collections.singletonList(name),
+                String.valueOf(leaseMillis), owner);
+        if (ttl == null && watchdog) {
+            factory.startRenewal(name, owner);
+        }
+        return ttl;
+    }
+
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,222 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.lang.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hmdp.utils.RedisConstants.LOCK_RELEASED_CHANNEL;
+
+/**
+ * 可重入分布式锁的工厂，同时负责本节点所有锁的看门狗续期和等待者唤醒。
+ * <ul>
+ *     <li>锁是一个hash：持有者（节点id:线程id） -> 重入次数，加锁、解锁都通过Lua脚本原子执行，只有持有者能解锁</li>
+ *     <li>未指定租期时，持有期间由看门狗每隔租期的1/3续期一次，节点宕机后锁在一个租期内自动释放</li>
+ *     <li>最后一次解锁时在频道上发布锁名，等待同一把锁的线程被唤醒后立即重试，不需要轮询</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class RedisLockFactory implements MessageListener {
+
+    static final DefaultRedisScript<Long> LOCK_SCRIPT;
+    static final DefaultRedisScript<Long> UNLOCK_SCRIPT;
+    private static final DefaultRedisScript<Long> RENEW_SCRIPT;
+
+    static {
+        LOCK_SCRIPT = new DefaultRedisScript<>();
+        LOCK_SCRIPT.setLocation(new ClassPathResource("redis_lock.lua"));
+        LOCK_SCRIPT.setResultType(Long.class);
+        UNLOCK_SCRIPT = new DefaultRedisScript<>();
+        UNLOCK_SCRIPT.setLocation(new ClassPathResource("redis_unlock.lua"));
+        UNLOCK_SCRIPT.setResultType(Long.class);
+        RENEW_SCRIPT = new DefaultRedisScript<>();
+        RENEW_SCRIPT.setLocation(new ClassPathResource("redis_lock_renew.lua"));
+        RENEW_SCRIPT.setResultType(Long.class);
+    }
+
+    /**
+     * 看门狗模式下的租期（毫秒）
+     */
+    static final long WATCHDOG_LEASE_MILLIS = 30 * 1000L;
+
+    /**
+     * 本节点的标识，与线程id组成锁的持有者
+     */
+    private final String nodeId = UUID.randomUUID().toString(true);
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * 锁的key+持有者 -> 续期任务，只在本线程第一次加锁时创建，最后一次解锁时取消
+     */
+    private final Map<String, Renewal> renewals = new ConcurrentHashMap<>();
+
+    /**
+     * 锁的key -> 本节点正在等待这把锁的线程
+     */
+    private final Map<String, Waiters> waiters = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "redis-lock-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(LOCK_RELEASED_CHANNEL));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * @param name 锁的key，如lock:shop:1
+     */
+    public RedisLock getLock(String name) {
+        return new RedisLock(name, this);
+    }
+
+    StringRedisTemplate redis() {
+        return stringRedisTemplate;
+    }
+
+    String currentOwner() {
+        return nodeId + ":" + Thread.currentThread().getId();
+    }
+
+    /**
+     * 本线程第一次持有锁时开始续期，重入时只增加计数
+     */
+    void startRenewal(String name, String owner) {
+        renewals.compute(name + "|" + owner, (key, renewal) -> {
+            if (renewal != null) {
+                renewal.holds++;
+                return renewal;
+            }
+            long period = WATCHDOG_LEASE_MILLIS / 3;
+            Renewal created = new Renewal();
+            created.future = watchdog.scheduleAtFixedRate(() -> renew(name, owner, key),
+                    period, period, TimeUnit.MILLISECONDS);
+            return created;
+        });
+    }
+
+    /**
+     * 本线程最后一次解锁时停止续期
+     */
+    void stopRenewal(String name, String owner) {
+        renewals.computeIfPresent(name + "|" + owner, (key, renewal) -> {
+            if (--renewal.holds > 0) {
+                return renewal;
+            }
+            renewal.future.cancel(false);
+            return null;
+        });
+    }
+
+    private void renew(String name, String owner, String renewalKey) {
+        try {
+            Long renewed = stringRedisTemplate.execute(RENEW_SCRIPT, Collections.singletonList(name),
+                    String.valueOf(WATCHDOG_LEASE_MILLIS), owner);
+            if (renewed != null && renewed == 0) {
+                log.warn("分布式锁已不属于当前持有者，停止续期：{}", name);
+                Renewal renewal = renewals.remove(renewalKey);
+                if (renewal != null) {
+                    renewal.future.cancel(false);
+                }
+            }
+        } catch (Exception e) {
+            // Redis暂时不可用时保留任务，下个周期再试，只要在租期内恢复锁就不会丢失
+            log.warn("分布式锁续期失败：{}", name, e);
+        }
+    }
+
+    Waiters subscribe(String name) {
+        Waiters entry = waiters.compute(name, (key, existing) -> {
+            Waiters w = existing == null ? new Waiters() : existing;
+            w.count.incrementAndGet();
+            return w;
+        });
+        return entry;
+    }
+
+    void unsubscribe(String name) {
+        waiters.computeIfPresent(name, (key, existing) -> existing.count.decrementAndGet() == 0 ? null : existing);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Waiters entry = waiters.get(new String(message.getBody(), StandardCharsets.UTF_8));
+        if (entry != null) {
+            // 只唤醒一个等待者去竞争，其余的等下一次释放，避免惊群；只等待释放、不加锁的线程全部唤醒
+            entry.semaphore.release();
+            entry.released();
+        }
+    }
+
+    /**
+     * 本节点在同一把锁上的等待者
+     */
+    static class Waiters {
+        final Semaphore semaphore = new Semaphore(0);
+        final AtomicInteger count = new AtomicInteger();
+        /**
+         * 收到的释放通知次数
+         */
+        private long releases;
+
+        synchronized long releases() {
+            return releases;
+        }
+
+        synchronized void released() {
+            releases++;
+            notifyAll();
+        }
+
+        /**
+         * 等待下一次释放通知
+         * @param seen 开始等待前的通知次数
+         * @return true：收到了新的通知 false：超时
+         */
+        synchronized boolean awaitRelease(long seen, long millis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + millis;
+            while (releases == seen) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                wait(remaining);
+            }
+            return true;
+        }
+    }
+
+    private static class Renewal {
+        ScheduledFuture<?> future;
+        int holds = 1;
+    }
+}
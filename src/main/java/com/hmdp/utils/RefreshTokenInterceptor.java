@@ -1,19 +1,19 @@
 package com.hmdp.utils;
 
-import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.util.StrUtil;
 import com.hmdp.dto.UserDTO;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.web.servlet.HandlerInterceptor;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 public class RefreshTokenInterceptor implements HandlerInterceptor {
 
-    private StringRedisTemplate stringRedisTemplate;
+    private LoginUserCache loginUserCache;
+
+    private SignedTokenCodec signedTokenCodec;
+
+    private TokenRevocationList tokenRevocationList;
 
     @Override
     public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
@@ -21,14 +21,19 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
         if (StrUtil.isBlank(token)){
             return true;
         }
-        String key = RedisConstants.LOGIN_USER_KEY + token;
-        Map<Object, Object> userMap = stringRedisTemplate.opsForHash().entries(key);
-        if (userMap.isEmpty()){
+        UserDTO userDTO;
+        if (SignedTokenCodec.isSignedToken(token)) {
+            // 签名凭证只需本地验签和查吊销列表，不是signed模式时一律无效
+            SignedTokenCodec.TokenClaims claims = signedTokenCodec.decode(token);
+            userDTO = claims == null || tokenRevocationList.isRevoked(claims.getTokenId()) ? null : claims.getUser();
+        } else {
+            // 优先读本地缓存，有效期的刷新由缓存按间隔异步完成
+            userDTO = loginUserCache.get(token);
+        }
+        if (userDTO == null){
             return true;
         }
-        UserDTO userDTO = BeanUtil.fillBeanWithMap(userMap, new UserDTO(), false);
         UserHolder.saveUser(userDTO);
-        stringRedisTemplate.expire(key, RedisConstants.LOGIN_USER_TTL, TimeUnit.MINUTES);
         return true;
     }
 
@@ -39,7 +44,10 @@ public class RefreshTokenInterceptor implements HandlerInterceptor {
         UserHolder.removeUser();
     }
 
-    public RefreshTokenInterceptor(StringRedisTemplate stringRedisTemplate) {
-        this.stringRedisTemplate = stringRedisTemplate;
+    public RefreshTokenInterceptor(LoginUserCache loginUserCache, SignedTokenCodec signedTokenCodec,
+                                   TokenRevocationList tokenRevocationList) {
+        this.loginUserCache = loginUserCache;
+        this.signedTokenCodec = signedTokenCodec;
+        this.tokenRevocationList = tokenRevocationList;
     }
 }
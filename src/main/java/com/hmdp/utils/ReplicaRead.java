@@ -0,0 +1,17 @@
+package com.hmdp.utils;
+
+import org.springframework.transaction.annotation.Transactional;
+
+import java.lang.annotation.*;
+
+/**
+ * 标注在service的查询方法上，在只读事务中执行，启用读写分离时由{@link ReadWriteRoutingDataSource}路由到从库。
+ * 等价于{@code @Transactional(readOnly = true)}；在写事务中调用时加入外层事务，仍然读主库。
+ * 从库有复制延迟，读到的数据会用于写入或写入缓存的查询不要标注。
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Transactional(readOnly = true)
+public @interface ReplicaRead {
+}
@@ -0,0 +1,220 @@
+package com.hmdp.utils;
+
+import java.util.Arrays;
+
+/**
+ * 单个请求的耗时分解。
+ * 只有被采样的请求才会创建，通过ThreadLocal绑定到请求线程；未采样时{@link #start()}只做一次ThreadLocal读取并返回0，
+ * {@link #end(Tier, String, long)}看到0直接返回，埋点的开销可以忽略。
+ * 一个请求只在自己的线程内写入，结束后交给{@link TraceRecorder}，之后不再修改。
+ */
+public final class RequestTrace {
+
+    /**
+     * 耗时所属的层，各层的时间可能互相包含，例如cache包含redis和json
+     */
+    public enum Tier {
+        INTERCEPTOR("interceptor"),
+        APP("app"),
+        CACHE("cache"),
+        JSON("json"),
+        REDIS("redis"),
+        DB("db");
+
+        private final String metricName;
+
+        Tier(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    /**
+     * 单个请求最多保留的明细数，超出后只累计各层总耗时
+     */
+    private static final int MAX_SPANS = 64;
+
+    private static final ThreadLocal<RequestTrace> CURRENT = new ThreadLocal<>();
+
+    private final String method;
+    private final String uri;
+    private final long startMillis;
+    private final long startNanos;
+
+    private final long[] tierNanos = new long[Tier.values().length];
+    private final int[] tierCounts = new int[Tier.values().length];
+
+    private Tier[] spanTiers = new Tier[8];
+    private String[] spanNames = new String[8];
+    private long[] spanOffsets = new long[8];
+    private long[] spanDurations = new long[8];
+    private int spanCount;
+    private int droppedSpans;
+
+    private long durationNanos;
+    private int status;
+
+    private RequestTrace(String method, String uri) {
+        this.method = method;
+        this.uri = uri;
+        this.startMillis = System.currentTimeMillis();
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * 为当前线程开始一次追踪
+     */
+    public static RequestTrace begin(String method, String uri) {
+        RequestTrace trace = new RequestTrace(method, uri);
+        CURRENT.set(trace);
+        return trace;
+    }
+
+    /**
+     * 结束当前线程的追踪
+     * @param status 响应状态码
+     */
+    public static void finish(RequestTrace trace, int status) {
+        CURRENT.remove();
+        trace.durationNanos = System.nanoTime() - trace.startNanos;
+        trace.status = status;
+    }
+
+    /**
+     * @return 当前线程的追踪，未采样时为null
+     */
+    public static RequestTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 开始一段计时
+     * @return 开始时间，当前请求未被采样时返回0
+     */
+    public static long start() {
+        return CURRENT.get() == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * 结束一段计时
+     * @param start {@link #start()}的返回值
+     */
+    public static void end(Tier tier, String name, long start) {
+        if (start == 0) {
+            return;
+        }
+        RequestTrace trace = CURRENT.get();
+        if (trace != null) {
+            trace.add(tier, name, start, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 记录一段已知起止时间的耗时
+     */
+    public void add(Tier tier, String name, long startNanos, long nanos) {
+        tierNanos[tier.ordinal()] += nanos;
+        tierCounts[tier.ordinal()]++;
+        if (spanCount == MAX_SPANS) {
+            droppedSpans++;
+            return;
+        }
+        if (spanCount == spanTiers.length) {
+            int capacity = spanCount << 1;
+            spanTiers = Arrays.copyOf(spanTiers, capacity);
+            spanNames = Arrays.copyOf(spanNames, capacity);
+            spanOffsets = Arrays.copyOf(spanOffsets, capacity);
+            spanDurations = Arrays.copyOf(spanDurations, capacity);
+        }
+        spanTiers[spanCount] = tier;
+        spanNames[spanCount] = name;
+        spanOffsets[spanCount] = startNanos - this.startNanos;
+        spanDurations[spanCount] = nanos;
+        spanCount++;
+    }
+
+    /**
+     * 从请求开始到现在的耗时（纳秒）
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * 某一层到目前为止的累计耗时（纳秒）
+     */
+    public long tierNanos(Tier tier) {
+        return tierNanos[tier.ordinal()];
+    }
+
+    /**
+     * 生成Server-Timing响应头，如 interceptor;dur=0.21, redis;dur=1.35;desc="3"
+     */
+    public String serverTiming() {
+        StringBuilder sb = new StringBuilder(128);
+        for (Tier tier : Tier.values()) {
+            int count = tierCounts[tier.ordinal()];
+            if (count == 0) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(tier.getMetricName()).append(";dur=").append(toMillis(tierNanos[tier.ordinal()]))
+                    .append(";desc=\"").append(count).append('"');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 生成慢请求日志的内容：各层汇总和按开始时间排列的明细
+     */
+    public String describe() {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(method).append(' ').append(uri).append(" status=").append(status)
+                .append(" total=").append(toMillis(durationNanos)).append("ms");
+        for (Tier tier : Tier.values()) {
+            int count = tierCounts[tier.ordinal()];
+            if (count > 0) {
+                sb.append(' ').append(tier.getMetricName()).append('=').append(toMillis(tierNanos[tier.ordinal()]))
+                        .append("ms/").append(count);
+            }
+        }
+        for (int i = 0; i < spanCount; i++) {
+            sb.append("\n  +").append(toMillis(spanOffsets[i])).append("ms ")
+                    .append(spanTiers[i].getMetricName()).append(' ').append(spanNames[i])
+                    .append(' ').append(toMillis(spanDurations[i])).append("ms");
+        }
+        if (droppedSpans > 0) {
+            sb.append("\n  ...省略").append(droppedSpans).append("条");
+        }
+        return sb.toString();
+    }
+
+    private static String toMillis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getUri() {
+        return uri;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,33 @@
+package com.hmdp.utils;
+
+import java.lang.annotation.*;
+
+/**
+ * 自适应并发限制，标注在controller方法上，由{@link RateLimitInterceptor}处理。
+ * 并发上限根据观测到的响应时间自动调整，超过上限的请求直接返回429，不在Tomcat线程中排队。
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface Shed {
+
+    /**
+     * 名称，同名的方法共享一个并发上限
+     */
+    String name();
+
+    /**
+     * 初始并发上限
+     */
+    int initialLimit() default 20;
+
+    /**
+     * 最小并发上限
+     */
+    int minLimit() default 4;
+
+    /**
+     * 最大并发上限
+     */
+    int maxLimit() default 200;
+}
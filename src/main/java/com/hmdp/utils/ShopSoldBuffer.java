@@ -0,0 +1,60 @@
+package com.hmdp.utils;
+
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.hmdp.utils.RedisConstants.CACHE_SHOP_KEY;
+
+/**
+ * 店铺销量的合并缓冲。
+ * 一批下单事件的销量增量先在内存中按店铺累加，由{@link EventBus}在标记这批事件已处理的事务中写回，
+ * 每个店铺只有一条UPDATE和一条缓存失效记录；节点在提交前宕机时事件重新投递，增量不会丢失。
+ * 秒杀期间热门店铺每批事件最多失效一次缓存，不会每个订单都让店铺详情缓存未命中。
+ */
+@Component
+public class ShopSoldBuffer implements EventBatchListener {
+
+    @Resource
+    private BulkWriter bulkWriter;
+
+    @Resource
+    private CacheOutboxRelay cacheOutboxRelay;
+
+    /**
+     * shopId -> 销量增量，多个事件工作线程同时累加
+     */
+    private final Map<Long, Long> sold = new ConcurrentHashMap<>();
+
+    public void incrementSold(Long shopId) {
+        sold.merge(shopId, 1L, Long::sum);
+    }
+
+    /**
+     * 将累加的增量写回数据库并失效对应店铺的缓存
+     */
+    @Override
+    public void flush() {
+        // 按id排序，BulkWriter按这个顺序更新
+        Map<Long, Long> deltas = new TreeMap<>();
+        for (Long id : sold.keySet()) {
+            Long delta = sold.remove(id);
+            if (delta != null && delta != 0) {
+                deltas.put(id, delta);
+            }
+        }
+        if (deltas.isEmpty()) {
+            return;
+        }
+        bulkWriter.incrementShopSold(deltas);
+        cacheOutboxRelay.record(deltas.keySet().stream().map(id -> CACHE_SHOP_KEY + id).toArray(String[]::new));
+    }
+
+    @Override
+    public void discard() {
+        sold.clear();
+    }
+}
@@ -0,0 +1,72 @@
+package com.hmdp.utils;
+
+import com.hmdp.service.ISignService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.time.YearMonth;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOCK_SIGN_ARCHIVE_KEY;
+
+/**
+ * 签到数据归档任务。
+ * Redis中只保留本月和上月的签到bitmap（上月用于跨月计算连续签到），更早的月份定期归档到tb_sign。
+ */
+@Slf4j
+@Component
+public class SignArchiver {
+
+    /**
+     * 从两个月前开始，向前检查的月份数，防止停机错过归档
+     */
+    private static final int LOOKBACK_MONTHS = 3;
+
+    @Resource
+    private ISignService signService;
+
+    @Resource
+    private RedisLockFactory lockFactory;
+
+    private final ScheduledExecutorService archiveExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "sign-archiver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        archiveExecutor.scheduleWithFixedDelay(this::archiveQuietly, 10, 24 * 60, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        archiveExecutor.shutdownNow();
+    }
+
+    private void archiveQuietly() {
+        YearMonth current = YearMonth.now();
+        for (int i = 2; i < 2 + LOOKBACK_MONTHS; i++) {
+            YearMonth month = current.minusMonths(i);
+            // 多个节点同时运行时，同一个月份只由一个节点归档
+            String lockKey = LOCK_SIGN_ARCHIVE_KEY + month;
+            RedisLock lock = lockFactory.getLock(lockKey);
+            // 归档耗时不确定，由看门狗续期，不会在归档中途过期
+            if (!lock.tryLock()) {
+                continue;
+            }
+            try {
+                signService.archive(month);
+            } catch (Exception e) {
+                log.error("签到数据归档失败，月份：{}", month, e);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.StrUtil;
+import com.hmdp.config.LoginProperties;
+import com.hmdp.dto.UserDTO;
+import lombok.Data;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 无状态登录凭证的编解码。
+ * 格式：keyId.claims.signature，claims为二进制编码的用户信息和有效期，signature为HMAC-SHA256签名，均为Base64Url编码。
+ * 校验只需本地计算签名，不访问Redis。
+ * 只在signed模式下加载密钥、签发和校验，其他模式下签名凭证一律无效；密钥不提交到仓库，由环境变量或密钥配置提供。
+ */
+@Component
+public class SignedTokenCodec {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    /**
+     * 密钥的最小长度（字节），与HMAC-SHA256的输出长度相同
+     */
+    private static final int MIN_KEY_BYTES = 32;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Resource
+    private LoginProperties loginProperties;
+
+    /**
+     * keyId -> 签名器原型，使用时clone，避免多线程共享同一个Mac
+     */
+    private final Map<String, Mac> macs = new HashMap<>();
+
+    @PostConstruct
+    public void init() throws Exception {
+        if (!loginProperties.isSignedMode()) {
+            // 不加载密钥，任何签名凭证都无法通过校验
+            return;
+        }
+        for (Map.Entry<String, String> entry : loginProperties.getSigningKeys().entrySet()) {
+            if (StrUtil.isBlank(entry.getValue())) {
+                continue;
+            }
+            if (loginProperties.getRetiredKeyIds().contains(entry.getKey())) {
+                throw new IllegalStateException("登录凭证签名密钥" + entry.getKey() + "已作废，请使用新的密钥id");
+            }
+            byte[] key = Base64.getDecoder().decode(entry.getValue());
+            if (key.length < MIN_KEY_BYTES) {
+                throw new IllegalStateException("登录凭证签名密钥" + entry.getKey() + "长度不足" + MIN_KEY_BYTES + "字节");
+            }
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(key, ALGORITHM));
+            macs.put(entry.getKey(), mac);
+        }
+        if (!macs.containsKey(loginProperties.getActiveKeyId())) {
+            throw new IllegalStateException("signed模式下未配置登录凭证签名密钥：" + loginProperties.getActiveKeyId());
+        }
+    }
+
+    /**
+     * 判断是否为签名凭证，随机token不包含'.'
+     */
+    public static boolean isSignedToken(String token) {
+        return token.indexOf('.') > 0;
+    }
+
+    /**
+     * 签发凭证
+     * @param user 登录用户
+     * @param ttlSeconds 有效期（秒）
+     */
+    public String encode(UserDTO user, long ttlSeconds) {
+        long now = System.currentTimeMillis() / 1000;
+        TokenClaims claims = new TokenClaims();
+        claims.setUser(user);
+        claims.setExpireAt(now + ttlSeconds);
+        claims.setTokenId(random.nextLong());
+        String keyId = loginProperties.getActiveKeyId();
+        String body = keyId + "." + ENCODER.encodeToString(writeClaims(claims));
+        return body + "." + ENCODER.encodeToString(sign(keyId, body));
+    }
+
+    /**
+     * 校验并解析凭证
+     * @return 凭证中的信息，不是signed模式、签名错误、密钥未知或已过期时返回null
+     */
+    public TokenClaims decode(String token) {
+        if (!loginProperties.isSignedMode()) {
+            return null;
+        }
+        int first = token.indexOf('.');
+        int last = token.lastIndexOf('.');
+        if (first <= 0 || last == first) {
+            return null;
+        }
+        String keyId = token.substring(0, first);
+        if (!macs.containsKey(keyId)) {
+            return null;
+        }
+        String body = token.substring(0, last);
+        try {
+            byte[] signature = DECODER.decode(token.substring(last + 1));
+            if (!MessageDigest.isEqual(signature, sign(keyId, body))) {
+                return null;
+            }
+            TokenClaims claims = readClaims(DECODER.decode(token.substring(first + 1, last)));
+            if (claims == null || claims.getExpireAt() <= System.currentTimeMillis() / 1000) {
+                return null;
+            }
+            return claims;
+        } catch (IllegalArgumentException | IOException e) {
+            return null;
+        }
+    }
+
+    private byte[] sign(String keyId, String body) {
+        try {
+            Mac mac = (Mac) macs.get(keyId).clone();
+            return mac.doFinal(body.getBytes(StandardCharsets.UTF_8));
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] writeClaims(TokenClaims claims) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            UserDTO user = claims.getUser();
+            out.writeByte(VERSION);
+            out.writeLong(user.getId());
+            out.writeUTF(StrUtil.nullToEmpty(user.getNickName()));
+            out.writeUTF(StrUtil.nullToEmpty(user.getIcon()));
+            out.writeLong(claims.getExpireAt());
+            out.writeLong(claims.getTokenId());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static TokenClaims readClaims(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            if (in.readByte() != VERSION) {
+                return null;
+            }
+            UserDTO user = new UserDTO();
+            user.setId(in.readLong());
+            user.setNickName(in.readUTF());
+            user.setIcon(in.readUTF());
+            TokenClaims claims = new TokenClaims();
+            claims.setUser(user);
+            claims.setExpireAt(in.readLong());
+            claims.setTokenId(in.readLong());
+            return claims;
+        }
+    }
+
+    @Data
+    public static class TokenClaims {
+        private UserDTO user;
+        /**
+         * 过期时间，epoch秒
+         */
+        private long expireAt;
+        /**
+         * 凭证的唯一id，用于吊销
+         */
+        private long tokenId;
+    }
+}
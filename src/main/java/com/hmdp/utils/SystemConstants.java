@@ -5,6 +5,7 @@ public class SystemConstants {
     public static final String USER_NICK_NAME_PREFIX = "user_";
     public static final int DEFAULT_PAGE_SIZE = 5;
     public static final int MAX_PAGE_SIZE = 10;
+    public static final int MAX_UV_DAYS = 31;
     public static final String SESSION_KEY_CACHE_CODE = "code";
     public static final String SESSION_KEY_USER = "user";
 }
@@ -0,0 +1,75 @@
+package com.hmdp.utils;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 统计拦截器自身的开销：包装一个拦截器，分别记录preHandle和afterCompletion的耗时，被追踪的请求同时记入耗时分解。
+ */
+public class TimedInterceptor implements HandlerInterceptor {
+
+    private final HandlerInterceptor delegate;
+    private final String name;
+    private final Timer preHandleTimer;
+    private final Timer afterCompletionTimer;
+
+    public TimedInterceptor(HandlerInterceptor delegate, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.name = delegate.getClass().getSimpleName();
+        this.preHandleTimer = timer(meterRegistry, name, "preHandle");
+        this.afterCompletionTimer = timer(meterRegistry, name, "afterCompletion");
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, String interceptor, String phase) {
+        return Timer.builder("http.interceptor")
+                .description("拦截器执行耗时")
+                .tag("interceptor", interceptor)
+                .tag("phase", phase)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws Exception {
+        long start = System.nanoTime();
+        try {
+            return delegate.preHandle(request, response, handler);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            preHandleTimer.record(nanos, TimeUnit.NANOSECONDS);
+            trace(start, nanos);
+        }
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+                           ModelAndView modelAndView) throws Exception {
+        delegate.postHandle(request, response, handler, modelAndView);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) throws Exception {
+        long start = System.nanoTime();
+        try {
+            delegate.afterCompletion(request, response, handler, ex);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            afterCompletionTimer.record(nanos, TimeUnit.NANOSECONDS);
+            trace(start, nanos);
+        }
+    }
+
+    private void trace(long start, long nanos) {
+        RequestTrace trace = RequestTrace.current();
+        if (trace != null) {
+            trace.add(RequestTrace.Tier.INTERCEPTOR, name, start, nanos);
+        }
+    }
+}
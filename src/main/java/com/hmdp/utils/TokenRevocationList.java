@@ -0,0 +1,119 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.collection.CollUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.hmdp.utils.RedisConstants.LOGIN_REVOKED_CHANNEL;
+import static com.hmdp.utils.RedisConstants.LOGIN_REVOKED_KEY;
+
+/**
+ * 已吊销的签名凭证。
+ * Redis中用zset保存 tokenId -> 过期时间，每个节点在本地保留一份副本，通过频道同步新增的吊销记录，
+ * 校验凭证时只查本地副本。过期的记录会被定期清理，集合大小只和有效期内登出的凭证数有关。
+ */
+@Slf4j
+@Component
+public class TokenRevocationList implements MessageListener {
+
+    /**
+     * 与Redis全量同步的间隔（分钟），用于补偿丢失的频道消息
+     */
+    private static final long SYNC_INTERVAL_MINUTES = 5L;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    /**
+     * tokenId -> 过期时间（epoch秒）
+     */
+    private final Map<Long, Long> revoked = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "token-revocation-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(LOGIN_REVOKED_CHANNEL));
+        syncExecutor.scheduleWithFixedDelay(this::syncQuietly, 0, SYNC_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        syncExecutor.shutdownNow();
+    }
+
+    public boolean isRevoked(long tokenId) {
+        return !revoked.isEmpty() && revoked.containsKey(tokenId);
+    }
+
+    /**
+     * 吊销凭证
+     * @param tokenId 凭证id
+     * @param expireAt 凭证的过期时间，过期后吊销记录即可删除
+     */
+    public void revoke(long tokenId, long expireAt) {
+        revoked.put(tokenId, expireAt);
+        stringRedisTemplate.opsForZSet().add(LOGIN_REVOKED_KEY, Long.toString(tokenId), expireAt);
+        stringRedisTemplate.convertAndSend(LOGIN_REVOKED_CHANNEL, tokenId + ":" + expireAt);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int idx = body.indexOf(':');
+        if (idx > 0) {
+            revoked.put(Long.valueOf(body.substring(0, idx)), Long.valueOf(body.substring(idx + 1)));
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (Exception e) {
+            log.warn("同步凭证吊销列表失败", e);
+        }
+    }
+
+    /**
+     * 清理过期记录，并从Redis加载全量的吊销列表
+     */
+    private void sync() {
+        long now = System.currentTimeMillis() / 1000;
+        stringRedisTemplate.opsForZSet().removeRangeByScore(LOGIN_REVOKED_KEY, 0, now);
+        revoked.values().removeIf(expireAt -> expireAt <= now);
+        Set<ZSetOperations.TypedTuple<String>> tuples = stringRedisTemplate.opsForZSet()
+                .rangeByScoreWithScores(LOGIN_REVOKED_KEY, now, Double.MAX_VALUE);
+        if (CollUtil.isEmpty(tuples)) {
+            return;
+        }
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            if (tuple.getValue() != null && tuple.getScore() != null) {
+                revoked.put(Long.valueOf(tuple.getValue()), tuple.getScore().longValue());
+            }
+        }
+    }
+}
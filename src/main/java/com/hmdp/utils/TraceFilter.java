@@ -0,0 +1,61 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.TraceProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.annotation.Resource;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按采样比例为请求开启追踪，放在所有过滤器之前，覆盖拦截器、控制器和响应写出的全部耗时。
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TraceFilter extends OncePerRequestFilter {
+
+    public static final String FORCE_TRACE_HEADER = "X-Trace";
+
+    @Resource
+    private TraceProperties traceProperties;
+
+    @Resource
+    private TraceRecorder traceRecorder;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!shouldTrace(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        RequestTrace trace = RequestTrace.begin(request.getMethod(), request.getRequestURI());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            RequestTrace.finish(trace, response.getStatus());
+            traceRecorder.record(trace);
+            if (trace.getDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(traceProperties.getSlowThresholdMillis())) {
+                log.warn("慢请求：{}", trace.describe());
+            }
+        }
+    }
+
+    private boolean shouldTrace(HttpServletRequest request) {
+        double sampleRate = traceProperties.getSampleRate();
+        if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            return true;
+        }
+        return traceProperties.isServerTiming() && request.getHeader(FORCE_TRACE_HEADER) != null;
+    }
+}
@@ -0,0 +1,59 @@
+package com.hmdp.utils;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 最近完成的请求追踪，保存在固定大小的环形缓冲区中。
+ * 写入只有一次getAndIncrement和一次数组写，不加锁，新记录覆盖最旧的记录。
+ * 通过 /actuator/traces 查看。
+ */
+@Component
+@Endpoint(id = "traces")
+public class TraceRecorder {
+
+    /**
+     * 缓冲区大小，必须是2的幂
+     */
+    private static final int CAPACITY = 1024;
+
+    private final AtomicReferenceArray<RequestTrace> ring = new AtomicReferenceArray<>(CAPACITY);
+    private final AtomicLong sequence = new AtomicLong();
+
+    public void record(RequestTrace trace) {
+        ring.set((int) (sequence.getAndIncrement() & (CAPACITY - 1)), trace);
+    }
+
+    /**
+     * 最近的追踪，按耗时从高到低排列
+     */
+    @ReadOperation
+    public List<Map<String, Object>> traces() {
+        List<RequestTrace> traces = new ArrayList<>(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++) {
+            RequestTrace trace = ring.get(i);
+            if (trace != null) {
+                traces.add(trace);
+            }
+        }
+        traces.sort(Comparator.comparingLong(RequestTrace::getDurationNanos).reversed());
+        List<Map<String, Object>> result = new ArrayList<>(traces.size());
+        for (RequestTrace trace : traces) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("method", trace.getMethod());
+            item.put("uri", trace.getUri());
+            item.put("status", trace.getStatus());
+            item.put("startTime", trace.getStartMillis());
+            item.put("durationMillis", trace.getDurationNanos() / 1e6);
+            item.put("serverTiming", trace.serverTiming());
+            item.put("detail", trace.describe());
+            result.add(item);
+        }
+        return result;
+    }
+}
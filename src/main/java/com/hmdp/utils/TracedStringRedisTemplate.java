@@ -0,0 +1,71 @@
+package com.hmdp.utils;
+
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.List;
+
+/**
+ * 记录请求线程上每次Redis调用耗时的StringRedisTemplate，并经过{@link RedisCircuitBreaker}。
+ * opsForXxx、pipeline和Lua脚本最终都经过execute(RedisCallback, boolean, boolean)，在这里埋点即可全部覆盖。
+ * 与{@link RedisCommandMetrics}不同，这里统计的是请求线程实际等待的时间，包含序列化和连接获取。
+ * pipeline作为{@link RedisCircuitBreaker#batch 批量调用}执行，不会因为命令多、耗时长被熔断器计为慢调用。
+ */
+public class TracedStringRedisTemplate extends StringRedisTemplate {
+
+    private final RedisCircuitBreaker circuitBreaker;
+
+    public TracedStringRedisTemplate(RedisConnectionFactory connectionFactory, RedisCircuitBreaker circuitBreaker) {
+        super(connectionFactory);
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    @Override
+    public <T> T execute(RedisCallback<T> action, boolean exposeConnection, boolean pipeline) {
+        if (!circuitBreaker.tryAcquire()) {
+            throw new RedisConnectionFailureException("Redis熔断中，调用被拒绝");
+        }
+        long begin = System.nanoTime();
+        RuntimeException error = null;
+        long start = RequestTrace.start();
+        try {
+            return pipeline
+                    ? RedisCircuitBreaker.batch(() -> super.execute(action, exposeConnection, true))
+                    : super.execute(action, exposeConnection, false);
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            circuitBreaker.onResult(System.nanoTime() - begin, error);
+            if (start != 0) {
+                RequestTrace.end(RequestTrace.Tier.REDIS, callerName(action, pipeline), start);
+            }
+        }
+    }
+
+    @Override
+    public List<Object> executePipelined(RedisCallback<?> action, RedisSerializer<?> resultSerializer) {
+        return RedisCircuitBreaker.batch(() -> super.executePipelined(action, resultSerializer));
+    }
+
+    @Override
+    public List<Object> executePipelined(SessionCallback<?> session, RedisSerializer<?> resultSerializer) {
+        return RedisCircuitBreaker.batch(() -> super.executePipelined(session, resultSerializer));
+    }
+
+    /**
+     * 回调多为opsForXxx中的lambda，类名的前半段就是发起调用的操作类，如DefaultValueOperations
+     */
+    private static String callerName(RedisCallback<?> action, boolean pipeline) {
+        String name = action.getClass().getSimpleName();
+        int lambda = name.indexOf("$$");
+        if (lambda > 0) {
+            name = name.substring(0, lambda);
+        }
+        return pipeline ? name + "(pipeline)" : name;
+    }
+}
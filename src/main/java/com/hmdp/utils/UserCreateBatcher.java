@@ -0,0 +1,144 @@
+package com.hmdp.utils;
+
+import cn.hutool.core.util.RandomUtil;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.hmdp.entity.User;
+import com.hmdp.mapper.UserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 新用户的批量创建。
+ * 首次登录的请求把手机号放入队列，由后台线程每次取出一组，用一条INSERT IGNORE写入tb_user，
+ * 依靠手机号的唯一索引保证并发的首次登录只会创建一个用户。
+ * 全部插入成功时自增id由驱动直接回填，只有组内有手机号已存在时才补查一次id。
+ */
+@Slf4j
+@Component
+public class UserCreateBatcher {
+
+    /**
+     * 每组最多插入的用户数
+     */
+    private static final int BATCH_SIZE = 64;
+    /**
+     * 调用方等待创建结果的最长时间（毫秒）
+     */
+    private static final long CREATE_TIMEOUT_MILLIS = 3000L;
+
+    @Resource
+    private UserMapper userMapper;
+
+    private final BlockingQueue<PendingUser> queue = new LinkedBlockingQueue<>();
+
+    private final ExecutorService createExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "user-create");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void start() {
+        createExecutor.execute(this::runLoop);
+    }
+
+    @PreDestroy
+    public void stop() {
+        createExecutor.shutdownNow();
+    }
+
+    /**
+     * 按手机号创建用户，手机号已存在时返回已有的用户
+     * @param phone 手机号
+     * @return 用户，至少包含id、手机号、昵称、头像；超时或写库失败时返回null
+     */
+    public User create(String phone) {
+        PendingUser pending = new PendingUser(phone);
+        queue.offer(pending);
+        try {
+            return pending.future.get(CREATE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("创建用户失败，phone：{}", phone, e);
+            return null;
+        }
+    }
+
+    private void runLoop() {
+        List<PendingUser> batch = new ArrayList<>(BATCH_SIZE);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // 队列为空时阻塞；执行上一组期间积压的请求会在下一轮一起取出，负载越高每组越大
+                batch.add(queue.take());
+                queue.drainTo(batch, BATCH_SIZE - 1);
+                insert(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("批量创建用户失败", e);
+                for (PendingUser pending : batch) {
+                    pending.future.completeExceptionally(e);
+                }
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void insert(List<PendingUser> batch) {
+        // 同一组内重复的手机号只插入一次
+        Map<String, List<PendingUser>> byPhone = new LinkedHashMap<>();
+        for (PendingUser pending : batch) {
+            byPhone.computeIfAbsent(pending.phone, k -> new ArrayList<>(1)).add(pending);
+        }
+        List<User> users = new ArrayList<>(byPhone.size());
+        for (String phone : byPhone.keySet()) {
+            User user = new User();
+            user.setPhone(phone);
+            user.setNickName(SystemConstants.USER_NICK_NAME_PREFIX + RandomUtil.randomString(10));
+            users.add(user);
+        }
+        int inserted = userMapper.insertIgnoreBatch(users);
+        if (inserted != users.size()) {
+            // 有手机号已被其他请求注册，驱动回填的id无法与行对应，按手机号查出实际的用户
+            Map<String, User> existing = new HashMap<>();
+            for (User user : userMapper.selectList(new QueryWrapper<User>()
+                    .select("id", "phone", "nick_name", "icon")
+                    .in("phone", byPhone.keySet()))) {
+                existing.put(user.getPhone(), user);
+            }
+            users.clear();
+            for (String phone : byPhone.keySet()) {
+                users.add(existing.get(phone));
+            }
+        }
+        int i = 0;
+        for (List<PendingUser> waiters : byPhone.values()) {
+            User user = users.get(i++);
+            for (PendingUser pending : waiters) {
+                if (user == null || user.getId() == null) {
+                    pending.future.completeExceptionally(new IllegalStateException("用户写入后未查询到：" + pending.phone));
+                } else {
+                    pending.future.complete(user);
+                }
+            }
+        }
+    }
+
+    private static final class PendingUser {
+        final String phone;
+        final CompletableFuture<User> future = new CompletableFuture<>();
+
+        PendingUser(String phone) {
+            this.phone = phone;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.hmdp.utils;
+
+import com.hmdp.dto.UserDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletRequest;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.hmdp.utils.RedisConstants.*;
+
+/**
+ * 基于HyperLogLog的UV统计。
+ * 每个实体每天一个HLL key，无论访问量多大单个key最多占用约12KB。
+ * 访客先在本地按key去重缓冲，由后台线程定时用pipeline批量PFADD，请求线程不访问Redis。
+ * 写入失败的访客放回缓冲等待下次刷写，缓冲已满时丢弃，失败次数和丢弃的访客数记在uv.flush.failures、uv.dropped。
+ */
+@Slf4j
+@Component
+public class UvRecorder {
+
+    public static final String TYPE_SHOP = "shop";
+    public static final String TYPE_BLOG = "blog";
+
+    private static final DateTimeFormatter DAY_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    /**
+     * 刷写间隔（毫秒）
+     */
+    private static final long FLUSH_INTERVAL_MILLIS = 1000L;
+    /**
+     * 本地缓冲的访客数超过该值时提前刷写
+     */
+    private static final int MAX_PENDING = 50000;
+
+    @Resource
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Resource
+    private ClientIpResolver clientIpResolver;
+
+    private final Counter flushFailures;
+    private final Counter dropped;
+
+    /**
+     * HLL key -> 待写入的访客
+     */
+    private final Map<String, Set<String>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "uv-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public UvRecorder(MeterRegistry meterRegistry) {
+        this.flushFailures = Counter.builder("uv.flush.failures")
+                .description("UV数据写入Redis失败的次数")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("uv.dropped")
+                .description("写入失败且缓冲已满而丢弃的访客数")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        flushExecutor.scheduleWithFixedDelay(this::flushQuietly,
+                FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flushExecutor.shutdown();
+        flushQuietly();
+    }
+
+    /**
+     * 记录一次访问
+     * @param type 实体类型，如shop、blog
+     * @param id 实体id
+     * @param visitor 访客标识，登录用户用userId，未登录用ip
+     */
+    public void record(String type, Long id, String visitor) {
+        String key = uvKey(type, id, LocalDate.now());
+        boolean[] added = {false};
+        // compute与flush中的remove互斥，保证访客不会写进已经被取走的集合
+        pending.compute(key, (k, visitors) -> {
+            if (visitors == null) {
+                visitors = new HashSet<>();
+            }
+            added[0] = visitors.add(visitor);
+            return visitors;
+        });
+        if (added[0] && pendingCount.incrementAndGet() >= MAX_PENDING) {
+            pendingCount.set(0);
+            flushExecutor.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * 记录当前请求的访问，登录用户按userId去重，未登录用户按客户端ip去重
+     */
+    public void record(String type, Long id, HttpServletRequest request) {
+        UserDTO user = UserHolder.getUser();
+        record(type, id, user != null ? "u" + user.getId() : "ip" + clientIpResolver.resolve(request));
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("UV数据写入Redis失败", e);
+        }
+    }
+
+    /**
+     * 取出本地缓冲，通过pipeline一次性PFADD并设置过期时间
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, Set<String>> batch = new HashMap<>();
+        for (String key : pending.keySet()) {
+            Set<String> visitors = pending.remove(key);
+            if (visitors != null && !visitors.isEmpty()) {
+                batch.put(key, visitors);
+            }
+        }
+        pendingCount.set(0);
+        if (batch.isEmpty()) {
+            return;
+        }
+        long ttlSeconds = TimeUnit.DAYS.toSeconds(UV_TTL);
+        try {
+            write(batch, ttlSeconds);
+        } catch (RuntimeException e) {
+            flushFailures.increment();
+            requeue(batch);
+            throw e;
+        }
+    }
+
+    private void write(Map<String, Set<String>> batch, long ttlSeconds) {
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, Set<String>> entry : batch.entrySet()) {
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                byte[][] values = new byte[entry.getValue().size()][];
+                int i = 0;
+                for (String visitor : entry.getValue()) {
+                    values[i++] = visitor.getBytes(StandardCharsets.UTF_8);
+                }
+                connection.pfAdd(key, values);
+                connection.expire(key, ttlSeconds);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 把写入失败的访客放回缓冲，PFADD是幂等的，重复写入不影响计数。
+     * 最多放回约MAX_PENDING个访客，Redis长时间不可用时不会无限占用内存
+     */
+    private void requeue(Map<String, Set<String>> batch) {
+        int budget = MAX_PENDING;
+        long lost = 0;
+        for (Map.Entry<String, Set<String>> entry : batch.entrySet()) {
+            Set<String> visitors = entry.getValue();
+            if (budget <= 0) {
+                lost += visitors.size();
+                continue;
+            }
+            budget -= visitors.size();
+            pending.merge(entry.getKey(), visitors, (current, failed) -> {
+                current.addAll(failed);
+                return current;
+            });
+        }
+        if (lost > 0) {
+            dropped.increment(lost);
+        }
+    }
+
+    /**
+     * 查询最近days天（含今天）的UV，多天时用PFMERGE合并后计数，合并结果短时间缓存
+     * @param type 实体类型
+     * @param id 实体id
+     * @param days 天数，如1、7、30
+     * @return UV
+     */
+    public long count(String type, Long id, int days) {
+        LocalDate today = LocalDate.now();
+        if (days <= 1) {
+            Long count = stringRedisTemplate.opsForHyperLogLog().size(uvKey(type, id, today));
+            return count == null ? 0 : count;
+        }
+        LocalDate from = today.minusDays(days - 1);
+        String mergedKey = UV_MERGED_KEY + type + ":" + id + ":" + from.format(DAY_FORMATTER)
+                + ":" + today.format(DAY_FORMATTER);
+        if (!Boolean.TRUE.equals(stringRedisTemplate.hasKey(mergedKey))) {
+            String[] sourceKeys = new String[days];
+            for (int i = 0; i < days; i++) {
+                sourceKeys[i] = uvKey(type, id, from.plusDays(i));
+            }
+            stringRedisTemplate.opsForHyperLogLog().union(mergedKey, sourceKeys);
+            stringRedisTemplate.expire(mergedKey, UV_MERGED_TTL, TimeUnit.MINUTES);
+        }
+        Long count = stringRedisTemplate.opsForHyperLogLog().size(mergedKey);
+        return count == null ? 0 : count;
+    }
+
+    private static String uvKey(String type, Long id, LocalDate day) {
+        return UV_KEY + type + ":" + id + ":" + day.format(DAY_FORMATTER);
+    }
+}
@@ -0,0 +1,163 @@
+package com.hmdp.utils;
+
+import com.baomidou.mybatisplus.extension.plugins.handler.TableNameHandler;
+import com.hmdp.config.OrderShardingProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * 优惠券订单按用户id分表，tb_voucher_order是逻辑表名，SQL中的表名由{@link #dynamicTableName}改写为当前分表。
+ * <ul>
+ *     <li>分表号 = 用户id % shards，订单id的低{@link #GENE_BITS}位是用户id的低位（基因），
+ *     按用户、按订单id都能直接算出分表，不需要映射表</li>
+ *     <li>访问订单表之前用{@link #onShard}或{@link #onUserShard}指定分表，没有指定时直接抛出异常，不会读写到错误的表</li>
+ *     <li>不带用户、订单id条件的查询用{@link #queryAllShards}并行查询所有分表，由调用方合并结果</li>
+ * </ul>
+ * 所有分表在同一个库中，扣库存和写订单仍是一个本地事务。
+ */
+@Component
+public class VoucherOrderSharding implements TableNameHandler {
+
+    public static final String LOGIC_TABLE = "tb_voucher_order";
+
+    /**
+     * 订单id中基因的位数，分表个数最多为2^GENE_BITS
+     */
+    public static final int GENE_BITS = 4;
+
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    @Resource
+    private RedisIdWorker redisIdWorker;
+
+    private final OrderShardingProperties properties;
+
+    private final int shards;
+
+    /**
+     * 跨分表查询在只读事务中执行，启用读写分离时读从库
+     */
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ExecutorService queryExecutor;
+
+    public VoucherOrderSharding(OrderShardingProperties properties, PlatformTransactionManager transactionManager) {
+        int shards = properties.getShards();
+        // 分表个数整除2^GENE_BITS时，基因 % shards = 用户id % shards
+        if (shards < 1 || shards > 1 << GENE_BITS || Integer.bitCount(shards) != 1) {
+            throw new IllegalStateException("订单分表个数必须是2的幂且不超过" + (1 << GENE_BITS) + "：" + shards);
+        }
+        this.properties = properties;
+        this.shards = shards;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.queryExecutor = Executors.newFixedThreadPool(shards, r -> {
+            Thread thread = new Thread(r, "order-shard-query-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        queryExecutor.shutdownNow();
+    }
+
+    public int getShards() {
+        return shards;
+    }
+
+    public int shardOfUser(long userId) {
+        return (int) (userId & (shards - 1));
+    }
+
+    public int shardOfOrder(long orderId) {
+        return (int) (orderId & (shards - 1));
+    }
+
+    /**
+     * 生成订单id，低位带上用户id的基因
+     */
+    public long nextOrderId(long userId) {
+        return redisIdWorker.nextId("order", GENE_BITS, userId);
+    }
+
+    /**
+     * 在指定的分表上执行，可以嵌套，结束后恢复外层的分表
+     */
+    public <T> T onShard(int shard, Supplier<T> action) {
+        Integer previous = CURRENT_SHARD.get();
+        CURRENT_SHARD.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) {
+                CURRENT_SHARD.remove();
+            } else {
+                CURRENT_SHARD.set(previous);
+            }
+        }
+    }
+
+    public <T> T onUserShard(long userId, Supplier<T> action) {
+        return onShard(shardOfUser(userId), action);
+    }
+
+    public <T> T onOrderShard(long orderId, Supplier<T> action) {
+        return onShard(shardOfOrder(orderId), action);
+    }
+
+    /**
+     * 并行查询所有分表，每个分表在只读事务中执行，任意一个分表失败或超时时整体失败
+     * @param query 分表号 -> 该分表的查询结果
+     * @return 按分表号顺序拼接的结果
+     */
+    public <T> List<T> queryAllShards(IntFunction<List<T>> query) {
+        List<Future<List<T>>> futures = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            int shard = i;
+            futures.add(queryExecutor.submit(() -> onShard(shard,
+                    () -> readOnlyTransaction.execute(status -> query.apply(shard)))));
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getQueryTimeoutMillis());
+        List<T> result = new ArrayList<>();
+        try {
+            for (int i = 0; i < shards; i++) {
+                result.addAll(futures.get(i).get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("查询订单分表被中断", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("查询订单分表失败", e instanceof ExecutionException ? e.getCause() : e);
+        } finally {
+            for (Future<List<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 把逻辑表名改写为当前线程指定的分表
+     */
+    @Override
+    public String dynamicTableName(String sql, String tableName) {
+        Integer shard = CURRENT_SHARD.get();
+        if (shard == null) {
+            throw new IllegalStateException("访问" + tableName + "之前没有指定分表：" + sql);
+        }
+        return tableName + "_" + shard;
+    }
+}
@@ -0,0 +1,136 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.BulkWriteProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+/**
+ * 请求线程的合并写入（group commit）。
+ * 请求把一行放入队列后等待返回的future，由专门的线程取出一批，调用写入函数一次写完整批，再逐行完成future。
+ * 第一行入队后最多等待flushIntervalMillis凑满batchSize行，负载越高每批越大，一批只有一次网络往返、一次提交。
+ * 队列满时提交直接失败；写入函数抛出异常时整批失败。
+ * @param <T> 行
+ * @param <R> 每行的写入结果
+ */
+@Slf4j
+public class WriteBatcher<T, R> {
+
+    private final String name;
+    private final BulkWriteProperties properties;
+    /**
+     * 写入一批行，返回与输入一一对应的结果
+     */
+    private final Function<List<T>, List<R>> write;
+    private final BlockingQueue<Pending<T, R>> queue;
+    private final ExecutorService writeExecutor;
+
+    public WriteBatcher(String name, BulkWriteProperties properties, MeterRegistry meterRegistry,
+                        Function<List<T>, List<R>> write) {
+        this.name = name;
+        this.properties = properties;
+        this.write = write;
+        this.queue = new LinkedBlockingQueue<>(properties.getQueueCapacity());
+        this.writeExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "bulk-write-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        Gauge.builder("bulk.write.pending", queue, Collection::size)
+                .description("合并写入队列中等待的行数")
+                .tag("table", name)
+                .register(meterRegistry);
+    }
+
+    public void start() {
+        writeExecutor.execute(this::runLoop);
+    }
+
+    /**
+     * 停止写入线程，把队列中剩余的行写完
+     */
+    public void stop() {
+        writeExecutor.shutdownNow();
+        try {
+            writeExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<Pending<T, R>> rest = new ArrayList<>();
+        queue.drainTo(rest);
+        for (int from = 0; from < rest.size(); from += properties.getBatchSize()) {
+            write(rest.subList(from, Math.min(from + properties.getBatchSize(), rest.size())));
+        }
+    }
+
+    public CompletableFuture<R> submit(T row) {
+        Pending<T, R> pending = new Pending<>(row);
+        if (!queue.offer(pending)) {
+            pending.future.completeExceptionally(new RejectedExecutionException(name + "的合并写入队列已满"));
+        }
+        return pending.future;
+    }
+
+    private void runLoop() {
+        int batchSize = properties.getBatchSize();
+        List<Pending<T, R>> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // 队列为空时阻塞，取到第一行后在flushIntervalMillis内尽量凑满一批
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMillis());
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0) {
+                        break;
+                    }
+                    Pending<T, R> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void write(List<Pending<T, R>> batch) {
+        List<T> rows = new ArrayList<>(batch.size());
+        for (Pending<T, R> pending : batch) {
+            rows.add(pending.row);
+        }
+        try {
+            List<R> results = write.apply(rows);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(results.get(i));
+            }
+        } catch (Exception e) {
+            log.error("合并写入{}失败，行数：{}", name, rows.size(), e);
+            for (Pending<T, R> pending : batch) {
+                pending.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Pending<T, R> {
+        final T row;
+        final CompletableFuture<R> future = new CompletableFuture<>();
+
+        Pending(T row) {
+            this.row = row;
+        }
+    }
+}
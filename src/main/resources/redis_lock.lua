@@ -0,0 +1,14 @@
+-- 可重入分布式锁加锁，锁是一个hash：持有者 -> 重入次数
+-- KEYS[1]：锁的key
+-- ARGV[1]：租期（毫秒） ARGV[2]：持有者标识（节点id:线程id）
+-- 返回nil表示加锁成功，否则返回锁剩余的有效期（毫秒）
+local key = KEYS[1]
+local lease = tonumber(ARGV[1])
+local owner = ARGV[2]
+
+if redis.call('exists', key) == 0 or redis.call('hexists', key, owner) == 1 then
+    redis.call('hincrby', key, owner, 1)
+    redis.call('pexpire', key, lease)
+    return nil
+end
+return redis.call('pttl', key)
@@ -0,0 +1,9 @@
+-- 看门狗续期，只在锁仍由该持有者持有时延长有效期
+-- KEYS[1]：锁的key
+-- ARGV[1]：租期（毫秒） ARGV[2]：持有者标识
+-- 返回1表示续期成功，0表示锁已不属于该持有者
+if redis.call('hexists', KEYS[1], ARGV[2]) == 1 then
+    redis.call('pexpire', KEYS[1], tonumber(ARGV[1]))
+    return 1
+end
+return 0
@@ -0,0 +1,17 @@
+-- 可重入分布式锁解锁，只有持有者能解锁；最后一次解锁时删除锁并通知等待者
+-- KEYS[1]：锁的key
+-- ARGV[1]：持有者标识 ARGV[2]：租期（毫秒） ARGV[3]：通知频道
+-- 返回-1表示当前线程不持有锁，0表示重入次数减一，1表示已释放
+local key = KEYS[1]
+local owner = ARGV[1]
+
+if redis.call('hexists', key, owner) == 0 then
+    return -1
+end
+if redis.call('hincrby', key, owner, -1) > 0 then
+    redis.call('pexpire', key, tonumber(ARGV[2]))
+    return 0
+end
+redis.call('del', key)
+redis.call('publish', ARGV[3], key)
+return 1
@@ -0,0 +1,21 @@
+-- 滑动窗口限流
+-- KEYS[1]：限流key
+-- ARGV[1]：当前时间（毫秒） ARGV[2]：窗口大小（毫秒） ARGV[3]：窗口内最大请求数 ARGV[4]：本次请求的唯一标识
+-- 返回0表示允许；超限时返回窗口内最早的一条记录移出窗口还需要的毫秒数（至少为1）
+local key = KEYS[1]
+local now = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local max = tonumber(ARGV[3])
+
+-- 移除窗口之外的请求记录
+redis.call('zremrangebyscore', key, 0, now - window)
+if redis.call('zcard', key) >= max then
+    local oldest = redis.call('zrange', key, 0, 0, 'WITHSCORES')
+    if oldest[2] == nil then
+        return window
+    end
+    return math.max(1, tonumber(oldest[2]) + window - now)
+end
+redis.call('zadd', key, now, ARGV[4])
+redis.call('pexpire', key, window)
+return 0
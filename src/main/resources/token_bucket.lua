@@ -0,0 +1,18 @@
+-- 令牌桶限流（GCRA），集群共享
+-- KEYS[1]：限流key
+-- ARGV[1]：当前时间（毫秒） ARGV[2]：每个令牌的间隔（毫秒） ARGV[3]：桶容量对应的时间（毫秒）
+local key = KEYS[1]
+local now = tonumber(ARGV[1])
+local interval = tonumber(ARGV[2])
+local burst = tonumber(ARGV[3])
+
+local tat = tonumber(redis.call('get', key))
+if not tat or tat < now then
+    tat = now
+end
+local next = tat + interval
+if next - now > burst then
+    return 0
+end
+redis.call('set', key, next, 'px', burst)
+return 1
@@ -0,0 +1,132 @@
+package com.hmdp.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CsrAdjacencyTest {
+
+    @Test
+    void emptyAdjacencyHasNoEdges() {
+        CsrAdjacency adjacency = CsrAdjacency.build(new long[]{1, 2}, new long[]{3, 4}, 0);
+
+        assertThat(adjacency.keyCount()).isZero();
+        assertThat(adjacency.edgeCount()).isZero();
+        assertThat(adjacency.degree(1)).isZero();
+        assertThat(adjacency.neighbors(1)).isEmpty();
+        assertThat(adjacency.contains(1, 3)).isFalse();
+    }
+
+    @Test
+    void onlyTheFirstSizeEdgesAreUsed() {
+        CsrAdjacency adjacency = CsrAdjacency.build(new long[]{1, 1, 2}, new long[]{5, 3, 9}, 2);
+
+        assertThat(adjacency.neighbors(1)).containsExactly(3, 5);
+        assertThat(adjacency.degree(2)).isZero();
+        assertThat(adjacency.edgeCount()).isEqualTo(2);
+    }
+
+    @Test
+    void duplicateEdgesAreStoredOnce() {
+        CsrAdjacency adjacency = CsrAdjacency.build(
+                new long[]{7, 7, 7, 7, 8}, new long[]{2, 1, 2, 1, 2}, 5);
+
+        assertThat(adjacency.neighbors(7)).containsExactly(1, 2);
+        assertThat(adjacency.degree(7)).isEqualTo(2);
+        assertThat(adjacency.keyCount()).isEqualTo(2);
+        assertThat(adjacency.edgeCount()).isEqualTo(3);
+    }
+
+    @Test
+    void deltasAcrossVarintLengthBoundariesRoundTrip() {
+        // 差值覆盖1到9字节的varint编码，首个值和相邻值的边界也在其中
+        long[] values = {0, 127, 128, 255, 16383, 16384, 16511, 1L << 21, (1L << 28) + 1, 1L << 35,
+                1L << 42, 1L << 49, 1L << 56, 1L << 62, Long.MAX_VALUE};
+        long[] src = new long[values.length];
+        CsrAdjacency adjacency = CsrAdjacency.build(src, values, values.length);
+
+        assertThat(adjacency.neighbors(0)).containsExactly(values);
+        for (long value : values) {
+            assertThat(adjacency.contains(0, value)).isTrue();
+        }
+        assertThat(adjacency.contains(0, 129)).isFalse();
+        assertThat(adjacency.contains(0, Long.MAX_VALUE - 1)).isFalse();
+    }
+
+    @Test
+    void negativeAndExtremeIdsRoundTrip() {
+        long[] values = {Long.MIN_VALUE, -1L << 40, -1, 0, 1, Long.MAX_VALUE};
+        long[] src = new long[values.length * 2];
+        long[] dst = new long[values.length * 2];
+        for (int i = 0; i < values.length; i++) {
+            // 倒序放入，依赖build排序；负数首值按10字节的varint编码
+            src[i] = Long.MIN_VALUE;
+            dst[i] = values[values.length - 1 - i];
+            src[values.length + i] = values[i];
+            dst[values.length + i] = Long.MIN_VALUE;
+        }
+        CsrAdjacency adjacency = CsrAdjacency.build(src, dst, src.length);
+
+        assertThat(adjacency.neighbors(Long.MIN_VALUE)).containsExactly(values);
+        assertThat(adjacency.contains(Long.MIN_VALUE, Long.MAX_VALUE)).isTrue();
+        assertThat(adjacency.contains(Long.MIN_VALUE, -2)).isFalse();
+        assertThat(adjacency.neighbors(Long.MAX_VALUE)).containsExactly(Long.MIN_VALUE);
+        assertThat(adjacency.keyCount()).isEqualTo(values.length);
+    }
+
+    @Test
+    void missingKeyAndValuesOutsideTheNeighborRange() {
+        CsrAdjacency adjacency = CsrAdjacency.build(new long[]{10, 10, 30}, new long[]{100, 200, 1}, 3);
+
+        assertThat(adjacency.degree(20)).isZero();
+        assertThat(adjacency.neighbors(20)).isEmpty();
+        assertThat(adjacency.contains(20, 100)).isFalse();
+        assertThat(adjacency.contains(10, 50)).isFalse();
+        assertThat(adjacency.contains(10, 150)).isFalse();
+        assertThat(adjacency.contains(10, 300)).isFalse();
+    }
+
+    @Test
+    void randomGraphMatchesReference() {
+        Random random = new Random(42);
+        int size = 20000;
+        long[] src = new long[size];
+        long[] dst = new long[size];
+        Map<Long, TreeSet<Long>> reference = new TreeMap<>();
+        for (int i = 0; i < size; i++) {
+            src[i] = random.nextInt(500);
+            // 混合小间隔和大间隔，覆盖不同长度的varint
+            dst[i] = random.nextBoolean() ? random.nextInt(2000) : random.nextLong() >>> 1;
+            reference.computeIfAbsent(src[i], k -> new TreeSet<>()).add(dst[i]);
+        }
+        CsrAdjacency adjacency = CsrAdjacency.build(src, dst, size);
+
+        long edges = reference.values().stream().mapToLong(TreeSet::size).sum();
+        assertThat(adjacency.keyCount()).isEqualTo(reference.size());
+        assertThat(adjacency.edgeCount()).isEqualTo(edges);
+        for (Map.Entry<Long, TreeSet<Long>> entry : reference.entrySet()) {
+            long key = entry.getKey();
+            long[] expected = entry.getValue().stream().mapToLong(Long::longValue).toArray();
+            assertThat(adjacency.neighbors(key)).containsExactly(expected);
+            assertThat(adjacency.degree(key)).isEqualTo(expected.length);
+            for (long value : expected) {
+                assertThat(adjacency.contains(key, value)).isTrue();
+                assertThat(adjacency.contains(key, value + 1)).isEqualTo(entry.getValue().contains(value + 1));
+            }
+        }
+
+        List<long[]> visited = new ArrayList<>();
+        adjacency.forEachEdge((s, d) -> visited.add(new long[]{s, d}));
+        assertThat(visited).hasSize((int) edges);
+        for (long[] edge : visited) {
+            assertThat(reference.get(edge[0])).contains(edge[1]);
+        }
+    }
+}
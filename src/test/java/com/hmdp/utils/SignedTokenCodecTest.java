@@ -0,0 +1,222 @@
+package com.hmdp.utils;
+
+import com.hmdp.config.LoginProperties;
+import com.hmdp.dto.UserDTO;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SignedTokenCodecTest {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static final String KEY_A = randomKey(32);
+    private static final String KEY_B = randomKey(48);
+
+    @Test
+    void encodedTokenDecodesToTheSameUser() throws Exception {
+        SignedTokenCodec codec = codec(signedProperties("k2").addKey("k2", KEY_A));
+        long now = System.currentTimeMillis() / 1000;
+
+        String token = codec.encode(user(1010L, "小鱼同学", "/imgs/icons/a.jpg"), 600);
+        SignedTokenCodec.TokenClaims claims = codec.decode(token);
+
+        assertThat(SignedTokenCodec.isSignedToken(token)).isTrue();
+        assertThat(token).startsWith("k2.");
+        assertThat(claims).isNotNull();
+        assertThat(claims.getUser().getId()).isEqualTo(1010L);
+        assertThat(claims.getUser().getNickName()).isEqualTo("小鱼同学");
+        assertThat(claims.getUser().getIcon()).isEqualTo("/imgs/icons/a.jpg");
+        assertThat(claims.getExpireAt()).isBetween(now + 600, now + 601);
+    }
+
+    @Test
+    void nullNickNameAndIconDecodeAsEmptyAndTokenIdsDiffer() throws Exception {
+        SignedTokenCodec codec = codec(signedProperties("k2").addKey("k2", KEY_A));
+
+        SignedTokenCodec.TokenClaims first = codec.decode(codec.encode(user(7L, null, null), 600));
+        SignedTokenCodec.TokenClaims second = codec.decode(codec.encode(user(7L, null, null), 600));
+
+        assertThat(first.getUser().getNickName()).isEmpty();
+        assertThat(first.getUser().getIcon()).isEmpty();
+        assertThat(first.getTokenId()).isNotEqualTo(second.getTokenId());
+    }
+
+    @Test
+    void tamperedSignatureIsRejected() throws Exception {
+        SignedTokenCodec codec = codec(signedProperties("k2").addKey("k2", KEY_A));
+        String token = codec.encode(user(1L, "a", ""), 600);
+        int last = token.lastIndexOf('.');
+        byte[] signature = Base64.getUrlDecoder().decode(token.substring(last + 1));
+        signature[0] ^= 1;
+
+        String tampered = token.substring(0, last + 1) + Base64.getUrlEncoder().withoutPadding().encodeToString(signature);
+
+        assertThat(codec.decode(tampered)).isNull();
+        assertThat(codec.decode(token.substring(0, last + 1))).isNull();
+    }
+
+    @Test
+    void tamperedClaimsAreRejected() throws Exception {
+        SignedTokenCodec codec = codec(signedProperties("k2").addKey("k2", KEY_A));
+        String victim = codec.encode(user(1L, "a", ""), 600);
+        String attacker = codec.encode(user(2L, "b", ""), 600);
+
+        // 把另一个用户的claims换到合法签名前
+        String forged = victim.substring(0, victim.indexOf('.') + 1)
+                + attacker.substring(attacker.indexOf('.') + 1, attacker.lastIndexOf('.'))
+                + victim.substring(victim.lastIndexOf('.'));
+
+        assertThat(codec.decode(forged)).isNull();
+    }
+
+    @Test
+    void malformedTokensAreRejected() throws Exception {
+        SignedTokenCodec codec = codec(signedProperties("k2").addKey("k2", KEY_A));
+
+        assertThat(codec.decode("0b6f1c0e6d4c4b5e9f")).isNull();
+        assertThat(codec.decode(".abc.def")).isNull();
+        assertThat(codec.decode("k2.abc")).isNull();
+        assertThat(codec.decode("k2..")).isNull();
+        assertThat(codec.decode("k2.!!!.###")).isNull();
+    }
+
+    @Test
+    void expiredTokenIsRejected() throws Exception {
+        SignedTokenCodec codec = codec(signedProperties("k2").addKey("k2", KEY_A));
+
+        assertThat(codec.decode(codec.encode(user(1L, "a", ""), 0))).isNull();
+        assertThat(codec.decode(codec.encode(user(1L, "a", ""), -60))).isNull();
+    }
+
+    @Test
+    void unknownKeyIdIsRejected() throws Exception {
+        SignedTokenCodec issuer = codec(signedProperties("k3").addKey("k3", KEY_B));
+        SignedTokenCodec verifier = codec(signedProperties("k2").addKey("k2", KEY_A));
+
+        assertThat(verifier.decode(issuer.encode(user(1L, "a", ""), 600))).isNull();
+    }
+
+    @Test
+    void sameKeyIdWithDifferentSecretIsRejected() throws Exception {
+        SignedTokenCodec issuer = codec(signedProperties("k2").addKey("k2", KEY_B));
+        SignedTokenCodec verifier = codec(signedProperties("k2").addKey("k2", KEY_A));
+
+        assertThat(verifier.decode(issuer.encode(user(1L, "a", ""), 600))).isNull();
+    }
+
+    @Test
+    void tokensSignedWithThePreviousKeyStillVerifyAfterRotation() throws Exception {
+        SignedTokenCodec before = codec(signedProperties("k2").addKey("k2", KEY_A));
+        SignedTokenCodec after = codec(signedProperties("k3").addKey("k2", KEY_A).addKey("k3", KEY_B));
+        String oldToken = before.encode(user(1L, "a", ""), 600);
+
+        String newToken = after.encode(user(1L, "a", ""), 600);
+
+        assertThat(after.decode(oldToken)).isNotNull();
+        assertThat(newToken).startsWith("k3.");
+        assertThat(after.decode(newToken)).isNotNull();
+        assertThat(before.decode(newToken)).isNull();
+    }
+
+    @Test
+    void signedTokensAreRejectedOutsideSignedMode() throws Exception {
+        TestProperties properties = signedProperties("k2").addKey("k2", KEY_A);
+        SignedTokenCodec codec = codec(properties);
+        String token = codec.encode(user(1L, "a", ""), 600);
+
+        properties.setTokenMode(LoginProperties.TOKEN_MODE_REDIS);
+
+        assertThat(codec.decode(token)).isNull();
+    }
+
+    @Test
+    void redisModeStartsWithoutKeys() throws Exception {
+        TestProperties properties = new TestProperties();
+        properties.setTokenMode(LoginProperties.TOKEN_MODE_REDIS);
+
+        SignedTokenCodec codec = codec(properties);
+
+        assertThat(codec.decode("k2.abc.def")).isNull();
+    }
+
+    @Test
+    void retiredKeyIdFailsStartup() {
+        TestProperties properties = signedProperties("k1").addKey("k1", KEY_A);
+        properties.getRetiredKeyIds().add("k1");
+
+        assertThatThrownBy(() -> codec(properties))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("k1");
+    }
+
+    @Test
+    void shortKeyFailsStartup() {
+        TestProperties properties = signedProperties("k2").addKey("k2", randomKey(16));
+
+        assertThatThrownBy(() -> codec(properties))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("k2");
+    }
+
+    @Test
+    void missingActiveKeyFailsStartup() {
+        TestProperties properties = signedProperties("k3").addKey("k2", KEY_A).addKey("k3", "");
+
+        assertThatThrownBy(() -> codec(properties))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("k3");
+    }
+
+    @Test
+    void randomTokensAreNotSignedTokens() {
+        assertThat(SignedTokenCodec.isSignedToken("0b6f1c0e6d4c4b5e9f")).isFalse();
+        assertThat(SignedTokenCodec.isSignedToken(".abc")).isFalse();
+    }
+
+    private static SignedTokenCodec codec(LoginProperties properties) throws Exception {
+        SignedTokenCodec codec = new SignedTokenCodec();
+        // 不用ReflectionTestUtils，它会在日志中打印包含密钥的配置
+        Field field = SignedTokenCodec.class.getDeclaredField("loginProperties");
+        field.setAccessible(true);
+        field.set(codec, properties);
+        codec.init();
+        return codec;
+    }
+
+    private static TestProperties signedProperties(String activeKeyId) {
+        TestProperties properties = new TestProperties();
+        properties.setTokenMode(LoginProperties.TOKEN_MODE_SIGNED);
+        properties.setActiveKeyId(activeKeyId);
+        return properties;
+    }
+
+    private static UserDTO user(Long id, String nickName, String icon) {
+        UserDTO user = new UserDTO();
+        user.setId(id);
+        user.setNickName(nickName);
+        user.setIcon(icon);
+        return user;
+    }
+
+    /**
+     * 每次运行随机生成，测试中不出现固定的密钥
+     */
+    private static String randomKey(int bytes) {
+        byte[] key = new byte[bytes];
+        RANDOM.nextBytes(key);
+        return Base64.getEncoder().encodeToString(key);
+    }
+
+    private static final class TestProperties extends LoginProperties {
+        TestProperties addKey(String keyId, String key) {
+            getSigningKeys().put(keyId, key);
+            return this;
+        }
+    }
+}